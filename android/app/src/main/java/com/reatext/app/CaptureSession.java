@@ -0,0 +1,193 @@
+package com.reatext.app;
+
+import android.graphics.PixelFormat;
+import android.hardware.display.DisplayManager;
+import android.hardware.display.VirtualDisplay;
+import android.media.Image;
+import android.media.ImageReader;
+import android.media.projection.MediaProjection;
+import android.os.Handler;
+import android.util.Log;
+
+import java.util.ArrayList;
+import java.util.IdentityHashMap;
+import java.util.List;
+
+/**
+ * 长期存活的录屏会话：ImageReader 与 VirtualDisplay 只创建一次，多次点击复用同一 Surface。
+ *
+ * 每当有新帧就换下手中的旧帧，始终只持有最新一帧；屏幕静止时 VirtualDisplay 不再出帧，
+ * 持有的帧就是当前画面，请求可立即返回。会话尚未出过帧时，请求挂起到第一帧到达。
+ *
+ * 交给监听方的帧在 {@link #releaseFrame} 之前不会被关闭，识别直接读它的缓冲；
+ * 会话释放后 ImageReader 也要等这些帧归还才关闭（关闭 ImageReader 会使其所有帧失效）。
+ * 内存紧张时可 {@link #resize} 降低分辨率：复用同一 VirtualDisplay，只换一个新尺寸的 ImageReader。
+ */
+public final class CaptureSession implements ImageReader.OnImageAvailableListener {
+    private static final String TAG = "CaptureSession";
+    // 最新帧、识别中的帧、获取时的临时帧，再留一帧给生产端
+    private static final int MAX_IMAGES = 4;
+
+    public interface FrameListener {
+        /** 用完后必须调用 {@link CaptureSession#releaseFrame}（可在任意线程） */
+        void onFrame(Image image);
+    }
+
+    private final int densityDpi;
+    private final Handler handler;
+
+    // 以下字段由 this 监视器保护；监听回调在锁外执行
+    private int width;
+    private int height;
+    private ImageReader imageReader;
+    // resize 换下的旧 ImageReader，等交出的帧全部归还后关闭
+    private final List<ImageReader> retiredReaders = new ArrayList<>();
+    private VirtualDisplay virtualDisplay;
+    private Image latest;
+    private FrameListener pending;
+    private final IdentityHashMap<Image, Integer> inUse = new IdentityHashMap<>();
+    private boolean released;
+
+    public CaptureSession(MediaProjection projection, int width, int height, int densityDpi, Handler handler) {
+        this.width = width;
+        this.height = height;
+        this.densityDpi = densityDpi;
+        this.handler = handler;
+        imageReader = newReader(width, height);
+        virtualDisplay = projection.createVirtualDisplay(
+                "ScreenCapture",
+                width, height, densityDpi,
+                DisplayManager.VIRTUAL_DISPLAY_FLAG_AUTO_MIRROR,
+                imageReader.getSurface(), null, handler
+        );
+    }
+
+    private ImageReader newReader(int width, int height) {
+        ImageReader reader = ImageReader.newInstance(width, height, PixelFormat.RGBA_8888, MAX_IMAGES);
+        reader.setOnImageAvailableListener(this, handler);
+        return reader;
+    }
+
+    public synchronized int getWidth() {
+        return width;
+    }
+
+    public synchronized int getHeight() {
+        return height;
+    }
+
+    /**
+     * 改变采集分辨率（画面等比缩放进新尺寸）。持有的最新帧作废，之后的请求等新尺寸的第一帧；
+     * 已交出的旧帧仍然有效，旧 ImageReader 在它们归还后关闭。尺寸未变或会话已释放时返回 false。
+     */
+    public synchronized boolean resize(int newWidth, int newHeight) {
+        if (released || (newWidth == width && newHeight == height)) return false;
+        ImageReader old = imageReader;
+        imageReader = newReader(newWidth, newHeight);
+        virtualDisplay.resize(newWidth, newHeight, densityDpi);
+        virtualDisplay.setSurface(imageReader.getSurface());
+        width = newWidth;
+        height = newHeight;
+
+        old.setOnImageAvailableListener(null, null);
+        if (latest != null && !inUse.containsKey(latest)) latest.close();
+        latest = null;
+        if (inUse.isEmpty()) {
+            old.close();
+        } else {
+            retiredReaders.add(old);
+        }
+        return true;
+    }
+
+    /** 内存紧张时丢掉手中的最新帧（识别中的帧不受影响），下次请求等新帧 */
+    public synchronized void dropLatest() {
+        if (latest != null && !inUse.containsKey(latest)) latest.close();
+        latest = null;
+    }
+
+    /** 请求当前画面：已有帧则立即回调，否则等待下一帧 */
+    public void requestFrame(FrameListener listener) {
+        Image image;
+        synchronized (this) {
+            if (released) return;
+            if (latest == null) {
+                pending = listener;
+                return;
+            }
+            image = retainLatest();
+        }
+        listener.onFrame(image);
+    }
+
+    @Override
+    public void onImageAvailable(ImageReader reader) {
+        FrameListener listener;
+        Image image;
+        synchronized (this) {
+            // 换下的旧 ImageReader 可能还有已排队的通知
+            if (released || reader != imageReader) return;
+            Image next;
+            try {
+                next = reader.acquireLatestImage();
+            } catch (IllegalStateException e) {
+                // 已持有 maxImages 帧（识别太慢），丢弃本次通知
+                Log.w(TAG, "acquireLatestImage failed", e);
+                return;
+            }
+            if (next == null) return;
+            if (latest != null && !inUse.containsKey(latest)) latest.close();
+            latest = next;
+
+            if (pending == null) return;
+            listener = pending;
+            pending = null;
+            image = retainLatest();
+        }
+        listener.onFrame(image);
+    }
+
+    private Image retainLatest() {
+        Integer count = inUse.get(latest);
+        inUse.put(latest, count == null ? 1 : count + 1);
+        return latest;
+    }
+
+    /** 归还 onFrame 交出的帧；不再是最新帧且无人引用时关闭 */
+    public synchronized void releaseFrame(Image image) {
+        Integer count = inUse.get(image);
+        if (count == null) return;
+        if (count > 1) {
+            inUse.put(image, count - 1);
+            return;
+        }
+        inUse.remove(image);
+        if (image != latest) image.close();
+        if (inUse.isEmpty()) {
+            for (ImageReader reader : retiredReaders) reader.close();
+            retiredReaders.clear();
+            if (released) closeReader();
+        }
+    }
+
+    public synchronized void release() {
+        if (released) return;
+        released = true;
+        pending = null;
+        if (virtualDisplay != null) {
+            virtualDisplay.release();
+            virtualDisplay = null;
+        }
+        if (latest != null && !inUse.containsKey(latest)) latest.close();
+        latest = null;
+        if (inUse.isEmpty()) closeReader();
+    }
+
+    private void closeReader() {
+        if (imageReader != null) {
+            imageReader.setOnImageAvailableListener(null, null);
+            imageReader.close();
+            imageReader = null;
+        }
+    }
+}
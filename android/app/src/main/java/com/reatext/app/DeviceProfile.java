@@ -0,0 +1,63 @@
+package com.reatext.app;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.FileReader;
+import java.io.IOException;
+
+/**
+ * CPU 拓扑：按 cpufreq 最大频率区分大小核。
+ * 读不到 sysfs（离线核心或权限受限）时退化为全部按大核计算。
+ */
+public final class DeviceProfile {
+    private static DeviceProfile instance;
+
+    public final int totalCores;
+    public final int bigCores;
+
+    private DeviceProfile(int totalCores, int bigCores) {
+        this.totalCores = totalCores;
+        this.bigCores = bigCores;
+    }
+
+    public static synchronized DeviceProfile get() {
+        if (instance == null) {
+            instance = probe();
+        }
+        return instance;
+    }
+
+    private static DeviceProfile probe() {
+        int total = Runtime.getRuntime().availableProcessors();
+        long[] maxFreq = new long[total];
+        long min = Long.MAX_VALUE;
+        for (int i = 0; i < total; i++) {
+            maxFreq[i] = readLong(new File("/sys/devices/system/cpu/cpu" + i + "/cpufreq/cpuinfo_max_freq"));
+            if (maxFreq[i] > 0) min = Math.min(min, maxFreq[i]);
+        }
+        if (min == Long.MAX_VALUE) {
+            return new DeviceProfile(total, total);
+        }
+
+        // 最低频率那一簇是小核，其余（含 prime 核）都算大核；同构 CPU 则全部算大核
+        int big = 0;
+        for (long freq : maxFreq) {
+            if (freq > min) big++;
+        }
+        return new DeviceProfile(total, big == 0 ? total : big);
+    }
+
+    private static long readLong(File file) {
+        try (BufferedReader reader = new BufferedReader(new FileReader(file))) {
+            String line = reader.readLine();
+            return line == null ? -1 : Long.parseLong(line.trim());
+        } catch (IOException | NumberFormatException e) {
+            return -1;
+        }
+    }
+
+    @Override
+    public String toString() {
+        return "cores=" + totalCores + ", big=" + bigCores;
+    }
+}
@@ -9,21 +9,18 @@ import android.content.BroadcastReceiver;
 import android.content.Context;
 import android.content.Intent;
 import android.content.IntentFilter;
-import android.graphics.Bitmap;
 import android.graphics.PixelFormat;
 import android.graphics.Point;
-import android.hardware.display.DisplayManager;
-import android.hardware.display.VirtualDisplay;
-import android.media.Image;
-import android.media.ImageReader;
 import android.media.projection.MediaProjection;
 import android.media.projection.MediaProjectionManager;
 import android.net.Uri;
 import android.os.Build;
 import android.os.Handler;
+import android.os.HandlerThread;
 import android.os.IBinder;
 import android.os.Looper;
 import android.provider.Settings;
+import android.text.TextUtils;
 import android.util.DisplayMetrics;
 import android.view.Gravity;
 import android.view.LayoutInflater;
@@ -35,8 +32,9 @@ import com.reatext.app.R;
 
 import androidx.core.app.NotificationCompat;
 
-import java.nio.ByteBuffer;
+import java.util.ArrayList;
 import java.util.List;
+import java.util.concurrent.CancellationException;
 
 public class FloatingBallService extends Service {
     private static final String CHANNEL_ID = "floating_ball_service";
@@ -46,12 +44,30 @@ public class FloatingBallService extends Service {
     private BroadcastReceiver permissionReceiver;
 
     private MediaProjectionManager projectionManager;
-    private MediaProjection mediaProjection;
-    private ImageReader imageReader;
-    private VirtualDisplay virtualDisplay;
+    // 采集线程（录屏停止回调）与主线程都会读写
+    private volatile MediaProjection mediaProjection;
+    // 录屏 Surface 跨多次点击复用；首次截图时创建，服务销毁或录屏停止时释放
+    private CaptureSession captureSession;
+    private IncrementalOcr incrementalOcr;
     private Handler handler;
+    // 截图读取与提交 OCR 在采集线程进行，主线程只负责悬浮窗与结果展示
+    private HandlerThread captureThread;
+    private Handler captureHandler;
 
-    private boolean hasPermissionGranted = false;
+    private volatile boolean hasPermissionGranted = false;
+    private OcrEngine ocrEngine;
+    private MemoryGovernor memoryGovernor;
+    // 内存紧张时降级而不是被杀：截屏按预算缩小分辨率，CRITICAL 时丢掉手中缓存的帧
+    private final MemoryGovernor.Listener memoryListener = (level, eviction) -> {
+        final int[] size = captureSize();
+        eviction.record("captureWidth", size[0]);
+        eviction.record("captureHeight", size[1]);
+        captureHandler.post(() -> {
+            if (captureSession == null) return;
+            if (level == MemoryGovernor.Level.CRITICAL) captureSession.dropLatest();
+            captureSession.resize(size[0], size[1]);
+        });
+    };
 
 @Override
 public void onCreate() {
@@ -73,12 +89,25 @@ public void onCreate() {
     // —— ② 权限 OK，启动前台 Service 通知 ——
     startForegroundServiceWithNotification();
 
+    // 服务存活期间持有 OCR 引擎，模型只在首次识别时加载一次
+    ocrEngine = OcrEngine.get(this);
+    ocrEngine.acquire();
+
+    // 识别结果与提示回到主线程展示；不依赖下面（已注释的）悬浮窗初始化
+    handler = new Handler(Looper.getMainLooper());
+
+    captureThread = new HandlerThread("ocr-capture");
+    captureThread.start();
+    captureHandler = new Handler(captureThread.getLooper());
+    incrementalOcr = new IncrementalOcr(ocrEngine, captureHandler);
+    memoryGovernor = MemoryGovernor.get(this);
+    memoryGovernor.addListener(memoryListener);
+
     // —— ③ 初始化悬浮球（暂时禁用，整段注释保留） ——
 
     /*
     windowManager = (WindowManager) getSystemService(WINDOW_SERVICE);
     projectionManager = (MediaProjectionManager) getSystemService(MEDIA_PROJECTION_SERVICE);
-    handler = new Handler(Looper.getMainLooper());
 
     LayoutInflater inflater = LayoutInflater.from(this);
     floatingView = inflater.inflate(R.layout.floating_ball_layout, null);
@@ -209,48 +238,63 @@ public void onCreate() {
     }
 
     private void startScreenshot() {
-        DisplayMetrics metrics = getResources().getDisplayMetrics();
-        int width = metrics.widthPixels;
-        int height = metrics.heightPixels;
-        int density = metrics.densityDpi;
-
-        imageReader = ImageReader.newInstance(width, height, PixelFormat.RGBA_8888, 1);
-        virtualDisplay = mediaProjection.createVirtualDisplay(
-                "ScreenCapture",
-                width, height, density,
-                DisplayManager.VIRTUAL_DISPLAY_FLAG_AUTO_MIRROR,
-                imageReader.getSurface(), null, handler
-        );
+        captureHandler.post(() -> {
+            if (captureSession == null) {
+                DisplayMetrics metrics = getResources().getDisplayMetrics();
+                // Android 14 起同一授权只能创建一次 VirtualDisplay，必须先注册回调
+                mediaProjection.registerCallback(new MediaProjection.Callback() {
+                    @Override
+                    public void onStop() {
+                        releaseCaptureSession();
+                        hasPermissionGranted = false;
+                        mediaProjection = null;
+                    }
+                }, captureHandler);
+                int[] size = captureSize();
+                captureSession = new CaptureSession(mediaProjection,
+                        size[0], size[1], metrics.densityDpi, captureHandler);
+            }
+            // 已有帧时立即返回；会话刚建立时等第一帧，而不是固定等待
+            final CaptureSession session = captureSession;
+            session.requestFrame(image -> {
+                Runnable releaseFrame = () -> session.releaseFrame(image);
+                // 上一次点击还在识别时，旧结果作废，以这一帧为准
+                incrementalOcr.process(image, releaseFrame, new IncrementalOcr.Callback() {
+                    @Override
+                    public void onResult(List<OcrLine> lines, int regions) {
+                        handler.post(() -> showResult(lines));
+                    }
 
-        handler.postDelayed(() -> {
-            Image image = imageReader.acquireLatestImage();
-            if (image != null) {
-                ByteBuffer buffer = image.getPlanes()[0].getBuffer();
-                int pixelStride = image.getPlanes()[0].getPixelStride();
-                int rowStride = image.getPlanes()[0].getRowStride();
-                int rowPadding = rowStride - pixelStride * width;
+                    @Override
+                    public void onError(Exception error) {
+                        if (error instanceof CancellationException) return;
+                        handler.post(() -> Toast.makeText(FloatingBallService.this,
+                                "识别失败，请再试一次", Toast.LENGTH_SHORT).show());
+                    }
+                });
+            });
+        });
+    }
 
-                Bitmap bitmap = Bitmap.createBitmap(
-                        width + rowPadding / pixelStride,
-                        height,
-                        Bitmap.Config.ARGB_8888
-                );
-                bitmap.copyPixelsFromBuffer(buffer);
-                image.close();
-                performOCR(bitmap);
-            } else {
-                Toast.makeText(this, "截图失败，请再试一次", Toast.LENGTH_SHORT).show();
-            }
-        }, 500);
+    private void showResult(List<OcrLine> lines) {
+        List<String> texts = new ArrayList<>();
+        for (OcrLine line : lines) texts.add(line.text);
+        String text = texts.isEmpty() ? "未识别到文字" : TextUtils.join("\n", texts);
+        Toast.makeText(this, "识别结果: " + text, Toast.LENGTH_LONG).show();
     }
 
-    private void performOCR(Bitmap bitmap) {
-        PaddleOCRLitePredictor predictor = new PaddleOCRLitePredictor(getApplicationContext());
-        predictor.initModels();
-        List<String> result = predictor.runOcr(bitmap);
+    /** 屏幕尺寸按当前内存等级的帧预算缩小后的截屏尺寸 */
+    private int[] captureSize() {
+        DisplayMetrics metrics = getResources().getDisplayMetrics();
+        return memoryGovernor.captureSize(metrics.widthPixels, metrics.heightPixels);
+    }
 
-        String text = result.isEmpty() ? "未识别到文字" : result.get(0);
-        Toast.makeText(this, "识别结果: " + text, Toast.LENGTH_LONG).show();
+    /** 在采集线程调用 */
+    private void releaseCaptureSession() {
+        if (captureSession != null) {
+            captureSession.release();
+            captureSession = null;
+        }
     }
 
     @Override
@@ -258,7 +302,21 @@ public void onCreate() {
         super.onDestroy();
         if (floatingView != null) windowManager.removeView(floatingView);
         if (permissionReceiver != null) unregisterReceiver(permissionReceiver);
-        if (mediaProjection != null) mediaProjection.stop();
+        if (memoryGovernor != null) memoryGovernor.removeListener(memoryListener);
+        if (captureThread != null) {
+            // 先归还排队与识别中的帧，会话才能在最后一帧归还时关闭 ImageReader
+            captureHandler.post(() -> {
+                incrementalOcr.close();
+                releaseCaptureSession();
+            });
+            captureThread.quitSafely();
+        }
+        MediaProjection projection = mediaProjection;
+        if (projection != null) projection.stop();
+        if (ocrEngine != null) {
+            ocrEngine.release();
+            ocrEngine = null;
+        }
     }
 
     @Override
@@ -0,0 +1,337 @@
+package com.reatext.app;
+
+import android.media.Image;
+import android.os.Handler;
+
+import com.alexcheng.heybossapp.ocr.OcrJob;
+
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CancellationException;
+
+/**
+ * 连续截屏的增量识别：按 64×64 块计算帧签名，与上一帧逐块比较，
+ * 只把有变化的区域送去检测与识别，未变化区域沿用上一次的结果。
+ *
+ * 变化区域按整行条带处理（文本行横向延展，按列切块容易截断行）；
+ * 与条带相交的旧行整体并入条带重新识别，保证不会半行新半行旧。
+ * 变化面积过大时直接整帧识别。process 在采集线程调用，同一时间只处理一帧。
+ *
+ * 截屏识别以最高优先级提交。上一帧还在识别时再次截屏，旧帧的任务被取消（结果已过时），
+ * 新帧等它中止后立即识别；其间再来的帧替换掉排队的那一帧，只保留最新的一次点击。
+ */
+public final class IncrementalOcr {
+    private static final int BLOCK = 64;
+    // 变化条带总高度超过此比例时整帧识别，省去拆分开销
+    private static final float FULL_FRAME_RATIO = 0.6f;
+
+    public interface Callback {
+        /** lines 为整屏结果；regions 为本次实际识别的区域数，0 表示完全沿用上次结果 */
+        void onResult(List<OcrLine> lines, int regions);
+
+        void onError(Exception error);
+    }
+
+    private final OcrEngine engine;
+    // 采集线程；被取代的帧中止后在这里识别排队的新帧
+    private final Handler handler;
+
+    // 以下字段（及 Pass 的可变字段）由 this 监视器保护
+    private int[] lastSignature;
+    private int lastWidth;
+    private int lastHeight;
+    private List<OcrLine> cachedLines = Collections.emptyList();
+    private Pass running;
+    private Pending pending;
+    private boolean closed;
+
+    public IncrementalOcr(OcrEngine engine, Handler handler) {
+        this.engine = engine;
+        this.handler = handler;
+    }
+
+    /**
+     * 识别一帧。各区域直接在 image 的缓冲上采样，全部完成（或失败）后调用 releaseFrame。
+     * 上一帧仍在识别中时取消它，本帧排队到它中止之后；被替换的排队帧立即归还，
+     * 回调收到 CancellationException。
+     */
+    public void process(Image image, Runnable releaseFrame, Callback callback) {
+        final int width = image.getWidth();
+        final int height = image.getHeight();
+        Image.Plane plane = image.getPlanes()[0];
+        ByteBuffer buffer = plane.getBuffer();
+        int pixelStride = plane.getPixelStride();
+        int rowStride = plane.getRowStride();
+
+        List<int[]> bands = null;
+        Pass pass = null;
+        Pending dropped = null;
+        boolean stopped;
+        synchronized (this) {
+            stopped = closed;
+            if (stopped) {
+                // 已 close：在锁外直接归还
+            } else if (running != null) {
+                // 上一帧的结果已经过时：取消它，本帧排到它中止之后
+                running.job.cancel();
+                dropped = pending;
+                pending = new Pending(image, releaseFrame, callback);
+            } else {
+                int[] signature = signature(buffer, rowStride, pixelStride, width, height);
+                pass = new Pass(signature, width, height, releaseFrame, callback);
+                if (lastSignature != null && width == lastWidth && height == lastHeight) {
+                    bands = dirtyBands(signature, width, height);
+                    if (bands.isEmpty()) {
+                        releaseFrame.run();
+                        callback.onResult(cachedLines, 0);
+                        return;
+                    }
+                    int covered = 0;
+                    for (int[] band : bands) covered += band[1] - band[0];
+                    if (covered > height * FULL_FRAME_RATIO) {
+                        bands = null;
+                    } else {
+                        for (OcrLine line : cachedLines) {
+                            if (!intersectsAny(line.box, bands)) pass.lines.add(line);
+                        }
+                    }
+                }
+                if (bands == null) {
+                    bands = Collections.singletonList(new int[]{0, height});
+                }
+                pass.regions = bands.size();
+                running = pass;
+            }
+        }
+        if (stopped) {
+            cancel(new Pending(image, releaseFrame, callback));
+            return;
+        }
+        if (pass == null) {
+            if (dropped != null) {
+                dropped.releaseFrame.run();
+                dropped.callback.onError(new CancellationException("superseded by a newer capture"));
+            }
+            return;
+        }
+
+        OcrFrame frame = OcrFrame.wrap(buffer, rowStride, pixelStride, width, height);
+        try {
+            for (final int[] band : bands) {
+                final Pass p = pass;
+                synchronized (this) {
+                    p.outstanding++;
+                }
+                engine.submit(frame.region(band[0], band[1]), p.job, new OcrPipeline.Callback() {
+                    @Override
+                    public void onResult(List<OcrLine> lines) {
+                        synchronized (IncrementalOcr.this) {
+                            for (OcrLine line : lines) p.lines.add(line.offset(0, band[0]));
+                        }
+                        finish(p);
+                    }
+
+                    @Override
+                    public void onError(Exception error) {
+                        synchronized (IncrementalOcr.this) {
+                            if (p.error == null) p.error = error;
+                        }
+                        finish(p);
+                    }
+                }, null);
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            synchronized (this) {
+                pass.error = e;
+            }
+        }
+        // 放开提交期间的占位计数
+        finish(pass);
+    }
+
+    /**
+     * 服务销毁时调用：取消进行中的帧，归还排队的帧；之后提交的帧直接归还。
+     * 采集线程退出后 handler 不再执行排队的处理，不在这里归还的帧会一直占着 ImageReader。
+     */
+    public void close() {
+        Pending dropped;
+        synchronized (this) {
+            closed = true;
+            if (running != null) running.job.cancel();
+            dropped = pending;
+            pending = null;
+        }
+        cancel(dropped);
+    }
+
+    private static void cancel(Pending dropped) {
+        if (dropped == null) return;
+        dropped.releaseFrame.run();
+        dropped.callback.onError(new CancellationException("capture stopped"));
+    }
+
+    /** 一帧的识别进度；outstanding 初始为 1，代表提交循环本身 */
+    private static final class Pass {
+        // 屏幕截图里的文字总是正向的，不做方向分类
+        final OcrJob job = new OcrJob(OcrJob.Priority.INTERACTIVE).setUpright(true);
+        final int[] signature;
+        final int width;
+        final int height;
+        final Runnable releaseFrame;
+        final Callback callback;
+        final List<OcrLine> lines = new ArrayList<>();
+        int regions;
+        int outstanding = 1;
+        Exception error;
+
+        Pass(int[] signature, int width, int height, Runnable releaseFrame, Callback callback) {
+            this.signature = signature;
+            this.width = width;
+            this.height = height;
+            this.releaseFrame = releaseFrame;
+            this.callback = callback;
+        }
+    }
+
+    /** 等待上一帧中止的截屏 */
+    private static final class Pending {
+        final Image image;
+        final Runnable releaseFrame;
+        final Callback callback;
+
+        Pending(Image image, Runnable releaseFrame, Callback callback) {
+            this.image = image;
+            this.releaseFrame = releaseFrame;
+            this.callback = callback;
+        }
+    }
+
+    private void finish(Pass pass) {
+        final Pending next;
+        synchronized (this) {
+            if (--pass.outstanding > 0) return;
+            if (pass.error != null) {
+                // 基准失效，下一帧整帧识别
+                lastSignature = null;
+            } else {
+                OcrLine.sortReadingOrder(pass.lines);
+                cachedLines = pass.lines;
+                lastSignature = pass.signature;
+                lastWidth = pass.width;
+                lastHeight = pass.height;
+            }
+            running = null;
+            next = pending;
+            pending = null;
+        }
+        // 所有区域都已采样完毕，帧可以归还
+        pass.releaseFrame.run();
+        if (pass.error != null) {
+            pass.callback.onError(pass.error);
+        } else {
+            pass.callback.onResult(pass.lines, pass.regions);
+        }
+        // finish 可能在流水线回调线程执行，排队的帧回到采集线程再处理；采集线程已退出时直接归还
+        if (next != null && !handler.post(() -> process(next.image, next.releaseFrame, next.callback))) {
+            cancel(next);
+        }
+    }
+
+    /** 每块一个 int 哈希，逐行按块累积；按 rowStride / pixelStride 直接读缓冲 */
+    private static int[] signature(ByteBuffer buffer, int rowStride, int pixelStride, int width, int height) {
+        int cols = (width + BLOCK - 1) / BLOCK;
+        int rows = (height + BLOCK - 1) / BLOCK;
+        int[] signature = new int[rows * cols];
+        for (int y = 0; y < height; y++) {
+            int rowStart = y * rowStride;
+            int base = (y / BLOCK) * cols;
+            for (int c = 0; c < cols; c++) {
+                int x0 = c * BLOCK;
+                int x1 = Math.min(width, x0 + BLOCK);
+                int h = signature[base + c];
+                for (int x = x0, offset = rowStart + x0 * pixelStride; x < x1; x++, offset += pixelStride) {
+                    h = 31 * h + buffer.getInt(offset);
+                }
+                signature[base + c] = h;
+            }
+        }
+        return signature;
+    }
+
+    /** 变化块所在的行向外扩一块，合并为条带；再把与条带相交的旧行整体并入，直到稳定 */
+    private List<int[]> dirtyBands(int[] signature, int width, int height) {
+        int cols = (width + BLOCK - 1) / BLOCK;
+        int rows = signature.length / cols;
+        List<int[]> bands = new ArrayList<>();
+        for (int r = 0; r < rows; r++) {
+            boolean dirty = false;
+            for (int c = 0; c < cols && !dirty; c++) {
+                dirty = signature[r * cols + c] != lastSignature[r * cols + c];
+            }
+            if (!dirty) continue;
+            int top = Math.max(0, (r - 1) * BLOCK);
+            int bottom = Math.min(height, (r + 2) * BLOCK);
+            int[] last = bands.isEmpty() ? null : bands.get(bands.size() - 1);
+            if (last != null && top <= last[1]) {
+                last[1] = Math.max(last[1], bottom);
+            } else {
+                bands.add(new int[]{top, bottom});
+            }
+        }
+
+        boolean changed = !bands.isEmpty();
+        while (changed) {
+            changed = false;
+            for (OcrLine line : cachedLines) {
+                for (int[] band : bands) {
+                    if (!intersects(line.box, band)) continue;
+                    int top = Math.max(0, (int) Math.floor(minY(line.box)) - 4);
+                    int bottom = Math.min(height, (int) Math.ceil(maxY(line.box)) + 4);
+                    if (top < band[0] || bottom > band[1]) {
+                        band[0] = Math.min(band[0], top);
+                        band[1] = Math.max(band[1], bottom);
+                        changed = true;
+                    }
+                }
+            }
+            changed |= mergeOverlapping(bands);
+        }
+        return bands;
+    }
+
+    private static boolean mergeOverlapping(List<int[]> bands) {
+        boolean merged = false;
+        for (int i = bands.size() - 1; i > 0; i--) {
+            int[] prev = bands.get(i - 1);
+            int[] band = bands.get(i);
+            if (band[0] <= prev[1]) {
+                prev[1] = Math.max(prev[1], band[1]);
+                bands.remove(i);
+                merged = true;
+            }
+        }
+        return merged;
+    }
+
+    private static boolean intersectsAny(float[] box, List<int[]> bands) {
+        for (int[] band : bands) {
+            if (intersects(box, band)) return true;
+        }
+        return false;
+    }
+
+    private static boolean intersects(float[] box, int[] band) {
+        return maxY(box) >= band[0] && minY(box) < band[1];
+    }
+
+    private static float minY(float[] box) {
+        return Math.min(Math.min(box[1], box[3]), Math.min(box[5], box[7]));
+    }
+
+    private static float maxY(float[] box) {
+        return Math.max(Math.max(box[1], box[3]), Math.max(box[5], box[7]));
+    }
+}
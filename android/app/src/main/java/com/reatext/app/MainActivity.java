@@ -4,22 +4,53 @@ import android.content.Intent;
 import android.net.Uri;
 import android.os.Bundle;
 import android.util.Log;
+import android.webkit.WebView;
 
+import com.alexcheng.heybossapp.ocr.OcrPlugin;
 import com.getcapacitor.BridgeActivity;
 import com.getcapacitor.PluginCall;
 import com.getcapacitor.PluginResult;
+import com.getcapacitor.WebViewListener;
 
 import org.json.JSONException;
 import org.json.JSONObject;
 
+import java.util.ArrayList;
+import java.util.List;
+
 public class MainActivity extends BridgeActivity {
 
+    private OcrEngine ocrEngine;
+    private PdfOcrSession pdfSession;
+    private WebChannel webChannel;
+
     @Override
     protected void onCreate(Bundle savedInstanceState) {
+        // 插件在 super.onCreate 中加载，需提前注入引擎
+        ocrEngine = OcrEngine.get(this);
+        ocrEngine.acquire();
+        OcrPlugin.setEngineBridge(ocrEngine);
+
         super.onCreate(savedInstanceState);
 
+        // 开发时 server.url 指向开发服务器，否则页面来自 Capacitor 本地服务器
+        String appUrl = bridge.getServerUrl() != null ? bridge.getServerUrl() : bridge.getLocalUrl();
+        // 每次页面加载完成重新握手；页面就绪之前发出的帧在通道中排队，冷启动时识别不必等页面
+        webChannel = new WebChannel(bridge.getWebView(), appUrl);
+        bridge.addWebViewListener(new WebViewListener() {
+            @Override
+            public void onPageLoaded(WebView webView) {
+                webChannel.connect();
+            }
+        });
+
         // ✅ 处理 PDF 文件 intent
         handlePDFIntent(getIntent());
+
+        // 预热模型与输入形状，首次截屏不必等加载；低内存设备上模型仍按需加载
+        if (pdfSession == null && !MemoryGovernor.get(this).isLowRamDevice()) {
+            ocrEngine.warmUp();
+        }
     }
 
     @Override
@@ -31,21 +62,97 @@ public class MainActivity extends BridgeActivity {
     private void handlePDFIntent(Intent intent) {
         Uri pdfUri = intent.getData();
         if (pdfUri != null) {
-            String pdfPath = pdfUri.toString();
-            Log.d("MainActivity", "Received PDF URI: " + pdfPath);
-
-            // ✅ 将 PDF 路径发送到 WebView（前端）
-            // 页面需监听 window.addEventListener('message', ...)
-            bridge.getWebView().post(() -> {
-                String js = "window.dispatchEvent(new CustomEvent('pdfReceived', { detail: { uri: '" + pdfPath + "' }}));";
-                bridge.getWebView().evaluateJavascript(js, null);
-            });
+            Log.d("MainActivity", "Received PDF URI: " + pdfUri);
+            startPdfOcr(pdfUri);
+        }
+    }
+
+    /**
+     * 原生逐页渲染并识别，结果经 {@link WebChannel} 逐帧推送到前端（s 为 PDF 的 URI）：
+     * start { s, n: 页数 } → 每页 page { s, p: 页序, n, w, h, l: 行数 }，随后 l 个 line { s, p, x, c, b }
+     * → done { s, n }；失败时 error { s, p, m }，p 为 -1 表示整本失败
+     */
+    private void startPdfOcr(Uri pdfUri) {
+        // 新文档打开时放弃旧文档尚未渲染的页面，以及还在通道里排队的旧结果
+        if (pdfSession != null) {
+            pdfSession.cancel();
+            webChannel.discardPending();
+        }
+        final String uri = pdfUri.toString();
+        pdfSession = new PdfOcrSession(this, ocrEngine, pdfUri, new PdfOcrSession.Listener() {
+            @Override
+            public void onStart(int pageCount) {
+                JSONObject frame = pdfFrame("start", uri);
+                put(frame, "n", pageCount);
+                webChannel.send(frame.toString());
+            }
+
+            /** 在流水线回调线程序列化，整页的帧一次交给通道 */
+            @Override
+            public void onPage(int index, int pageCount, List<OcrLine> lines, int width, int height) {
+                List<String> frames = new ArrayList<>(lines.size() + 1);
+                try {
+                    JSONObject page = pdfFrame("page", uri);
+                    page.put("p", index);
+                    page.put("n", pageCount);
+                    page.put("w", width);
+                    page.put("h", height);
+                    page.put("l", lines.size());
+                    frames.add(page.toString());
+                    for (OcrLine line : lines) {
+                        JSONObject frame = line.toFrame();
+                        frame.put("k", "line");
+                        frame.put("s", uri);
+                        frame.put("p", index);
+                        frames.add(frame.toString());
+                    }
+                } catch (JSONException e) {
+                    onError(index, e);
+                    return;
+                }
+                webChannel.send(frames);
+            }
+
+            @Override
+            public void onError(int index, Exception error) {
+                JSONObject frame = pdfFrame("error", uri);
+                put(frame, "p", index);
+                put(frame, "m", String.valueOf(error.getMessage()));
+                webChannel.send(frame.toString());
+            }
+
+            @Override
+            public void onComplete(int pageCount) {
+                JSONObject frame = pdfFrame("done", uri);
+                put(frame, "n", pageCount);
+                webChannel.send(frame.toString());
+            }
+        });
+        pdfSession.start();
+    }
+
+    private static JSONObject pdfFrame(String kind, String uri) {
+        JSONObject frame = new JSONObject();
+        put(frame, "k", kind);
+        put(frame, "s", uri);
+        return frame;
+    }
+
+    private static void put(JSONObject object, String key, Object value) {
+        try {
+            object.put(key, value);
+        } catch (JSONException e) {
+            Log.w("MainActivity", "put " + key + " failed", e);
         }
     }
 
     @Override
     public void onDestroy() {
         super.onDestroy();
+        if (pdfSession != null) pdfSession.cancel();
+        if (webChannel != null) webChannel.close();
+        ocrEngine.cancelWarmUp();
         stopService(new Intent(this, FloatingBallService.class));
+        ocrEngine.release();
     }
 }
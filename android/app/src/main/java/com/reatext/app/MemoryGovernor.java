@@ -0,0 +1,213 @@
+package com.reatext.app;
+
+import android.app.ActivityManager;
+import android.content.ComponentCallbacks2;
+import android.content.Context;
+import android.content.res.Configuration;
+import android.os.Handler;
+import android.os.Looper;
+import android.util.Log;
+
+import org.json.JSONArray;
+import org.json.JSONException;
+import org.json.JSONObject;
+
+import java.util.ArrayDeque;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+/**
+ * 进程级内存调控：由 onTrimMemory / onLowMemory 与 {@link ActivityManager#isLowRamDevice} 决定内存等级，
+ * 通知 {@link OcrEngine}、{@link FloatingBallService} 等释放空闲模型、收缩实例池与缓存，
+ * 并按等级对应的字节预算降低截屏分辨率与检测边长。
+ *
+ * 收到通知后 {@link #HOLD_MS} 内没有新的通知才恢复到 NORMAL；每次变化的释放情况记录在 {@link #stats()}。
+ * 回调都在主线程执行。
+ */
+public final class MemoryGovernor implements ComponentCallbacks2 {
+    private static final String TAG = "MemoryGovernor";
+    private static final long HOLD_MS = 60_000;
+    // 单帧（截屏 RGBA、检测输入 float）的字节预算；低内存设备在 NORMAL 时也用 LOW 的预算
+    private static final long LOW_FRAME_BUDGET = 8L << 20;
+    private static final long CRITICAL_FRAME_BUDGET = 4L << 20;
+    private static final int MIN_DET_SIDE = 480;
+    private static final int MAX_RECENT = 8;
+
+    public enum Level {
+        NORMAL, LOW, CRITICAL
+    }
+
+    public interface Listener {
+        /** 等级变化时回调；把释放了什么记进 eviction */
+        void onMemoryLevel(Level level, Eviction eviction);
+    }
+
+    /** 一次等级变化中各方释放的内容，键由各监听方自定 */
+    public static final class Eviction {
+        private final JSONObject details = new JSONObject();
+
+        Eviction(Level level, String reason) {
+            record("level", level.name());
+            record("reason", reason);
+            record("at", System.currentTimeMillis());
+        }
+
+        public void record(String key, Object value) {
+            try {
+                details.put(key, value);
+            } catch (JSONException e) {
+                Log.w(TAG, "record failed", e);
+            }
+        }
+    }
+
+    private static MemoryGovernor instance;
+
+    private final Handler handler = new Handler(Looper.getMainLooper());
+    private final Runnable recovered = () -> setLevel(Level.NORMAL, "recovered");
+    private final CopyOnWriteArrayList<Listener> listeners = new CopyOnWriteArrayList<>();
+    private final boolean lowRamDevice;
+    private final int memoryClassMb;
+
+    private volatile Level level = Level.NORMAL;
+    // 以下字段由 this 监视器保护
+    private final ArrayDeque<JSONObject> recent = new ArrayDeque<>();
+    private int changes;
+
+    private MemoryGovernor(Context context) {
+        ActivityManager am = (ActivityManager) context.getSystemService(Context.ACTIVITY_SERVICE);
+        lowRamDevice = am != null && am.isLowRamDevice();
+        memoryClassMb = am != null ? am.getMemoryClass() : 0;
+    }
+
+    /** 调控器是进程级单例，回调不注销 */
+    public static synchronized MemoryGovernor get(Context context) {
+        if (instance == null) {
+            instance = new MemoryGovernor(context);
+            context.getApplicationContext().registerComponentCallbacks(instance);
+        }
+        return instance;
+    }
+
+    public void addListener(Listener listener) {
+        listeners.add(listener);
+    }
+
+    public void removeListener(Listener listener) {
+        listeners.remove(listener);
+    }
+
+    public Level level() {
+        return level;
+    }
+
+    public boolean isLowRamDevice() {
+        return lowRamDevice;
+    }
+
+    /** 当前等级的单帧字节预算，0 为不限 */
+    public long frameBudgetBytes() {
+        switch (level) {
+            case CRITICAL:
+                return CRITICAL_FRAME_BUDGET;
+            case LOW:
+                return LOW_FRAME_BUDGET;
+            default:
+                return lowRamDevice ? LOW_FRAME_BUDGET : 0;
+        }
+    }
+
+    /** 检测输入（3 × side × side 个 float）不超出预算的最大边长，32 的倍数 */
+    public int detLimitSide() {
+        long budget = frameBudgetBytes();
+        if (budget == 0) return PaddleOCRLitePredictor.DET_LIMIT_SIDE;
+        int side = (int) Math.sqrt(budget / 12.0) / 32 * 32;
+        return Math.max(MIN_DET_SIDE, Math.min(PaddleOCRLitePredictor.DET_LIMIT_SIDE, side));
+    }
+
+    /** 截屏尺寸：RGBA 帧不超出预算时原样返回，否则等比缩小（取偶数） */
+    public int[] captureSize(int width, int height) {
+        long budget = frameBudgetBytes();
+        long bytes = (long) width * height * 4;
+        if (budget == 0 || bytes <= budget) return new int[]{width, height};
+        double scale = Math.sqrt((double) budget / bytes);
+        return new int[]{Math.max(2, (int) (width * scale) & ~1), Math.max(2, (int) (height * scale) & ~1)};
+    }
+
+    @Override
+    public void onTrimMemory(int level) {
+        switch (level) {
+            case TRIM_MEMORY_RUNNING_CRITICAL:
+            case TRIM_MEMORY_COMPLETE:
+                onPressure(Level.CRITICAL, "trim " + level);
+                break;
+            case TRIM_MEMORY_RUNNING_LOW:
+            case TRIM_MEMORY_BACKGROUND:
+            case TRIM_MEMORY_MODERATE:
+                // 低内存设备余量小，提早进入 CRITICAL
+                onPressure(lowRamDevice ? Level.CRITICAL : Level.LOW, "trim " + level);
+                break;
+            default:
+                // RUNNING_MODERATE 尚不紧张；UI_HIDDEN 只表示界面退到后台
+                break;
+        }
+    }
+
+    @Override
+    public void onLowMemory() {
+        onPressure(Level.CRITICAL, "lowMemory");
+    }
+
+    @Override
+    public void onConfigurationChanged(Configuration newConfig) {
+    }
+
+    /**
+     * 只升不降，降级靠恢复计时；每次通知都顺延恢复时间。
+     * 重复的 CRITICAL 通知也再分发一次，释放期间重新加载的内容。
+     */
+    private void onPressure(Level next, String reason) {
+        handler.removeCallbacks(recovered);
+        handler.postDelayed(recovered, HOLD_MS);
+        if (next.ordinal() > level.ordinal() || next == Level.CRITICAL) setLevel(next, reason);
+    }
+
+    private void setLevel(Level next, String reason) {
+        if (next == Level.NORMAL && level == Level.NORMAL) return;
+        level = next;
+        Eviction eviction = new Eviction(next, reason);
+        eviction.record("frameBudgetBytes", frameBudgetBytes());
+        eviction.record("detLimitSide", detLimitSide());
+        for (Listener listener : listeners) {
+            try {
+                listener.onMemoryLevel(next, eviction);
+            } catch (RuntimeException e) {
+                Log.w(TAG, "listener failed", e);
+            }
+        }
+        synchronized (this) {
+            changes++;
+            recent.addFirst(eviction.details);
+            while (recent.size() > MAX_RECENT) recent.removeLast();
+        }
+        Log.d(TAG, "memory level " + next + ": " + eviction.details);
+    }
+
+    /** 当前等级、预算与最近几次变化的释放记录（新的在前） */
+    public synchronized JSONObject stats() {
+        JSONObject stats = new JSONObject();
+        try {
+            stats.put("level", level.name());
+            stats.put("lowRamDevice", lowRamDevice);
+            stats.put("memoryClassMb", memoryClassMb);
+            stats.put("frameBudgetBytes", frameBudgetBytes());
+            stats.put("detLimitSide", detLimitSide());
+            stats.put("changes", changes);
+            JSONArray list = new JSONArray();
+            for (JSONObject entry : recent) list.put(entry);
+            stats.put("recent", list);
+        } catch (JSONException e) {
+            Log.w(TAG, "stats failed", e);
+        }
+        return stats;
+    }
+}
@@ -0,0 +1,240 @@
+package com.reatext.app;
+
+import android.content.Context;
+import android.content.pm.PackageInfo;
+import android.content.pm.PackageManager;
+import android.content.res.AssetFileDescriptor;
+import android.os.Build;
+import android.util.Log;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileNotFoundException;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.channels.ReadableByteChannel;
+import java.util.HashSet;
+import java.util.Set;
+import java.util.zip.CRC32;
+
+/**
+ * 模型文件缓存。
+ *
+ * - 按 versionCode + 安装时间分目录，App 升级后自动换新目录并清理旧版本；
+ * - 先写临时文件、fsync 后原子 rename，再写 .crc 记录（长度 + CRC32 + 校验时的修改时间），
+ *   没有 .crc 或校验不符的文件一律重新解压，被杀进程留下的半截文件不会被信任；
+ * - 长度与修改时间都和记录一致时沿用记录的校验结果，冷启动不再整读模型算 CRC，任一项变化才重新计算；
+ * - 资源未压缩时（build.gradle 中 noCompress 'nb'）直接 mmap APK 中的区段写出，数据不经过 Java 堆缓冲。
+ *
+ * Paddle Lite 的 Java 接口只接受文件路径或 String 形式的模型，无法直接从 APK 偏移处加载，
+ * 所以落盘这一步省不掉，只能让它只发生一次且足够快。
+ */
+public final class ModelStore {
+    private static final String TAG = "ModelStore";
+    private static final String DIR_PREFIX = "models-v";
+    private static final int STREAM_BUFFER_SIZE = 64 * 1024;
+
+    // 本进程内已校验过的文件，避免每次加载都重新计算 CRC
+    private static final Set<String> verified = new HashSet<>();
+
+    private final Context context;
+    private final File root;
+
+    public ModelStore(Context context) {
+        this.context = context.getApplicationContext();
+        this.root = new File(this.context.getCacheDir(), DIR_PREFIX + versionKey(this.context));
+    }
+
+    /** 返回可供 MobileConfig.setModelFromFile 使用的本地路径，必要时从 assets 解压 */
+    public String modelPath(String assetPath) throws IOException {
+        File target = new File(root, assetPath);
+        String path = target.getAbsolutePath();
+        synchronized (verified) {
+            if (verified.contains(path)) return path;
+            if (isIntact(target)) {
+                verified.add(path);
+                return path;
+            }
+
+            File parent = target.getParentFile();
+            if (!parent.exists() && !parent.mkdirs()) {
+                throw new IOException("cannot create " + parent);
+            }
+            long start = System.currentTimeMillis();
+            long crc = extract(assetPath, target);
+            writeRecord(target, target.length(), crc);
+            verified.add(path);
+            Log.d(TAG, "extracted " + assetPath + " in " + (System.currentTimeMillis() - start) + " ms");
+
+            deleteStaleVersions();
+            return path;
+        }
+    }
+
+    private boolean isIntact(File target) {
+        File record = recordFile(target);
+        if (!target.isFile() || !record.isFile()) return false;
+        try {
+            String[] parts = readSmallFile(record).trim().split(":");
+            long length = Long.parseLong(parts[0]);
+            long crc = Long.parseLong(parts[1]);
+            if (target.length() != length) return false;
+            // 早期的记录没有修改时间，校验一次后补上
+            long modified = target.lastModified();
+            if (parts.length > 2 && modified != 0 && modified == Long.parseLong(parts[2])) return true;
+            if (crcOf(target) != crc) return false;
+            writeRecord(target, length, crc);
+            return true;
+        } catch (IOException | RuntimeException e) {
+            Log.w(TAG, "invalid record for " + target + ", re-extracting", e);
+            return false;
+        }
+    }
+
+    /** 解压到同目录临时文件，完成后原子替换目标，返回内容 CRC32 */
+    private long extract(String assetPath, File target) throws IOException {
+        File tmp = new File(target.getParentFile(), target.getName() + ".tmp");
+        CRC32 crc = new CRC32();
+        try (FileOutputStream os = new FileOutputStream(tmp);
+             FileChannel out = os.getChannel()) {
+            if (!copyMapped(assetPath, out, crc)) {
+                copyStreamed(assetPath, out, crc);
+            }
+            out.force(true);
+        }
+        if (!tmp.renameTo(target)) {
+            tmp.delete();
+            throw new IOException("rename failed: " + tmp);
+        }
+        return crc.getValue();
+    }
+
+    /** 未压缩资源：mmap APK 中对应区段，CRC 与写出共用同一份映射 */
+    private boolean copyMapped(String assetPath, FileChannel out, CRC32 crc) throws IOException {
+        AssetFileDescriptor afd;
+        try {
+            afd = context.getAssets().openFd(assetPath);
+        } catch (FileNotFoundException e) {
+            return false; // 资源被压缩，只能走流式解压
+        }
+        try (FileInputStream fis = afd.createInputStream();
+             FileChannel in = fis.getChannel()) {
+            long length = afd.getLength();
+            MappedByteBuffer mapped = in.map(FileChannel.MapMode.READ_ONLY, afd.getStartOffset(), length);
+            updateCrc(crc, mapped.duplicate());
+            while (mapped.hasRemaining()) {
+                out.write(mapped);
+            }
+            return true;
+        } finally {
+            afd.close();
+        }
+    }
+
+    private void copyStreamed(String assetPath, FileChannel out, CRC32 crc) throws IOException {
+        ByteBuffer buffer = ByteBuffer.allocateDirect(STREAM_BUFFER_SIZE);
+        try (InputStream is = context.getAssets().open(assetPath);
+             ReadableByteChannel in = Channels.newChannel(is)) {
+            while (in.read(buffer) != -1) {
+                buffer.flip();
+                updateCrc(crc, buffer.duplicate());
+                while (buffer.hasRemaining()) {
+                    out.write(buffer);
+                }
+                buffer.clear();
+            }
+        }
+    }
+
+    private void writeRecord(File target, long length, long crc) throws IOException {
+        File record = recordFile(target);
+        File tmp = new File(record.getParentFile(), record.getName() + ".tmp");
+        try (FileOutputStream os = new FileOutputStream(tmp)) {
+            os.write((length + ":" + crc + ":" + target.lastModified()).getBytes("UTF-8"));
+            os.getFD().sync();
+        }
+        if (!tmp.renameTo(record)) {
+            tmp.delete();
+            throw new IOException("rename failed: " + tmp);
+        }
+    }
+
+    private static long crcOf(File file) throws IOException {
+        try (FileInputStream fis = new FileInputStream(file);
+             FileChannel channel = fis.getChannel()) {
+            CRC32 crc = new CRC32();
+            updateCrc(crc, channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size()));
+            return crc.getValue();
+        }
+    }
+
+    /** CRC32.update(ByteBuffer) 需要 API 26，这里分块拷到堆上计算 */
+    private static void updateCrc(CRC32 crc, ByteBuffer buffer) {
+        byte[] chunk = new byte[Math.min(STREAM_BUFFER_SIZE, Math.max(1, buffer.remaining()))];
+        while (buffer.hasRemaining()) {
+            int n = Math.min(chunk.length, buffer.remaining());
+            buffer.get(chunk, 0, n);
+            crc.update(chunk, 0, n);
+        }
+    }
+
+    private static String readSmallFile(File file) throws IOException {
+        try (FileInputStream fis = new FileInputStream(file)) {
+            byte[] bytes = new byte[(int) file.length()];
+            int read = 0;
+            while (read < bytes.length) {
+                int n = fis.read(bytes, read, bytes.length - read);
+                if (n < 0) break;
+                read += n;
+            }
+            return new String(bytes, 0, read, "UTF-8");
+        }
+    }
+
+    private static File recordFile(File target) {
+        return new File(target.getParentFile(), target.getName() + ".crc");
+    }
+
+    /** 清理旧版本目录以及早期未分版本的 cache/models */
+    private void deleteStaleVersions() {
+        File cacheDir = context.getCacheDir();
+        File[] children = cacheDir.listFiles();
+        if (children == null) return;
+        for (File child : children) {
+            String name = child.getName();
+            boolean stale = name.equals("models")
+                    || (name.startsWith(DIR_PREFIX) && !child.equals(root));
+            if (stale && child.isDirectory()) {
+                deleteRecursively(child);
+                Log.d(TAG, "deleted stale model dir " + name);
+            }
+        }
+    }
+
+    private static void deleteRecursively(File file) {
+        File[] children = file.listFiles();
+        if (children != null) {
+            for (File child : children) deleteRecursively(child);
+        }
+        file.delete();
+    }
+
+    @SuppressWarnings("deprecation")
+    static String versionKey(Context context) {
+        try {
+            PackageInfo info = context.getPackageManager().getPackageInfo(context.getPackageName(), 0);
+            long versionCode = Build.VERSION.SDK_INT >= Build.VERSION_CODES.P
+                    ? info.getLongVersionCode()
+                    : info.versionCode;
+            // 同一 versionCode 的调试包重装时 lastUpdateTime 也会变化
+            return versionCode + "-" + info.lastUpdateTime;
+        } catch (PackageManager.NameNotFoundException e) {
+            return "0";
+        }
+    }
+}
@@ -0,0 +1,588 @@
+package com.reatext.app;
+
+import android.content.Context;
+import android.graphics.Bitmap;
+import android.os.Build;
+import android.os.Handler;
+import android.os.Looper;
+import android.os.PowerManager;
+import android.os.Process;
+import android.util.DisplayMetrics;
+import android.util.Log;
+
+import com.alexcheng.heybossapp.ocr.BufferPool;
+import com.alexcheng.heybossapp.ocr.OcrEngineBridge;
+import com.alexcheng.heybossapp.ocr.OcrJob;
+import com.reatext.ocr.core.CtcDecoder;
+
+import org.json.JSONArray;
+import org.json.JSONException;
+import org.json.JSONObject;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * 进程级 OCR 引擎：模型只加载一次，由 FloatingBallService / MainActivity / OcrPlugin 引用计数持有。
+ * 检测、分类、识别模型各在对应阶段首次使用时加载；引用归零且空闲超过 {@link #IDLE_TIMEOUT_MS}
+ * 后全部卸载，下次调用时再懒加载。
+ * 推理经 {@link OcrPipeline} 分段执行，不占用调用线程。
+ */
+public final class OcrEngine implements OcrEngineBridge, OcrPipeline.Host {
+    private static final String TAG = "OcrEngine";
+    private static final long IDLE_TIMEOUT_MS = 60_000;
+    // 内存紧张（LOW）时结果缓存内存层保留的条数；CRITICAL 时全部清出内存
+    private static final int LOW_FRAME_ENTRIES = 16;
+    private static final int LOW_REC_ENTRIES = 512;
+
+    private static OcrEngine instance;
+
+    private final Context appContext;
+    private final Handler handler = new Handler(Looper.getMainLooper());
+    private final Runnable idleRelease = this::releaseIfIdle;
+
+    // 流水线各阶段持读锁并行推理（各用各的模型）；加载、卸载持写锁独占
+    private final ReentrantReadWriteLock modelLock = new ReentrantReadWriteLock();
+    private volatile PaddleOCRLitePredictor predictor;
+    private final OcrPipeline pipeline = new OcrPipeline(this);
+
+    // 整帧结果缓存（内存 + 磁盘）与识别裁剪缓存（仅内存，供预测器使用）
+    private final String modelVersion;
+    private final ResultCache<List<OcrLine>> frameCache;
+    private final ResultCache<CtcDecoder.Result> recCache = new ResultCache<>("rec", 2048);
+    private final RuntimeTuner tuner;
+    private boolean tuningStarted;
+    // 进行中的预热；任何真实识别提交时取消
+    private volatile OcrJob warmUpJob;
+
+    // 分类、识别实例池的并行度随温控状态与内存等级降低
+    private volatile int thermalStatus;
+    private final MemoryGovernor governor;
+    // 缓冲池的正常预算，内存紧张时临时调低、恢复时还原；只在主线程访问
+    private long normalPoolBudget;
+
+    // 以下字段由 this 监视器保护
+    private int refCount;
+    private int activeRuns;
+    private long runsStarted;
+
+    private OcrEngine(Context context) {
+        this.appContext = context.getApplicationContext();
+        this.tuner = new RuntimeTuner(appContext);
+        this.modelVersion = ModelStore.versionKey(appContext);
+        this.frameCache = new ResultCache<>("frame", 64,
+                new File(appContext.getCacheDir(), "ocr-results"), 256, new LinesCodec());
+        this.governor = MemoryGovernor.get(appContext);
+        watchPressure();
+    }
+
+    /** 引擎是进程级单例，监听不注销 */
+    private void watchPressure() {
+        if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.Q) {
+            PowerManager pm = (PowerManager) appContext.getSystemService(Context.POWER_SERVICE);
+            if (pm != null) {
+                thermalStatus = pm.getCurrentThermalStatus();
+                pm.addThermalStatusListener(status -> {
+                    thermalStatus = status;
+                    applyParallelism();
+                });
+            }
+        }
+        governor.addListener(this::onMemoryLevel);
+    }
+
+    /**
+     * 内存等级变化（主线程）：调整实例池并行度与检测边长，收缩缓冲池与结果缓存；
+     * CRITICAL 时若没有进行中的识别，整个卸载预测器，下次使用时再懒加载。释放情况记入 eviction。
+     */
+    private void onMemoryLevel(MemoryGovernor.Level level, MemoryGovernor.Eviction eviction) {
+        BufferPool pool = BufferPool.get();
+        if (normalPoolBudget == 0) normalPoolBudget = pool.getBudget();
+        if (level == MemoryGovernor.Level.CRITICAL) cancelWarmUp();
+
+        PaddleOCRLitePredictor p = predictor;
+        if (p != null) {
+            eviction.record("predictorInstancesUnloaded", p.setParallelism(parallelism()));
+            eviction.record("detBuffersRecycleScheduled", p.setDetLimitSide(governor.detLimitSide()));
+        }
+        switch (level) {
+            case CRITICAL:
+                eviction.record("predictorReleased", releasePredictorIfIdle());
+                eviction.record("frameCacheEvicted", frameCache.trimMemory(0));
+                eviction.record("recCacheEvicted", recCache.trimMemory(0));
+                eviction.record("bufferPoolBytes", pool.trimTo(0));
+                pool.setBudget(normalPoolBudget / 4);
+                break;
+            case LOW:
+                eviction.record("frameCacheEvicted", frameCache.trimMemory(LOW_FRAME_ENTRIES));
+                eviction.record("recCacheEvicted", recCache.trimMemory(LOW_REC_ENTRIES));
+                eviction.record("bufferPoolBytes", pool.trimTo(normalPoolBudget / 2));
+                pool.setBudget(normalPoolBudget / 2);
+                break;
+            default:
+                pool.setBudget(normalPoolBudget);
+                break;
+        }
+    }
+
+    /** 严重过热或内存紧张时单实例，中度过热时减半，否则用满大核 */
+    private int parallelism() {
+        int capacity = PaddleOCRLitePredictor.poolCapacity();
+        if (governor.level() != MemoryGovernor.Level.NORMAL
+                || thermalStatus >= PowerManager.THERMAL_STATUS_SEVERE) return 1;
+        if (thermalStatus >= PowerManager.THERMAL_STATUS_MODERATE) return Math.max(1, capacity / 2);
+        return capacity;
+    }
+
+    private void applyParallelism() {
+        PaddleOCRLitePredictor p = predictor;
+        if (p != null) p.setParallelism(parallelism());
+    }
+
+    public static synchronized OcrEngine get(Context context) {
+        if (instance == null) {
+            instance = new OcrEngine(context);
+        }
+        return instance;
+    }
+
+    @Override
+    public synchronized void acquire() {
+        refCount++;
+        handler.removeCallbacks(idleRelease);
+    }
+
+    @Override
+    public synchronized void release() {
+        if (refCount == 0) {
+            Log.w(TAG, "release() called without matching acquire()");
+            return;
+        }
+        refCount--;
+        scheduleIdleReleaseLocked();
+    }
+
+    /**
+     * 异步识别：像素在调用线程读取，之后各阶段在流水线线程执行，
+     * 结果经 callbackHandler 回调（为 null 时在流水线的 ocr-callback 线程回调，缓存命中时在调用线程）。本优先级的流水线队列满时阻塞调用方。
+     * 像素数组取自 BufferPool，识别结束后归还。
+     */
+    public void submit(Bitmap bitmap, OcrJob job, final OcrPipeline.Callback callback, Handler callbackHandler)
+            throws InterruptedException {
+        final OcrFrame frame = OcrFrame.of(bitmap);
+        try {
+            submit(frame, job, new OcrPipeline.Callback() {
+                @Override
+                public void onResult(List<OcrLine> lines) {
+                    frame.recycle();
+                    callback.onResult(lines);
+                }
+
+                @Override
+                public void onError(Exception error) {
+                    frame.recycle();
+                    callback.onError(error);
+                }
+            }, callbackHandler);
+        } catch (InterruptedException e) {
+            frame.recycle();
+            throw e;
+        }
+    }
+
+    /**
+     * 直接提交一帧；缓冲帧在回调之前须保持有效。
+     * 先按感知哈希查结果缓存，命中时不经过流水线直接回调。
+     * job 决定调度优先级；job 取消后回调收到 CancellationException。
+     */
+    public void submit(OcrFrame frame, OcrJob job, final OcrPipeline.Callback callback, Handler callbackHandler)
+            throws InterruptedException {
+        cancelWarmUp();
+        if (job.isCancelled()) {
+            OcrMetrics.count(OcrMetrics.Counter.FRAMES_CANCELLED, 1);
+            final Exception cancelled = new CancellationException("OCR job cancelled");
+            if (callbackHandler != null) {
+                callbackHandler.post(() -> callback.onError(cancelled));
+            } else {
+                callback.onError(cancelled);
+            }
+            return;
+        }
+        final long start = System.nanoTime();
+        // 跳过方向分类、调低检测边长的结果可能不同，与完整流程的结果分开缓存
+        final String key = PerceptualHash.frameKey(cacheNamespace(job), frame);
+        final List<OcrLine> cached = frameCache.get(key);
+        if (cached != null) {
+            OcrMetrics.count(OcrMetrics.Counter.FRAME_CACHE_HITS, 1);
+            if (callbackHandler != null) {
+                callbackHandler.post(() -> callback.onResult(cached));
+            } else {
+                callback.onResult(cached);
+            }
+            return;
+        }
+
+        beginRun();
+        try {
+            pipeline.submit(frame, job, new OcrPipeline.Callback() {
+                @Override
+                public void onResult(List<OcrLine> lines) {
+                    endRun();
+                    // 缓存与回调共享同一份结果，置为只读
+                    lines = Collections.unmodifiableList(lines);
+                    frameCache.put(key, lines);
+                    OcrMetrics.lap(OcrMetrics.Stage.TOTAL, start);
+                    callback.onResult(lines);
+                }
+
+                @Override
+                public void onError(Exception error) {
+                    endRun();
+                    callback.onError(error);
+                }
+            }, callbackHandler);
+        } catch (InterruptedException e) {
+            endRun();
+            throw e;
+        }
+    }
+
+    private String cacheNamespace(OcrJob job) {
+        String namespace = job.isUpright() ? modelVersion + "/upright" : modelVersion;
+        int side = governor.detLimitSide();
+        return side == PaddleOCRLitePredictor.DET_LIMIT_SIDE ? namespace : namespace + "/det" + side;
+    }
+
+    @Override
+    public void recognize(Bitmap bitmap, OcrJob job, final RecognitionCallback callback)
+            throws InterruptedException {
+        submit(bitmap, job, new OcrPipeline.Callback() {
+            @Override
+            public void onResult(List<OcrLine> lines) {
+                JSONArray json = new JSONArray();
+                try {
+                    for (OcrLine line : lines) json.put(line.toJson());
+                } catch (JSONException e) {
+                    callback.onError(e);
+                    return;
+                }
+                callback.onResult(json);
+            }
+
+            @Override
+            public void onError(Exception error) {
+                callback.onError(error);
+            }
+        }, null);
+    }
+
+    public List<String> runOcr(Bitmap bitmap) {
+        List<String> texts = new ArrayList<>();
+        for (OcrLine line : runOcrLines(bitmap)) {
+            texts.add(line.text);
+        }
+        return texts;
+    }
+
+    /** 同步识别，阻塞到结果返回；带文本框与置信度，低置信度行已过滤。不要在主线程调用 */
+    public List<OcrLine> runOcrLines(Bitmap bitmap) {
+        final CountDownLatch done = new CountDownLatch(1);
+        final List<OcrLine> result = new ArrayList<>();
+        final Exception[] failure = new Exception[1];
+        try {
+            submit(bitmap, new OcrJob(OcrJob.Priority.UPLOAD), new OcrPipeline.Callback() {
+                @Override
+                public void onResult(List<OcrLine> lines) {
+                    result.addAll(lines);
+                    done.countDown();
+                }
+
+                @Override
+                public void onError(Exception error) {
+                    failure[0] = error;
+                    done.countDown();
+                }
+            }, null);
+            done.await();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("OCR interrupted", e);
+        }
+        if (failure[0] instanceof RuntimeException) throw (RuntimeException) failure[0];
+        if (failure[0] != null) throw new IllegalStateException("OCR failed", failure[0]);
+        return result;
+    }
+
+    /**
+     * 在后台低优先级线程加载检测、识别模型并预热各输入形状（检测按屏幕尺寸），
+     * 使首次截屏识别不必等待模型加载与形状规划。已在预热时忽略。
+     * 任何真实识别提交时自动取消；正在执行的一步跑完后让出。
+     */
+    public void warmUp() {
+        final OcrJob job = new OcrJob(OcrJob.Priority.BATCH);
+        synchronized (this) {
+            if (warmUpJob != null) return;
+            warmUpJob = job;
+        }
+        // 按悬浮球截屏的实际尺寸预热（内存预算可能使其小于屏幕）
+        DisplayMetrics display = appContext.getResources().getDisplayMetrics();
+        int[] size = governor.captureSize(display.widthPixels, display.heightPixels);
+        final int width = size[0];
+        final int height = size[1];
+        beginRun();
+        Thread thread = new Thread(() -> {
+            Process.setThreadPriority(Process.THREAD_PRIORITY_BACKGROUND);
+            long start = System.currentTimeMillis();
+            try {
+                PaddleOCRLitePredictor p = enterStage();
+                try {
+                    p.warmUp(width, height, job);
+                } finally {
+                    exitStage();
+                }
+                Log.d(TAG, "warm-up finished in " + (System.currentTimeMillis() - start) + " ms");
+            } catch (CancellationException e) {
+                Log.d(TAG, "warm-up cancelled after " + (System.currentTimeMillis() - start) + " ms");
+            } catch (RuntimeException e) {
+                Log.w(TAG, "warm-up failed", e);
+            } finally {
+                synchronized (this) {
+                    if (warmUpJob == job) warmUpJob = null;
+                }
+                endRun();
+            }
+        }, "ocr-warmup");
+        thread.start();
+    }
+
+    public void cancelWarmUp() {
+        OcrJob job = warmUpJob;
+        if (job != null) job.cancel();
+    }
+
+    public boolean isLoaded() {
+        return predictor != null;
+    }
+
+    @Override
+    public void setModelConfig(String model, int threads, String powerMode) {
+        if ("all".equals(model)) {
+            for (String m : RuntimeTuner.MODELS) tuner.setOverride(m, threads, powerMode);
+        } else if (Arrays.asList(RuntimeTuner.MODELS).contains(model)) {
+            tuner.setOverride(model, threads, powerMode);
+        } else {
+            throw new IllegalArgumentException("unknown model " + model);
+        }
+        // 配置在加载模型时生效，丢弃已加载实例，下次调用按新配置重建
+        dropPredictor();
+    }
+
+    @Override
+    public JSONObject getModelConfig() {
+        return tuner.describe();
+    }
+
+    /** 各阶段耗时、结果缓存命中、缓冲池统计、已加载的模型与内存调控记录 */
+    @Override
+    public JSONObject getMetrics() {
+        JSONObject metrics = OcrMetrics.snapshot();
+        try {
+            metrics.put("cache", cacheStats());
+            metrics.put("pool", BufferPool.get().stats());
+            PaddleOCRLitePredictor p = predictor;
+            metrics.put("loadedModels", new JSONArray(p == null ? Collections.<String>emptyList() : p.loadedModels()));
+            if (p != null) metrics.put("predictorPool", p.poolStats());
+            metrics.put("memory", governor.stats());
+        } catch (JSONException e) {
+            Log.w(TAG, "getMetrics failed", e);
+        }
+        return metrics;
+    }
+
+    @Override
+    public void resetMetrics() {
+        OcrMetrics.reset();
+    }
+
+    public JSONObject cacheStats() {
+        JSONObject stats = new JSONObject();
+        try {
+            stats.put("frame", frameCache.stats());
+            stats.put("rec", recCache.stats());
+        } catch (JSONException e) {
+            Log.w(TAG, "cacheStats failed", e);
+        }
+        return stats;
+    }
+
+    private void dropPredictor() {
+        modelLock.writeLock().lock();
+        try {
+            if (predictor != null) {
+                predictor.release();
+                predictor = null;
+            }
+        } finally {
+            modelLock.writeLock().unlock();
+        }
+    }
+
+    @Override
+    public PaddleOCRLitePredictor enterStage() {
+        modelLock.readLock().lock();
+        while (predictor == null) {
+            // 读锁不能升级，先放开再持写锁加载
+            modelLock.readLock().unlock();
+            modelLock.writeLock().lock();
+            try {
+                loadPredictorLocked();
+            } finally {
+                modelLock.writeLock().unlock();
+            }
+            modelLock.readLock().lock();
+        }
+        return predictor;
+    }
+
+    @Override
+    public void exitStage() {
+        modelLock.readLock().unlock();
+    }
+
+    /**
+     * 首次加载后在后台低优先级线程做一次计时试验（每个版本一次），只在没有识别时进行，不持有模型锁。
+     * 结果与当前配置不同时，空闲则换下已加载实例并按新配置重新预热；忙则等空闲卸载后再用上新配置。
+     */
+    private synchronized void tuneInBackgroundIfNeeded() {
+        if (tuningStarted) return;
+        tuningStarted = true;
+        boolean needed = false;
+        for (String model : RuntimeTuner.MODELS) needed |= tuner.needsTuning(model);
+        if (!needed) return;
+
+        Thread thread = new Thread(() -> {
+            Process.setThreadPriority(Process.THREAD_PRIORITY_BACKGROUND);
+            ModelStore store = new ModelStore(appContext);
+            boolean changed = false;
+            try {
+                for (String model : RuntimeTuner.MODELS) {
+                    if (!tuner.needsTuning(model)) continue;
+                    RuntimeTuner.Choice before = tuner.choiceFor(model);
+                    String path = store.modelPath(PaddleOCRLitePredictor.modelAsset(model));
+                    tuner.tune(model, path, PaddleOCRLitePredictor.typicalInputShape(model), this::idleMark);
+                    changed |= !tuner.choiceFor(model).sameAs(before);
+                }
+            } catch (IOException | RuntimeException e) {
+                Log.w(TAG, "runtime tuning failed", e);
+            }
+            Log.d(TAG, "tuned runtime config: " + tuner.describe());
+            if (changed && releasePredictorIfIdle()) warmUp();
+        }, "ocr-tuner");
+        thread.start();
+    }
+
+    private void loadPredictorLocked() {
+        if (predictor == null) {
+            // 只创建外壳，各阶段的模型在首次使用时加载
+            PaddleOCRLitePredictor p = new PaddleOCRLitePredictor(appContext, tuner, recCache);
+            p.setParallelism(parallelism());
+            p.setDetLimitSide(governor.detLimitSide());
+            // 调试包中手动创建 files/ocr-tensors 目录即开启张量录制
+            File dumpDir = new File(appContext.getExternalFilesDir(null), "ocr-tensors");
+            if (BuildConfig.DEBUG && dumpDir.isDirectory()) p.setTensorDumpDir(dumpDir);
+            predictor = p;
+            tuneInBackgroundIfNeeded();
+        }
+    }
+
+    /** 供计时试验判断空闲：有进行中的识别时返回 -1，否则返回已开始的识别次数 */
+    private synchronized long idleMark() {
+        return activeRuns > 0 ? -1 : runsStarted;
+    }
+
+    private synchronized void beginRun() {
+        activeRuns++;
+        runsStarted++;
+        handler.removeCallbacks(idleRelease);
+    }
+
+    private synchronized void endRun() {
+        activeRuns--;
+        scheduleIdleReleaseLocked();
+    }
+
+    private void scheduleIdleReleaseLocked() {
+        if (refCount == 0 && activeRuns == 0) {
+            handler.removeCallbacks(idleRelease);
+            handler.postDelayed(idleRelease, IDLE_TIMEOUT_MS);
+        }
+    }
+
+    /** 内存紧张时不等空闲超时；有进行中的识别或拿不到写锁时放弃，返回是否卸载了模型 */
+    private boolean releasePredictorIfIdle() {
+        synchronized (this) {
+            if (activeRuns > 0) return false;
+        }
+        if (!modelLock.writeLock().tryLock()) return false;
+        try {
+            if (predictor == null) return false;
+            predictor.release();
+            predictor = null;
+            return true;
+        } finally {
+            modelLock.writeLock().unlock();
+        }
+    }
+
+    /** 在主线程执行；推理进行中则顺延，不阻塞 UI */
+    private void releaseIfIdle() {
+        synchronized (this) {
+            if (refCount > 0 || activeRuns > 0) return;
+        }
+        if (!modelLock.writeLock().tryLock()) {
+            handler.postDelayed(idleRelease, IDLE_TIMEOUT_MS);
+            return;
+        }
+        try {
+            if (predictor != null) {
+                predictor.release();
+                predictor = null;
+                Log.d(TAG, "models released after idle timeout");
+            }
+        } finally {
+            modelLock.writeLock().unlock();
+        }
+    }
+
+    private static final class LinesCodec implements ResultCache.Codec<List<OcrLine>> {
+        @Override
+        public String encode(List<OcrLine> lines) throws JSONException {
+            JSONArray array = new JSONArray();
+            for (OcrLine line : lines) {
+                JSONObject json = line.toJson();
+                JSONArray scores = new JSONArray();
+                for (float score : line.charScores) scores.put((double) score);
+                json.put("charScores", scores);
+                array.put(json);
+            }
+            return array.toString();
+        }
+
+        @Override
+        public List<OcrLine> decode(String data) throws JSONException {
+            JSONArray array = new JSONArray(data);
+            List<OcrLine> lines = new ArrayList<>(array.length());
+            for (int i = 0; i < array.length(); i++) {
+                lines.add(OcrLine.fromJson(array.getJSONObject(i)));
+            }
+            return lines;
+        }
+    }
+}
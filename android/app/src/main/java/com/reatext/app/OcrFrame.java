@@ -0,0 +1,102 @@
+package com.reatext.app;
+
+import android.graphics.Bitmap;
+
+import com.alexcheng.heybossapp.ocr.BufferPool;
+import com.reatext.ocr.core.PreprocessKernel;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+
+/**
+ * 一帧源图。检测、分类、识别都只从这里采样；
+ * 流水线中每个任务持有自己的一帧，不同阶段可同时处理不同帧。
+ *
+ * 两种来源：Bitmap 读出的 ARGB int[]，或直接引用 ImageReader 的 RGBA 缓冲
+ * （不拷贝，帧在识别完成前须保持有效）。缓冲帧可以切出行区域视图，区域内坐标从 0 开始。
+ */
+public final class OcrFrame {
+    int[] pixels = new int[0];
+    int width;
+    int height;
+
+    ByteBuffer buffer;
+    int bufferOffset;
+    int rowStride;
+    int pixelStride;
+
+    public static OcrFrame of(Bitmap bitmap) {
+        OcrFrame frame = new OcrFrame();
+        frame.load(bitmap);
+        return frame;
+    }
+
+    /** 引用 RGBA_8888 平面缓冲，不拷贝像素 */
+    public static OcrFrame wrap(ByteBuffer rgba, int rowStride, int pixelStride, int width, int height) {
+        OcrFrame frame = new OcrFrame();
+        // 独立的小端视图：getInt 得到 0xAABBGGRR，且不影响原缓冲的 position / order
+        frame.buffer = rgba.duplicate().order(ByteOrder.LITTLE_ENDIAN);
+        frame.rowStride = rowStride;
+        frame.pixelStride = pixelStride;
+        frame.width = width;
+        frame.height = height;
+        return frame;
+    }
+
+    /** 读取像素，数组只在尺寸变大时从 {@link BufferPool} 换一个更大的 */
+    public void load(Bitmap bitmap) {
+        int w = bitmap.getWidth();
+        int h = bitmap.getHeight();
+        if (pixels.length < w * h) {
+            BufferPool pool = BufferPool.get();
+            pool.release(pixels);
+            pixels = pool.acquireInts(w * h);
+        }
+        bitmap.getPixels(pixels, 0, w, 0, 0, w, h);
+        OcrMetrics.count(OcrMetrics.Counter.BYTES_COPIED, w * h * 4L);
+        buffer = null;
+        width = w;
+        height = h;
+    }
+
+    /** 像素数组归还缓冲池；帧不再使用后调用，之后可再次 load */
+    public void recycle() {
+        BufferPool.get().release(pixels);
+        pixels = new int[0];
+        width = 0;
+        height = 0;
+    }
+
+    /** 缓冲帧中 [top, bottom) 行的视图，共享同一缓冲 */
+    public OcrFrame region(int top, int bottom) {
+        if (buffer == null) throw new IllegalStateException("region() needs a buffer-backed frame");
+        OcrFrame frame = new OcrFrame();
+        frame.buffer = buffer;
+        frame.bufferOffset = bufferOffset + top * rowStride;
+        frame.rowStride = rowStride;
+        frame.pixelStride = pixelStride;
+        frame.width = width;
+        frame.height = bottom - top;
+        return frame;
+    }
+
+    public int getWidth() {
+        return width;
+    }
+
+    public int getHeight() {
+        return height;
+    }
+
+    /** 按来源分派到对应的预处理内核，参数同 PreprocessKernel.sample */
+    void sample(float[] quad, float[] dst, int offset, int dstW, int dstH, int planeWidth,
+                boolean gray, float[] mean, float[] std) {
+        if (buffer != null) {
+            PreprocessKernel.sample(buffer, bufferOffset, rowStride, pixelStride, width, height,
+                    quad, dst, offset, dstW, dstH, planeWidth, gray, mean, std);
+        } else {
+            PreprocessKernel.sample(pixels, width, height,
+                    quad, dst, offset, dstW, dstH, planeWidth, gray, mean, std);
+        }
+    }
+}
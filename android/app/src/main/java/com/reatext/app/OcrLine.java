@@ -0,0 +1,105 @@
+package com.reatext.app;
+
+import org.json.JSONArray;
+import org.json.JSONException;
+import org.json.JSONObject;
+
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+
+/** 一行识别结果：源图坐标下的四边形（tl, tr, br, bl）、文本与置信度 */
+public final class OcrLine {
+    public final float[] box;
+    public final String text;
+    /** 逐字置信度均值 */
+    public final float score;
+    public final float[] charScores;
+
+    public OcrLine(float[] box, String text, float score, float[] charScores) {
+        this.box = box;
+        this.text = text;
+        this.score = score;
+        this.charScores = charScores;
+    }
+
+    /** 平移后的副本，用于把区域内识别结果换算回整帧坐标 */
+    public OcrLine offset(float dx, float dy) {
+        float[] moved = new float[8];
+        for (int i = 0; i < 8; i += 2) {
+            moved[i] = box[i] + dx;
+            moved[i + 1] = box[i + 1] + dy;
+        }
+        return new OcrLine(moved, text, score, charScores);
+    }
+
+    /** 与 DbPostProcessor.sortReadingOrder 相同的阅读顺序，用于合并多个区域的结果 */
+    public static void sortReadingOrder(List<OcrLine> lines) {
+        Collections.sort(lines, new Comparator<OcrLine>() {
+            @Override
+            public int compare(OcrLine a, OcrLine b) {
+                int c = Float.compare(a.box[1], b.box[1]);
+                return c != 0 ? c : Float.compare(a.box[0], b.box[0]);
+            }
+        });
+        for (int i = 0; i < lines.size() - 1; i++) {
+            for (int j = i; j >= 0; j--) {
+                OcrLine a = lines.get(j);
+                OcrLine b = lines.get(j + 1);
+                if (Math.abs(b.box[1] - a.box[1]) < 10 && b.box[0] < a.box[0]) {
+                    lines.set(j, b);
+                    lines.set(j + 1, a);
+                } else {
+                    break;
+                }
+            }
+        }
+    }
+
+    /** toJson 的逆过程；charScores 缺省时为空数组 */
+    public static OcrLine fromJson(JSONObject json) throws JSONException {
+        JSONArray points = json.getJSONArray("box");
+        float[] box = new float[8];
+        for (int i = 0; i < 4; i++) {
+            JSONArray point = points.getJSONArray(i);
+            box[2 * i] = (float) point.getDouble(0);
+            box[2 * i + 1] = (float) point.getDouble(1);
+        }
+        JSONArray scores = json.optJSONArray("charScores");
+        float[] charScores = new float[scores == null ? 0 : scores.length()];
+        for (int i = 0; i < charScores.length; i++) {
+            charScores[i] = (float) scores.getDouble(i);
+        }
+        return new OcrLine(box, json.getString("text"), (float) json.getDouble("confidence"), charScores);
+    }
+
+    /** { text, confidence, box: [[x, y] × 4] }，即插件返回给 JS 的行结构 */
+    public JSONObject toJson() throws JSONException {
+        JSONArray points = new JSONArray();
+        for (int i = 0; i < 4; i++) {
+            JSONArray point = new JSONArray();
+            point.put((double) box[2 * i]);
+            point.put((double) box[2 * i + 1]);
+            points.put(point);
+        }
+        JSONObject json = new JSONObject();
+        json.put("text", text);
+        json.put("confidence", (double) score);
+        json.put("box", points);
+        return json;
+    }
+
+    /**
+     * WebChannel 用的紧凑形式 { x: 文本, c: 置信度, b: [x0, y0, … x3, y3] }：
+     * 坐标取整到像素，置信度保留三位小数，调用方再补上帧类型等字段
+     */
+    public JSONObject toFrame() throws JSONException {
+        JSONArray points = new JSONArray();
+        for (float v : box) points.put(Math.round(v));
+        JSONObject json = new JSONObject();
+        json.put("x", text);
+        json.put("c", Math.round(score * 1000) / 1000.0);
+        json.put("b", points);
+        return json;
+    }
+}
@@ -0,0 +1,196 @@
+package com.reatext.app;
+
+import android.os.SystemClock;
+import android.util.Log;
+
+import org.json.JSONException;
+import org.json.JSONObject;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * 进程内的 OCR 性能指标：各阶段耗时直方图与计数器，供 OCRPlugin.getOcrMetrics 读取。
+ *
+ * 直方图按对数分桶（每个 2 的幂再细分 8 格，相对误差约 12.5%），记录只做一次原子自增，
+ * 多个阶段线程并发写入无锁。分位数取所在桶的中点。
+ * reset 逐格清零，与并发写入交错时个别样本可能计入新旧任一周期，对统计无影响。
+ */
+public final class OcrMetrics {
+    private static final String TAG = "OcrMetrics";
+
+    public enum Stage {
+        ASSET_LOAD("assetLoad"),
+        MODEL_INIT("modelInit"),
+        PREPROCESS("preprocess"),
+        DET_RUN("detRun"),
+        DET_POST("detPost"),
+        CLS("cls"),
+        REC_RUN("recRun"),
+        DECODE("decode"),
+        /** 从提交到回调的端到端耗时，含排队 */
+        TOTAL("total");
+
+        final String key;
+
+        Stage(String key) {
+            this.key = key;
+        }
+    }
+
+    public enum Counter {
+        FRAMES("frames"),
+        FRAME_CACHE_HITS("frameCacheHits"),
+        DET_BOXES("detBoxes"),
+        CLS_CROPS("clsCrops"),
+        /** 跳过方向分类的裁剪：任务标记为正向，或裁剪近似方形 */
+        CLS_SKIPPED("clsSkipped"),
+        REC_CROPS("recCrops"),
+        REC_CACHE_HITS("recCacheHits"),
+        /** 取消或被新截屏取代、未完成识别的帧数 */
+        FRAMES_CANCELLED("framesCancelled"),
+        /** 像素读取、批次压缩、送入 native 张量等拷贝的字节数 */
+        BYTES_COPIED("bytesCopied"),
+        /** 不经缓冲池的新分配（模型输出数组）；池内的分配与复用见 BufferPool.stats */
+        BYTES_ALLOCATED("bytesAllocated");
+
+        final String key;
+
+        Counter(String key) {
+            this.key = key;
+        }
+    }
+
+    private static final Histogram[] histograms = new Histogram[Stage.values().length];
+    private static final AtomicLongArray counters = new AtomicLongArray(Counter.values().length);
+    private static volatile long since = SystemClock.elapsedRealtime();
+
+    static {
+        for (int i = 0; i < histograms.length; i++) histograms[i] = new Histogram();
+    }
+
+    private OcrMetrics() {
+    }
+
+    /** 记录从 startNanos 到现在的耗时，返回当前时间，便于连续计时下一阶段 */
+    public static long lap(Stage stage, long startNanos) {
+        long now = System.nanoTime();
+        histograms[stage.ordinal()].record((now - startNanos) / 1000);
+        return now;
+    }
+
+    public static void count(Counter counter, long delta) {
+        if (delta != 0) counters.addAndGet(counter.ordinal(), delta);
+    }
+
+    public static void reset() {
+        for (Histogram histogram : histograms) histogram.reset();
+        for (int i = 0; i < counters.length(); i++) counters.set(i, 0);
+        since = SystemClock.elapsedRealtime();
+    }
+
+    /**
+     * { sinceMs, stages: { detRun: { count, meanMs, p50Ms, p95Ms, p99Ms, maxMs }, ... }, counters: { ... } }
+     * 未出现过的阶段不输出
+     */
+    public static JSONObject snapshot() {
+        JSONObject result = new JSONObject();
+        try {
+            JSONObject stages = new JSONObject();
+            for (Stage stage : Stage.values()) {
+                JSONObject stats = histograms[stage.ordinal()].toJson();
+                if (stats != null) stages.put(stage.key, stats);
+            }
+            JSONObject values = new JSONObject();
+            for (Counter counter : Counter.values()) {
+                values.put(counter.key, counters.get(counter.ordinal()));
+            }
+            result.put("sinceMs", SystemClock.elapsedRealtime() - since);
+            result.put("stages", stages);
+            result.put("counters", values);
+        } catch (JSONException e) {
+            Log.w(TAG, "snapshot failed", e);
+        }
+        return result;
+    }
+
+    /** 微秒值的对数分桶直方图 */
+    static final class Histogram {
+        private static final int SUB_BITS = 3;
+        private static final int SUB = 1 << SUB_BITS;
+        // 2^40 微秒约 12 天，足够覆盖任何单次耗时
+        private static final int MAX_EXPONENT = 40;
+        private static final int BUCKETS = 2 * SUB + (MAX_EXPONENT - SUB_BITS) * SUB;
+
+        private final AtomicLongArray buckets = new AtomicLongArray(BUCKETS);
+        private final AtomicLong count = new AtomicLong();
+        private final AtomicLong sum = new AtomicLong();
+        private final AtomicLong max = new AtomicLong();
+
+        void record(long micros) {
+            if (micros < 0) micros = 0;
+            buckets.incrementAndGet(indexOf(micros));
+            count.incrementAndGet();
+            sum.addAndGet(micros);
+            long current = max.get();
+            while (micros > current && !max.compareAndSet(current, micros)) {
+                current = max.get();
+            }
+        }
+
+        void reset() {
+            for (int i = 0; i < BUCKETS; i++) buckets.set(i, 0);
+            count.set(0);
+            sum.set(0);
+            max.set(0);
+        }
+
+        /** 小于 2·SUB 的值一格一个；更大的值按最高位指数分段，每段 SUB 格 */
+        static int indexOf(long v) {
+            if (v < 2 * SUB) return (int) v;
+            int exponent = 63 - Long.numberOfLeadingZeros(v);
+            if (exponent > MAX_EXPONENT) return BUCKETS - 1;
+            int sub = (int) (v >>> (exponent - SUB_BITS)) & (SUB - 1);
+            return 2 * SUB + (exponent - SUB_BITS - 1) * SUB + sub;
+        }
+
+        static long lowerBound(int index) {
+            if (index < 2 * SUB) return index;
+            int exponent = (index - 2 * SUB) / SUB + SUB_BITS + 1;
+            int sub = (index - 2 * SUB) % SUB;
+            return (long) (SUB + sub) << (exponent - SUB_BITS);
+        }
+
+        JSONObject toJson() throws JSONException {
+            long total = count.get();
+            if (total == 0) return null;
+            long[] snapshot = new long[BUCKETS];
+            long seen = 0;
+            for (int i = 0; i < BUCKETS; i++) {
+                snapshot[i] = buckets.get(i);
+                seen += snapshot[i];
+            }
+            JSONObject stats = new JSONObject();
+            stats.put("count", total);
+            stats.put("meanMs", sum.get() / 1000.0 / total);
+            stats.put("p50Ms", percentile(snapshot, seen, 0.50) / 1000.0);
+            stats.put("p95Ms", percentile(snapshot, seen, 0.95) / 1000.0);
+            stats.put("p99Ms", percentile(snapshot, seen, 0.99) / 1000.0);
+            stats.put("maxMs", max.get() / 1000.0);
+            return stats;
+        }
+
+        private static double percentile(long[] snapshot, long total, double q) {
+            long rank = (long) Math.ceil(q * total);
+            long seen = 0;
+            for (int i = 0; i < snapshot.length; i++) {
+                seen += snapshot[i];
+                if (seen >= rank && snapshot[i] > 0) {
+                    if (i + 1 >= BUCKETS) return lowerBound(i);
+                    return (lowerBound(i) + lowerBound(i + 1) - 1) / 2.0;
+                }
+            }
+            return 0;
+        }
+    }
+}
@@ -0,0 +1,214 @@
+package com.reatext.app;
+
+import android.os.Handler;
+import android.os.Process;
+import android.util.Log;
+
+import com.alexcheng.heybossapp.ocr.OcrJob;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * 检测 → 分类 → 识别 三段流水线，每段一个工作线程，段间用有界队列衔接：
+ * 第 N 帧在识别时，第 N+1 帧已经在检测。队列满时 {@link #submit} 阻塞调用方（采集线程），
+ * 形成反压，内存中最多只有固定数量的帧。
+ *
+ * 每段队列按 {@link OcrJob.Priority} 分道，各道容量独立：阶段线程总是先取优先级最高的帧，
+ * 批量任务把自己那一道占满时只阻塞批量的提交方，截屏识别仍能立即入队，并在每一段插到批量之前。
+ * 已取消的帧在进入下一段之前直接以 CancellationException 回调。
+ *
+ * 每段只使用预测器中对应阶段的模型与缓冲；模型的加载/卸载由 {@link Host} 负责。
+ *
+ * 回调从不在阶段线程上执行：没有 callbackHandler 的回调交给专用的 ocr-callback 线程。
+ * 否则回调里再提交时，识别线程会阻塞在已满的检测队列上，而检测在等分类、分类在等识别，整条流水线死锁。
+ */
+public final class OcrPipeline {
+    private static final String TAG = "OcrPipeline";
+    private static final int QUEUE_CAPACITY = 2;
+    // 未指定 callbackHandler 的回调按完成顺序在这个线程执行，可以在回调里继续提交
+    private static final ExecutorService CALLBACKS = Executors.newSingleThreadExecutor(r -> {
+        Thread thread = new Thread(r, "ocr-callback");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    public interface Callback {
+        void onResult(List<OcrLine> lines);
+
+        void onError(Exception error);
+    }
+
+    /** 为阶段线程提供已加载的预测器；enter/exit 之间模型不会被卸载 */
+    interface Host {
+        PaddleOCRLitePredictor enterStage();
+
+        void exitStage();
+    }
+
+    private static final class Job {
+        final OcrFrame frame;
+        final OcrJob token;
+        final Callback callback;
+        final Handler callbackHandler;
+        float[][] boxes;
+        List<float[]> quads;
+        List<OcrLine> lines;
+        Exception error;
+
+        Job(OcrFrame frame, OcrJob token, Callback callback, Handler callbackHandler) {
+            this.frame = frame;
+            this.token = token;
+            this.callback = callback;
+            this.callbackHandler = callbackHandler;
+        }
+    }
+
+    /** 按优先级分道的有界队列；put 只在本道满时阻塞，take 取最高优先级一道的队头 */
+    private static final class JobQueue {
+        private final ArrayDeque<Job>[] lanes;
+
+        @SuppressWarnings("unchecked")
+        JobQueue() {
+            lanes = new ArrayDeque[OcrJob.Priority.values().length];
+            for (int i = 0; i < lanes.length; i++) lanes[i] = new ArrayDeque<>(QUEUE_CAPACITY);
+        }
+
+        synchronized void put(Job job) throws InterruptedException {
+            ArrayDeque<Job> lane = lanes[job.token.getPriority().ordinal()];
+            while (lane.size() >= QUEUE_CAPACITY) wait();
+            lane.addLast(job);
+            notifyAll();
+        }
+
+        synchronized Job take() throws InterruptedException {
+            while (true) {
+                for (ArrayDeque<Job> lane : lanes) {
+                    Job job = lane.pollFirst();
+                    if (job != null) {
+                        // 唤醒等待这一道空位的提交方
+                        notifyAll();
+                        return job;
+                    }
+                }
+                wait();
+            }
+        }
+    }
+
+    private final Host host;
+    private final JobQueue detQueue = new JobQueue();
+    private final JobQueue clsQueue = new JobQueue();
+    private final JobQueue recQueue = new JobQueue();
+    // 由 this 监视器保护
+    private final List<Thread> stageThreads = new ArrayList<>(3);
+    private boolean started;
+
+    OcrPipeline(Host host) {
+        this.host = host;
+    }
+
+    /**
+     * 提交一帧，按 job 的优先级调度；同一 job 可提交多帧，取消对它们同时生效。
+     * callbackHandler 为 null 时回调在 ocr-callback 线程执行。
+     * 本优先级的检测队列已满时阻塞，不要在主线程调用；在阶段线程上调用会死锁，直接抛 IllegalStateException。
+     */
+    public void submit(OcrFrame frame, OcrJob job, Callback callback, Handler callbackHandler)
+            throws InterruptedException {
+        startIfNeeded();
+        synchronized (this) {
+            if (stageThreads.contains(Thread.currentThread())) {
+                throw new IllegalStateException("submit() called from pipeline stage " + Thread.currentThread().getName());
+            }
+        }
+        detQueue.put(new Job(frame, job, callback, callbackHandler));
+    }
+
+    private synchronized void startIfNeeded() {
+        if (started) return;
+        started = true;
+        startStage("ocr-det", detQueue, clsQueue);
+        startStage("ocr-cls", clsQueue, recQueue);
+        startStage("ocr-rec", recQueue, null);
+    }
+
+    private void startStage(final String name, final JobQueue input, final JobQueue output) {
+        Thread thread = new Thread(() -> {
+            Process.setThreadPriority(Process.THREAD_PRIORITY_DEFAULT);
+            while (true) {
+                Job job;
+                try {
+                    job = input.take();
+                } catch (InterruptedException e) {
+                    return;
+                }
+                if (job.error == null && job.token.isCancelled()) {
+                    job.error = new CancellationException("OCR job cancelled");
+                }
+                if (job.error == null) {
+                    process(name, job);
+                }
+                if (output == null || job.error != null) {
+                    deliver(job);
+                } else {
+                    try {
+                        output.put(job);
+                    } catch (InterruptedException e) {
+                        job.error = e;
+                        deliver(job);
+                        return;
+                    }
+                }
+            }
+        }, name);
+        thread.setDaemon(true);
+        stageThreads.add(thread);
+        thread.start();
+    }
+
+    private void process(String stage, Job job) {
+        PaddleOCRLitePredictor predictor = host.enterStage();
+        try {
+            switch (stage) {
+                case "ocr-det":
+                    job.boxes = predictor.detect(job.frame, job.token);
+                    break;
+                case "ocr-cls":
+                    job.quads = predictor.classify(job.frame, job.boxes, job.token);
+                    break;
+                default:
+                    job.lines = predictor.recognize(job.frame, job.boxes, job.quads, job.token);
+                    break;
+            }
+        } catch (CancellationException e) {
+            job.error = e;
+        } catch (RuntimeException e) {
+            Log.e(TAG, stage + " failed", e);
+            job.error = e;
+        } finally {
+            host.exitStage();
+        }
+    }
+
+    private static void deliver(final Job job) {
+        if (job.error instanceof CancellationException) {
+            OcrMetrics.count(OcrMetrics.Counter.FRAMES_CANCELLED, 1);
+        }
+        Runnable result = () -> {
+            if (job.error != null) {
+                job.callback.onError(job.error);
+            } else {
+                job.callback.onResult(job.lines);
+            }
+        };
+        if (job.callbackHandler != null) {
+            job.callbackHandler.post(result);
+        } else {
+            CALLBACKS.execute(result);
+        }
+    }
+}
@@ -2,66 +2,282 @@ package com.reatext.app;
 
 import android.content.Context;
 import android.graphics.Bitmap;
-import android.graphics.Matrix;
 import android.util.Log;
-import android.graphics.Canvas;
-import android.graphics.ColorMatrix;
-import android.graphics.ColorMatrixColorFilter;
-import android.graphics.Paint;
+import android.util.SparseArray;
 import com.reatext.app.R;
 
+import com.alexcheng.heybossapp.ocr.BufferPool;
+import com.alexcheng.heybossapp.ocr.OcrJob;
 import com.baidu.paddle.lite.*;
+import com.reatext.ocr.core.CtcDecoder;
+import com.reatext.ocr.core.DbPostProcessor;
+import com.reatext.ocr.core.DetTiling;
+import com.reatext.ocr.core.PreprocessKernel;
+import com.reatext.ocr.core.TensorFile;
+
+import org.json.JSONException;
+import org.json.JSONObject;
 
 import java.io.*;
 import java.util.*;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
 
 public class PaddleOCRLitePredictor {
+    // 检测输入长边上限，与 PaddleOCR det_limit_side_len 默认值一致；内存紧张时可调低，见 setDetLimitSide
+    static final int DET_LIMIT_SIDE = 960;
+    private static final int REC_HEIGHT = 32;
+    // 识别输入宽度桶，每个桶对应一种固定张量形状
+    private static final int[] REC_WIDTH_BUCKETS = {80, 160, 320, 640};
+    private static final int REC_MAX_BATCH = 8;
+    private static final int CLS_HEIGHT = 48;
+    private static final int CLS_WIDTH = 192;
+    private static final int CLS_MAX_BATCH = 8;
+    // 宽高比（宽/高）低于此值的裁剪不做方向分类：单字等近似方形的裁剪没有行内上下文，
+    // 分类器对它们的 180° 判断接近随机，误翻转比不翻转更常见
+    private static final float CLS_MIN_RATIO = 1.2f;
+    // 分类、识别实例池的容量上限；每个实例都要单独加载一份模型
+    private static final int MAX_POOL_SIZE = 4;
+    // 与 PaddleOCR drop_score 一致，低于此置信度的行视为误检丢弃
+    static final float REC_DROP_SCORE = 0.5f;
+
+    static final String DET_MODEL = "models/det/slim_det_mv3.nb";
+    static final String CLS_MODEL = "models/cls/slim_cls_mv3.nb";
+    static final String REC_MODEL = "models/rec/slim_rec_mv3.nb";
+
     private Context context;
-    private PaddlePredictor detPredictor;
-    private PaddlePredictor clsPredictor;
-    private PaddlePredictor recPredictor;
-    private List<String> labelList;
+    private final ModelStore modelStore;
+    private final RuntimeTuner tuner;
+    // 三个阶段各自独占预测器与输入缓冲，可在不同线程上同时运行。
+    // 检测只有一个实例，推理由 Stage 监视器串行（阶段线程之外还有预热线程）；一张图的检测输入大，
+    // 单实例多线程已能用满大核。分类、识别的裁剪多而小，各用一个实例池，批次分到多个实例并行。
+    // 模型在实例首次使用时加载，只识别正向截图时分类模型不会加载
+    // 检测输入形状随图片宽高比变化，只保留最近几种尺寸的缓冲
+    private final Stage det = new Stage("det", DET_MODEL, 4, 0);
+    // 分类、识别的输入长度随批次大小变化，每个实例同样限定缓冲种数，识别还要乘上宽度桶数
+    private final StagePool cls = new StagePool("cls", CLS_MODEL, poolCapacity(), 4);
+    private final StagePool rec = new StagePool("rec", REC_MODEL, poolCapacity(), 2 * REC_WIDTH_BUCKETS.length);
+    private volatile List<String> labels;
+    private final DbPostProcessor dbPostProcessor = new DbPostProcessor();
+    private final ResultCache<CtcDecoder.Result> recCache;
+
+    // runDet / runCls / runRec 等单图接口复用的源图
+    private final OcrFrame source = new OcrFrame();
+
+    // 分类、识别并行时的辅助工作者，进程共享；空闲 30 秒后线程退出
+    private static final ThreadPoolExecutor WORKERS = new ThreadPoolExecutor(
+            MAX_POOL_SIZE - 1, MAX_POOL_SIZE - 1, 30, TimeUnit.SECONDS, new LinkedBlockingQueue<Runnable>(),
+            new ThreadFactory() {
+                private final AtomicInteger seq = new AtomicInteger();
+
+                @Override
+                public Thread newThread(Runnable r) {
+                    Thread thread = new Thread(r, "ocr-worker-" + seq.incrementAndGet());
+                    thread.setDaemon(true);
+                    return thread;
+                }
+            });
+
+    static {
+        WORKERS.allowCoreThreadTimeOut(true);
+    }
+
+    // 非空时把检测概率图与识别输出写成 TensorFile，供 ocr-core 基准回放
+    private volatile File tensorDumpDir;
+    private final AtomicInteger dumpSeq = new AtomicInteger();
+    private volatile int detLimitSide = DET_LIMIT_SIDE;
 
     public PaddleOCRLitePredictor(Context context) {
+        this(context, new RuntimeTuner(context));
+    }
+
+    public PaddleOCRLitePredictor(Context context, RuntimeTuner tuner) {
+        this(context, tuner, null);
+    }
+
+    /** recCache 非空时，识别前按裁剪内容查缓存，命中的裁剪不进入批次 */
+    public PaddleOCRLitePredictor(Context context, RuntimeTuner tuner, ResultCache<CtcDecoder.Result> recCache) {
         this.context = context;
+        this.modelStore = new ModelStore(context);
+        this.tuner = tuner;
+        this.recCache = recCache;
     }
 
+    /** 分类、识别实例池的容量：设备大核数，不超过 {@link #MAX_POOL_SIZE} */
+    static int poolCapacity() {
+        return Math.max(1, Math.min(MAX_POOL_SIZE, DeviceProfile.get().bigCores));
+    }
+
+    /** 立即加载全部模型（每个池的第一个实例）；通常不需要调用，各实例首次使用时会自行加载 */
     public void initModels() {
-        detPredictor = loadModelFromAssets("models/det/slim_det_mv3.nb");
-        clsPredictor = loadModelFromAssets("models/cls/slim_cls_mv3.nb");
-        recPredictor = loadModelFromAssets("models/rec/slim_rec_mv3.nb");
-        labelList = loadLabelList("models/ppocr_keys_v1.txt");
+        load(det);
+        load(cls.stages[0]);
+        load(rec.stages[0]);
+    }
+
+    /**
+     * 实例的模型未加载时加载；识别实例连同 CTC 解码器一起创建（解码器带缓冲，不能跨实例共享）。
+     * 池中第一个实例使用调优得到的线程数，其余实例单线程，并行时总线程数不超出大核太多。
+     */
+    private PaddlePredictor load(Stage stage) {
+        synchronized (stage) {
+            if (stage.predictor == null) {
+                PaddlePredictor predictor = loadModelFromAssets(stage.asset, stage.model, stage.index == 0 ? 0 : 1);
+                if (predictor == null) throw new IllegalStateException("failed to load " + stage.model + " model");
+                if (REC_MODEL.equals(stage.asset)) {
+                    if (labels == null) labels = loadLabelList("models/ppocr_keys_v1.txt");
+                    stage.decoder = new CtcDecoder(labels);
+                }
+                stage.predictor = predictor;
+                Log.d("OCR", stage.model + "#" + stage.index + " model loaded");
+            }
+            return stage.predictor;
+        }
+    }
+
+    /** 已加载的模型（det / cls / rec） */
+    public List<String> loadedModels() {
+        List<String> models = new ArrayList<>(3);
+        if (det.predictor != null) models.add(det.model);
+        if (cls.loaded() > 0) models.add(cls.model);
+        if (rec.loaded() > 0) models.add(rec.model);
+        return models;
+    }
+
+    /** 分类、识别实例池的容量、当前上限、已加载与使用中的实例数 */
+    public JSONObject poolStats() throws JSONException {
+        JSONObject stats = new JSONObject();
+        stats.put("cls", cls.stats());
+        stats.put("rec", rec.stats());
+        return stats;
     }
 
-    private PaddlePredictor loadModelFromAssets(String modelPathInAssets) {
+    /**
+     * 调整分类、识别可同时使用的实例数（温控、内存压力时降低）；
+     * 超出上限的空闲实例立即卸载，使用中的在归还时卸载。返回立即卸载的实例数。
+     */
+    public int setParallelism(int parallelism) {
+        return cls.setLimit(parallelism) + rec.setLimit(parallelism);
+    }
+
+    /**
+     * 调整检测输入长边上限（32 的倍数，不超过 {@link #DET_LIMIT_SIDE}）；内存紧张时降低以缩小检测输入。
+     * 调低时已有的较大输入缓冲由检测线程在下一次取缓冲时归还，调用方（主线程）不等待进行中的检测；
+     * 返回是否安排了归还。
+     */
+    public boolean setDetLimitSide(int side) {
+        side = Math.max(32, Math.min(DET_LIMIT_SIDE, side / 32 * 32));
+        int previous = detLimitSide;
+        detLimitSide = side;
+        if (side >= previous) return false;
+        det.recycleLater();
+        return true;
+    }
+
+    public int getDetLimitSide() {
+        return detLimitSide;
+    }
+
+    /** 丢弃预测器引用，native 资源随 PaddlePredictor 回收释放；输入缓冲归还缓冲池 */
+    public void release() {
+        det.unload();
+        cls.unloadAll();
+        rec.unloadAll();
+        source.recycle();
+    }
+
+    /**
+     * 预热：加载检测与识别模型，用空白输入按 frameWidth x frameHeight 图片的检测形状（含分块）
+     * 与每个识别宽度桶各执行一次，让 Paddle Lite 提前完成各输入形状的 kernel 选择与内存规划。
+     * 分类模型仍按需加载。每一步之前检查 job 取消；与阶段线程按阶段互斥，取消后最多再等一步。
+     */
+    public void warmUp(int frameWidth, int frameHeight, OcrJob job) {
+        Set<Integer> detShapes = new HashSet<>();
+        int limitSide = detLimitSide;
+        for (int[] tile : DetTiling.tiles(frameWidth, frameHeight, limitSide)) {
+            int[] size = DetTiling.resize(tile[2], tile[3], limitSide);
+            if (!detShapes.add(size[0] * 65536 + size[1])) continue;
+            checkCancelled(job);
+            synchronized (det) {
+                warmUp(det, 1, size[1], size[0]);
+            }
+        }
+        // 只预热识别池的第一个实例，其余实例在密集页面上首次并行时再加载
+        Stage stage = rec.checkout();
         try {
-            String modelPath = copyAssetToCache(modelPathInAssets);
-            MobileConfig config = new MobileConfig();
-            config.setModelFromFile(modelPath);
-            return PaddlePredictor.createPaddlePredictor(config);
-        } catch (IOException e) {
-            e.printStackTrace();
-            return null;
+            for (int width : REC_WIDTH_BUCKETS) {
+                checkCancelled(job);
+                warmUp(stage, 1, REC_HEIGHT, width);
+            }
+        } finally {
+            rec.checkin(stage);
         }
     }
 
-    private String copyAssetToCache(String fileName) throws IOException {
-        File outFile = new File(context.getCacheDir(), fileName);
-        if (outFile.exists()) return outFile.getAbsolutePath();
+    private void warmUp(Stage stage, int n, int h, int w) {
+        load(stage);
+        float[] input = stage.buffer(n * 3 * h * w);
+        Arrays.fill(input, 0f);
+        long t = System.nanoTime();
+        stage.run(input, n, h, w);
+        Log.d("OCR", "warm-up " + stage.model + " " + n + "x3x" + h + "x" + w + ": "
+                + (System.nanoTime() - t) / 1_000_000 + " ms");
+    }
+
+    /** 录制真实张量（仅调试用，写文件会拖慢识别）；传 null 关闭 */
+    public void setTensorDumpDir(File dir) {
+        tensorDumpDir = dir;
+    }
+
+    private void dumpTensor(String name, Tensor tensor) {
+        File dir = tensorDumpDir;
+        if (dir == null) return;
+        File file = new File(dir, name + "-" + dumpSeq.incrementAndGet() + ".ocrt");
+        try {
+            TensorFile.write(file, tensor.shape(), tensor.getFloatData());
+        } catch (IOException e) {
+            Log.w("OCR", "tensor dump failed: " + file, e);
+        }
+    }
 
-        InputStream is = context.getAssets().open(fileName);
-        File outDir = outFile.getParentFile();
-        if (!outDir.exists()) outDir.mkdirs();
+    static String modelAsset(String model) {
+        switch (model) {
+            case "det": return DET_MODEL;
+            case "cls": return CLS_MODEL;
+            default: return REC_MODEL;
+        }
+    }
 
-        FileOutputStream os = new FileOutputStream(outFile);
-        byte[] buffer = new byte[1024];
-        int length;
-        while ((length = is.read(buffer)) != -1) {
-            os.write(buffer, 0, length);
+    /** 计时试验用的典型输入形状 */
+    static long[] typicalInputShape(String model) {
+        switch (model) {
+            case "det": return new long[]{1, 3, DET_LIMIT_SIDE, DET_LIMIT_SIDE};
+            case "cls": return new long[]{1, 3, CLS_HEIGHT, CLS_WIDTH};
+            default: return new long[]{1, 3, REC_HEIGHT, 320};
         }
-        os.flush(); os.close(); is.close();
+    }
 
-        return outFile.getAbsolutePath();
+    /** threads > 0 时覆盖调优得到的线程数 */
+    private PaddlePredictor loadModelFromAssets(String modelPathInAssets, String model, int threads) {
+        try {
+            long t = System.nanoTime();
+            String modelPath = modelStore.modelPath(modelPathInAssets);
+            t = OcrMetrics.lap(OcrMetrics.Stage.ASSET_LOAD, t);
+            MobileConfig config = new MobileConfig();
+            config.setModelFromFile(modelPath);
+            tuner.applyTo(config, model);
+            if (threads > 0) config.setThreads(threads);
+            PaddlePredictor predictor = PaddlePredictor.createPaddlePredictor(config);
+            OcrMetrics.lap(OcrMetrics.Stage.MODEL_INIT, t);
+            return predictor;
+        } catch (IOException e) {
+            e.printStackTrace();
+            return null;
+        }
     }
 
     private List<String> loadLabelList(String dictFile) {
@@ -80,150 +296,643 @@ public class PaddleOCRLitePredictor {
         return list;
     }
 
-    private float[] preprocess(Bitmap bitmap, int targetWidth, int targetHeight) {
-        Bitmap resizedBitmap = Bitmap.createScaledBitmap(bitmap, targetWidth, targetHeight, false);
+    public float[][] runDet(Bitmap bitmap) {
+        source.load(bitmap);
+        return detect(source, null);
+    }
 
-        int[] pixels = new int[targetWidth * targetHeight];
-        resizedBitmap.getPixels(pixels, 0, targetWidth, 0, 0, targetWidth, targetHeight);
+    /**
+     * 检测阶段：等比缩放到长边不超过当前检测边长（默认 {@link #DET_LIMIT_SIDE}，32 的倍数），DB 后处理得到按阅读顺序排列的文本框。
+     * 长截图与大图按 {@link DetTiling} 分块逐块检测后去重合并；各块共用本阶段的预测器，顺序执行。
+     * job 不为 null 时每块之前检查取消，取消时抛出 CancellationException（分类、识别阶段同）。
+     */
+    public float[][] detect(OcrFrame frame, OcrJob job) {
+        // 本帧各块用同一边长，中途调整从下一帧生效
+        int limitSide = detLimitSide;
+        List<int[]> tiles = DetTiling.tiles(frame.width, frame.height, limitSide);
+        List<float[][]> tileBoxes = new ArrayList<>(tiles.size());
+        for (int[] tile : tiles) {
+            checkCancelled(job);
+            float[][] boxes;
+            synchronized (det) {
+                boxes = detectTile(frame, tile[0], tile[1], tile[2], tile[3], limitSide);
+            }
+            DetTiling.offset(boxes, tile[0], tile[1]);
+            tileBoxes.add(boxes);
+        }
+        float[][] boxes = DetTiling.merge(tileBoxes);
+        OcrMetrics.count(OcrMetrics.Counter.FRAMES, 1);
+        OcrMetrics.count(OcrMetrics.Counter.DET_BOXES, boxes.length);
+        Log.d("OCR", "DET boxes: " + boxes.length + " (" + tiles.size() + " tiles)");
+        return boxes;
+    }
 
-        float[] inputData = new float[3 * targetHeight * targetWidth]; // CHW
-        int r, g, b;
-        for (int y = 0; y < targetHeight; y++) {
-            for (int x = 0; x < targetWidth; x++) {
-                int index = y * targetWidth + x;
-                int pixel = pixels[index];
+    /** 检测 frame 中 (x, y, w, h) 区域，返回区域内坐标的框 */
+    private float[][] detectTile(OcrFrame frame, int x, int y, int w, int h, int limitSide) {
+        int[] size = DetTiling.resize(w, h, limitSide);
+        int inputWidth = size[0];
+        int inputHeight = size[1];
+
+        load(det);
+        long t = System.nanoTime();
+        float[] inputData = det.buffer(3 * inputHeight * inputWidth);
+        float[] quad = det.quad;
+        PreprocessKernel.fullFrame(w, h, quad);
+        for (int k = 0; k < 8; k += 2) {
+            quad[k] += x;
+            quad[k + 1] += y;
+        }
+        frame.sample(quad,
+                inputData, 0, inputWidth, inputHeight, inputWidth,
+                false, PreprocessKernel.DET_MEAN, PreprocessKernel.DET_STD);
+        t = OcrMetrics.lap(OcrMetrics.Stage.PREPROCESS, t);
+
+        Tensor outputTensor = det.run(inputData, 1, inputHeight, inputWidth);
+        dumpTensor("det", outputTensor);
+        float[] outputData = Stage.output(outputTensor);
+        t = OcrMetrics.lap(OcrMetrics.Stage.DET_RUN, t);
+        long[] outputShape = outputTensor.shape(); // [1, 1, H, W]
+        int mapHeight = (int) outputShape[2];
+        int mapWidth = (int) outputShape[3];
+
+        float[][] boxes = dbPostProcessor.process(outputData, mapWidth, mapHeight, w, h);
+        OcrMetrics.lap(OcrMetrics.Stage.DET_POST, t);
+        return boxes;
+    }
 
-                r = (pixel >> 16) & 0xff;
-                g = (pixel >> 8) & 0xff;
-                b = pixel & 0xff;
+    public boolean runCls(Bitmap bitmap) {
+        source.load(bitmap);
+        float[] quad = new float[8];
+        PreprocessKernel.fullFrame(source.width, source.height, quad);
+        Stage stage = cls.checkout();
+        try {
+            return classifyBatch(stage, source, Collections.singletonList(quad), new int[]{0}, 0, 1)[0];
+        } finally {
+            cls.checkin(stage);
+        }
+    }
 
-                inputData[0 * targetHeight * targetWidth + index] = r / 255.0f;
-                inputData[1 * targetHeight * targetWidth + index] = g / 255.0f;
-                inputData[2 * targetHeight * targetWidth + index] = b / 255.0f;
-            }
+    /**
+     * 分类阶段：为每个文本框生成朝向正确的采样 quad。
+     * 竖排文本（高宽比 >= 1.5）逆时针旋转 90°，与 PaddleOCR get_rotate_crop_image 一致；
+     * 分类判定倒置的再旋转 180°。旋转只是换 quad 起点，不生成新图。
+     * job 标记为正向时不做 180° 分类；近似方形的裁剪也跳过（见 {@link #CLS_MIN_RATIO}）。
+     * 需要分类的裁剪每 {@link #CLS_MAX_BATCH} 个拼成一个批次，各批次分到分类实例池并行执行。
+     */
+    public List<float[]> classify(OcrFrame frame, float[][] boxes, OcrJob job) {
+        List<float[]> quads = new ArrayList<>(boxes.length);
+        boolean upright = job != null && job.isUpright();
+        int[] pending = new int[boxes.length];
+        int count = 0;
+        for (int i = 0; i < boxes.length; i++) {
+            float[] box = boxes[i];
+            float[] quad = new float[8];
+            boolean vertical = PreprocessKernel.quadHeight(box) >= PreprocessKernel.quadWidth(box) * 1.5f;
+            PreprocessKernel.rotate(box, quad, vertical ? 1 : 0);
+            quads.add(quad);
+            if (!upright && ratio(quad) >= CLS_MIN_RATIO) pending[count++] = i;
         }
+        OcrMetrics.count(OcrMetrics.Counter.CLS_SKIPPED, boxes.length - count);
+
+        final int total = count;
+        parallel(cls, (count + CLS_MAX_BATCH - 1) / CLS_MAX_BATCH, Integer.MAX_VALUE, job, (stage, unit) -> {
+            int start = unit * CLS_MAX_BATCH;
+            int end = Math.min(total, start + CLS_MAX_BATCH);
+            boolean[] flips = classifyBatch(stage, frame, quads, pending, start, end);
+            for (int k = 0; k < flips.length; k++) {
+                if (!flips[k]) continue;
+                // 各批次改写的 quad 互不重叠
+                float[] quad = quads.get(pending[start + k]);
+                PreprocessKernel.rotate(quad.clone(), quad, 2);
+            }
+        });
+        return quads;
+    }
 
-        return inputData;
+    private static float ratio(float[] quad) {
+        return PreprocessKernel.quadWidth(quad) / Math.max(1f, PreprocessKernel.quadHeight(quad));
     }
 
-    public float[][] runDet(Bitmap bitmap) {
-        int inputWidth = 640;
-        int inputHeight = 640;
-        float[] inputData = preprocess(bitmap, inputWidth, inputHeight);
+    /**
+     * quads[indices[start..end)] 拼成一个 [N, 3, 48, 192] 张量执行一次，返回各自是否需要旋转 180°。
+     * 每个裁剪保持宽高比缩放到高 48，宽度不足 192 的部分右侧填充。
+     */
+    private boolean[] classifyBatch(Stage cls, OcrFrame frame, List<float[]> quads, int[] indices,
+                                    int start, int end) {
+        load(cls);
+        int batch = end - start;
+        int itemSize = 3 * CLS_HEIGHT * CLS_WIDTH;
+
+        long t = System.nanoTime();
+        float[] inputData = cls.buffer(batch * itemSize);
+        for (int k = 0; k < batch; k++) {
+            float[] quad = quads.get(indices[start + k]);
+            int targetWidth = Math.max(1, Math.min(CLS_WIDTH, (int) Math.ceil(ratio(quad) * CLS_HEIGHT)));
+            frame.sample(quad,
+                    inputData, k * itemSize, targetWidth, CLS_HEIGHT, CLS_WIDTH,
+                    true, PreprocessKernel.REC_MEAN, PreprocessKernel.REC_STD);
+        }
+        t = OcrMetrics.lap(OcrMetrics.Stage.PREPROCESS, t);
 
-        Tensor inputTensor = detPredictor.getInput(0);
-        inputTensor.resize(new long[]{1, 3, inputHeight, inputWidth});
-        inputTensor.setData(inputData);
+        float[] output = Stage.output(cls.run(inputData, batch, CLS_HEIGHT, CLS_WIDTH)); // [N, 2]
+        OcrMetrics.lap(OcrMetrics.Stage.CLS, t);
+        OcrMetrics.count(OcrMetrics.Counter.CLS_CROPS, batch);
 
-        detPredictor.run();
+        boolean[] flips = new boolean[batch];
+        for (int k = 0; k < batch; k++) {
+            flips[k] = output[2 * k + 1] > output[2 * k]; // index 1 是需要旋转的概率
+        }
+        return flips;
+    }
 
-        Tensor outputTensor = detPredictor.getOutput(0);
-        float[] outputData = outputTensor.getFloatData();
-        long[] outputShape = outputTensor.shape();
+    public String runRec(Bitmap bitmap) {
+        return runRecBatch(Collections.singletonList(bitmap)).get(0);
+    }
 
-        Log.d("OCR", "DET output shape: " + Arrays.toString(outputShape));
-        Log.d("OCR", "DET raw data sample: " + Arrays.toString(Arrays.copyOf(outputData, 10)));
+    /** 同 {@link #runRecBatch(List)}，附带逐字与整行置信度 */
+    public List<CtcDecoder.Result> runRecBatchScored(List<Bitmap> bitmaps) {
+        float[] ratios = new float[bitmaps.size()];
+        for (int i = 0; i < ratios.length; i++) {
+            Bitmap bitmap = bitmaps.get(i);
+            ratios[i] = (float) bitmap.getWidth() / Math.max(1, bitmap.getHeight());
+        }
+        return Arrays.asList(runRecBatch(bitmaps, null, null, ratios, null));
+    }
 
-        return new float[0][]; // 后处理暂未实现
+    /**
+     * 批量识别：按宽高比排序后归入固定宽度桶，每桶拼成一个 [N, 3, 32, W] 张量执行一次，
+     * 输入形状只有少数几种；结果按输入顺序返回。
+     */
+    public List<String> runRecBatch(List<Bitmap> bitmaps) {
+        List<String> texts = new ArrayList<>(bitmaps.size());
+        for (CtcDecoder.Result result : runRecBatchScored(bitmaps)) {
+            texts.add(result.text);
+        }
+        return texts;
     }
 
-    public boolean runCls(Bitmap bitmap) {
-        int inputHeight = 48;
-        int inputWidth = 192;
+    /**
+     * 识别阶段：按 quad 在帧上采样并批量识别，返回带文本框的行，
+     * 空行与置信度低于 {@link #REC_DROP_SCORE} 的行已过滤。
+     */
+    public List<OcrLine> recognize(OcrFrame frame, float[][] boxes, List<float[]> quads, OcrJob job) {
+        CtcDecoder.Result[] results = recognizeQuads(frame, quads, job);
+        List<OcrLine> lines = new ArrayList<>(results.length);
+        for (int i = 0; i < results.length; i++) {
+            CtcDecoder.Result result = results[i];
+            if (result.text.isEmpty() || result.score < REC_DROP_SCORE) continue;
+            lines.add(new OcrLine(boxes[i], result.text, result.score, result.charScores));
+        }
+        return lines;
+    }
+
+    private CtcDecoder.Result[] recognizeQuads(OcrFrame frame, List<float[]> quads, OcrJob job) {
+        float[] ratios = new float[quads.size()];
+        for (int i = 0; i < ratios.length; i++) {
+            ratios[i] = ratio(quads.get(i));
+        }
+        return runRecBatch(null, frame, quads, ratios, job);
+    }
 
-        float[] inputData = preprocess(bitmap, inputWidth, inputHeight);
+    /** bitmaps 与 quads 二选一：前者每张图整幅识别，后者在 frame 上按 quad 采样；每个批次之前检查取消 */
+    private CtcDecoder.Result[] runRecBatch(List<Bitmap> bitmaps, OcrFrame frame, List<float[]> quads,
+                                            final float[] ratios, OcrJob job) {
+        int count = ratios.length;
+        CtcDecoder.Result[] results = new CtcDecoder.Result[count];
+        if (count == 0) return results;
 
-        Tensor inputTensor = clsPredictor.getInput(0);
-        inputTensor.resize(new long[]{1, 3, inputHeight, inputWidth});
-        inputTensor.setData(inputData);
+        Integer[] order = new Integer[count];
+        for (int i = 0; i < count; i++) {
+            order[i] = i;
+        }
+        Arrays.sort(order, new Comparator<Integer>() {
+            @Override
+            public int compare(Integer a, Integer b) {
+                return Float.compare(ratios[a], ratios[b]);
+            }
+        });
+
+        // 每个批次是一个工作单元 {start, end, bucketWidth}；宽的批次耗时长，排在前面先分配
+        final List<int[]> batches = new ArrayList<>();
+        int start = 0;
+        while (start < count) {
+            int bucketWidth = recBucketWidth(ratios[order[start]]);
+            int end = start + 1;
+            while (end < count && end - start < REC_MAX_BATCH
+                    && recBucketWidth(ratios[order[end]]) == bucketWidth) {
+                end++;
+            }
+            batches.add(0, new int[]{start, end, bucketWidth});
+            start = end;
+        }
+        // 整图识别共用 source 解码位图，只能单实例顺序执行
+        parallel(rec, batches.size(), bitmaps != null ? 1 : Integer.MAX_VALUE, job, (stage, unit) -> {
+            int[] batch = batches.get(unit);
+            runRecBucket(stage, bitmaps, frame, quads, ratios, order, batch[0], batch[1], batch[2], results);
+        });
+        return results;
+    }
 
-        clsPredictor.run();
+    /** 在某个实例上执行第 unit 个工作单元 */
+    private interface Unit {
+        void run(Stage stage, int unit);
+    }
 
-        Tensor outputTensor = clsPredictor.getOutput(0);
-        float[] output = outputTensor.getFloatData(); // [1, 2]
+    /**
+     * 把 units 个工作单元分给池中的实例并行执行，调用线程（流水线阶段线程）也作为一个工作者，
+     * 其余工作者在 {@link #WORKERS} 上运行，每个工作者借出一个实例直到没有单元可做。
+     * 单元按轮转预分到各工作者的队列：工作者从自己的队头取，取空后从其他队列的队尾窃取，
+     * 某个工作者借不到实例或启动较晚时，它的单元由其他工作者做完。
+     * 每个单元之前检查取消；任一单元失败后不再开始新单元，等进行中的结束后在调用线程重新抛出。
+     */
+    private void parallel(StagePool pool, int units, int maxWorkers, OcrJob job, final Unit unit) {
+        if (units == 0) return;
+        int workers = Math.min(Math.min(units, maxWorkers), pool.limit());
+        final WorkQueues work = new WorkQueues(workers, units, job);
+        for (int w = 1; w < workers; w++) {
+            final int self = w;
+            WORKERS.execute(() -> {
+                Stage stage = pool.tryCheckout();
+                if (stage == null) return;
+                try {
+                    work.drain(self, stage, unit);
+                } finally {
+                    pool.checkin(stage);
+                }
+            });
+        }
+        Stage stage = pool.checkout();
+        try {
+            work.drain(0, stage, unit);
+        } finally {
+            pool.checkin(stage);
+        }
+        work.await();
+    }
 
-        return output[1] > output[0]; // index 1 是需要旋转的概率
+    private static void checkCancelled(OcrJob job) {
+        if (job != null) job.throwIfCancelled();
     }
 
-    public String runRec(Bitmap bitmap) {
-        int targetHeight = 32;
-        int originalWidth = bitmap.getWidth();
-        int originalHeight = bitmap.getHeight();
-        int targetWidth = Math.max(32, Math.min(320, (int) (((float) originalWidth / originalHeight) * targetHeight)));
-
-        float[] inputData = preprocess(bitmap, targetWidth, targetHeight);
-
-        Tensor inputTensor = recPredictor.getInput(0);
-        inputTensor.resize(new long[]{1, 3, targetHeight, targetWidth});
-        inputTensor.setData(inputData);
-
-        recPredictor.run();
-
-        Tensor outputTensor = recPredictor.getOutput(0);
-        float[] outputData = outputTensor.getFloatData();
-        long[] shape = outputTensor.shape(); // [1, seq_len, dict_size]
-        int seq_len = (int) shape[1];
-        int dict_size = (int) shape[2];
-
-        StringBuilder sb = new StringBuilder();
-        int last_index = -1;
-
-        for (int i = 0; i < seq_len; i++) {
-            float maxScore = -Float.MAX_VALUE;
-            int maxIndex = -1;
-            for (int j = 0; j < dict_size; j++) {
-                float score = outputData[i * dict_size + j];
-                if (score > maxScore) {
-                    maxScore = score;
-                    maxIndex = j;
+    private static int recBucketWidth(float ratio) {
+        int width = (int) Math.ceil(ratio * REC_HEIGHT);
+        for (int bucket : REC_WIDTH_BUCKETS) {
+            if (width <= bucket) return bucket;
+        }
+        return REC_WIDTH_BUCKETS[REC_WIDTH_BUCKETS.length - 1];
+    }
+
+    private void runRecBucket(Stage rec, List<Bitmap> bitmaps, OcrFrame frame, List<float[]> quads, float[] ratios,
+                              Integer[] order, int start, int end, int bucketWidth, CtcDecoder.Result[] results) {
+        load(rec);
+        long t = System.nanoTime();
+        int batch = end - start;
+        int itemSize = 3 * REC_HEIGHT * bucketWidth;
+        float[] inputData = rec.buffer(batch * itemSize);
+        // 缓存命中的裁剪不占批次位置：未命中的依次写入 slot 0..misses-1
+        int[] slotOwner = new int[batch];
+        String[] slotKey = new String[batch];
+        int misses = 0;
+        for (int k = 0; k < batch; k++) {
+            int i = order[start + k];
+            int targetWidth = Math.max(REC_HEIGHT, Math.min(bucketWidth, Math.round(ratios[i] * REC_HEIGHT)));
+            float[] quad;
+            OcrFrame src;
+            if (bitmaps != null) {
+                source.load(bitmaps.get(i));
+                PreprocessKernel.fullFrame(source.width, source.height, rec.quad);
+                src = source;
+                quad = rec.quad;
+            } else {
+                src = frame;
+                quad = quads.get(i);
+            }
+            src.sample(quad,
+                    inputData, misses * itemSize, targetWidth, REC_HEIGHT, bucketWidth,
+                    true, PreprocessKernel.REC_MEAN, PreprocessKernel.REC_STD);
+
+            if (recCache != null) {
+                String key = PerceptualHash.cropKey(inputData, misses * itemSize, targetWidth, bucketWidth, REC_HEIGHT);
+                CtcDecoder.Result cached = recCache.get(key);
+                if (cached != null) {
+                    results[i] = cached;
+                    continue;
                 }
+                slotKey[misses] = key;
+            }
+            slotOwner[misses++] = i;
+        }
+        OcrMetrics.count(OcrMetrics.Counter.REC_CROPS, batch);
+        if (recCache != null) OcrMetrics.count(OcrMetrics.Counter.REC_CACHE_HITS, batch - misses);
+        if (misses == 0) {
+            OcrMetrics.lap(OcrMetrics.Stage.PREPROCESS, t);
+            return;
+        }
+
+        // Tensor.setData 要求长度与形状一致，部分命中时把前 misses 个裁剪拷到对应长度的缓冲
+        float[] batchData = inputData;
+        if (misses < batch) {
+            // inputData 还要拷出，取新缓冲时不能被归还
+            batchData = rec.buffer(misses * itemSize, inputData);
+            System.arraycopy(inputData, 0, batchData, 0, misses * itemSize);
+            OcrMetrics.count(OcrMetrics.Counter.BYTES_COPIED, misses * itemSize * 4L);
+        }
+        t = OcrMetrics.lap(OcrMetrics.Stage.PREPROCESS, t);
+        Tensor outputTensor = rec.run(batchData, misses, REC_HEIGHT, bucketWidth);
+        dumpTensor("rec", outputTensor);
+        float[] outputData = Stage.output(outputTensor);
+        t = OcrMetrics.lap(OcrMetrics.Stage.REC_RUN, t);
+        long[] shape = outputTensor.shape(); // [N, seq_len, dict_size]
+        int seqLen = (int) shape[1];
+        int dictSize = (int) shape[2];
+
+        for (int k = 0; k < misses; k++) {
+            CtcDecoder.Result result = rec.decoder.decode(outputData, k * seqLen * dictSize, seqLen, dictSize);
+            results[slotOwner[k]] = result;
+            if (recCache != null) recCache.put(slotKey[k], result);
+        }
+        OcrMetrics.lap(OcrMetrics.Stage.DECODE, t);
+    }
+
+    public List<String> runOcr(Bitmap bitmap) {
+        List<String> texts = new ArrayList<>();
+        for (OcrLine line : runOcrLines(bitmap)) {
+            texts.add(line.text);
+        }
+        return texts;
+    }
+
+    /** 完整流程，返回带文本框与置信度的行，空行与低置信度行已过滤 */
+    public List<OcrLine> runOcrLines(Bitmap bitmap) {
+        Log.d("OCR", "开始检测 → 方向判断 → 识别...");
+
+        // 源图像素只读取一次，后续各阶段直接从中采样
+        source.load(bitmap);
+        float[][] boxes = detect(source, null);
+        List<float[]> quads = classify(source, boxes, null);
+        return recognize(source, boxes, quads, null);
+    }
+
+    /** 单个模型及其独占的输入缓冲 */
+    private static final class Stage {
+        final String model;
+        final String asset;
+        // 在池中的序号，检测为 0
+        final int index;
+        // 由 stage 自身的监视器保护写入；借用实例的线程在 load 之后读取
+        volatile PaddlePredictor predictor;
+        // 仅识别实例使用
+        CtcDecoder decoder;
+        // Tensor.setData 要求数组长度与张量元素数严格相等，因此按长度各缓存一份；
+        // 输入形状经过分桶后只有少数几种
+        private final SparseArray<float[]> buffers = new SparseArray<>();
+        // 缓存的尺寸种数上限，0 为不限；超出时整体清空
+        private final int maxBuffers;
+        // 由其他线程置位，持有实例的线程在下一次取缓冲时清空
+        private volatile boolean recyclePending;
+        private final long[] shape = new long[4];
+        final float[] quad = new float[8];
+
+        Stage(String model, String asset, int maxBuffers, int index) {
+            this.model = model;
+            this.asset = asset;
+            this.maxBuffers = maxBuffers;
+            this.index = index;
+        }
+
+        float[] buffer(int length) {
+            return buffer(length, null);
+        }
+
+        /** 同 {@link #buffer(int)}；清空缓存时保留调用方仍在使用的 keep，不把它归还给缓冲池 */
+        float[] buffer(int length, float[] keep) {
+            if (recyclePending) {
+                recyclePending = false;
+                recycleBuffers(keep);
+            }
+            float[] buffer = buffers.get(length);
+            if (buffer == null) {
+                if (maxBuffers > 0 && buffers.size() >= maxBuffers) recycleBuffers(keep);
+                buffer = BufferPool.get().acquireFloats(length);
+                buffers.put(length, buffer);
+            }
+            return buffer;
+        }
+
+        /** 卸载模型并归还缓冲；调用时实例不能在使用中 */
+        void unload() {
+            synchronized (this) {
+                predictor = null;
+                decoder = null;
             }
+            recycleBuffers();
+        }
+
+        /** 不等待使用中的实例，安排在下一次取缓冲时归还全部缓冲 */
+        void recycleLater() {
+            recyclePending = true;
+        }
 
-            if (maxIndex != last_index && maxIndex < labelList.size()) {
-                String c = labelList.get(maxIndex);
-                sb.append(c);
-                last_index = maxIndex;
+        /** 缓冲归还缓冲池，返回归还的字节数 */
+        long recycleBuffers() {
+            return recycleBuffers(null);
+        }
+
+        /** 除 keep 之外的缓冲归还缓冲池，返回归还的字节数 */
+        private long recycleBuffers(float[] keep) {
+            BufferPool pool = BufferPool.get();
+            long bytes = 0;
+            for (int i = 0; i < buffers.size(); i++) {
+                float[] buffer = buffers.valueAt(i);
+                if (buffer == keep) continue;
+                bytes += buffer.length * 4L;
+                pool.release(buffer);
             }
+            buffers.clear();
+            if (keep != null) buffers.put(keep.length, keep);
+            return bytes;
+        }
+
+        /** getFloatData 每次从 native 拷出一个新数组 */
+        static float[] output(Tensor tensor) {
+            float[] data = tensor.getFloatData();
+            OcrMetrics.count(OcrMetrics.Counter.BYTES_COPIED, data.length * 4L);
+            OcrMetrics.count(OcrMetrics.Counter.BYTES_ALLOCATED, data.length * 4L);
+            return data;
         }
 
-        return sb.toString();
+        Tensor run(float[] data, int n, int h, int w) {
+            shape[0] = n;
+            shape[1] = 3;
+            shape[2] = h;
+            shape[3] = w;
+            Tensor inputTensor = predictor.getInput(0);
+            inputTensor.resize(shape);
+            inputTensor.setData(data);
+            OcrMetrics.count(OcrMetrics.Counter.BYTES_COPIED, data.length * 4L);
+            predictor.run();
+            return predictor.getOutput(0);
+        }
     }
 
-    public List<String> runOcr(Bitmap bitmap) {
-    List<String> resultList = new ArrayList<>();
+    /**
+     * 同一模型的一组实例，借出/归还使用，同一实例同一时刻只有一个线程在用。
+     * limit 可随温控、内存压力调低，只借出序号小于 limit 的实例，超出的实例卸载。
+     */
+    private static final class StagePool {
+        final String model;
+        final Stage[] stages;
+        private final boolean[] busy;
+        private int limit;
+
+        StagePool(String model, String asset, int capacity, int maxBuffers) {
+            this.model = model;
+            this.stages = new Stage[capacity];
+            this.busy = new boolean[capacity];
+            for (int i = 0; i < capacity; i++) stages[i] = new Stage(model, asset, maxBuffers, i);
+            this.limit = capacity;
+        }
+
+        synchronized int limit() {
+            return limit;
+        }
+
+        /** 阻塞到有空闲实例；优先借序号小的，已加载的实例更常被复用 */
+        synchronized Stage checkout() {
+            while (true) {
+                Stage stage = tryCheckout();
+                if (stage != null) return stage;
+                try {
+                    wait();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    throw new CancellationException("interrupted while waiting for " + model + " predictor");
+                }
+            }
+        }
+
+        synchronized Stage tryCheckout() {
+            for (int i = 0; i < limit; i++) {
+                if (!busy[i]) {
+                    busy[i] = true;
+                    return stages[i];
+                }
+            }
+            return null;
+        }
+
+        synchronized void checkin(Stage stage) {
+            busy[stage.index] = false;
+            if (stage.index >= limit) stage.unload();
+            notifyAll();
+        }
+
+        /** 返回立即卸载的（已加载且空闲的）实例数 */
+        synchronized int setLimit(int limit) {
+            this.limit = Math.max(1, Math.min(stages.length, limit));
+            int unloaded = 0;
+            for (int i = this.limit; i < stages.length; i++) {
+                if (busy[i]) continue;
+                if (stages[i].predictor != null) unloaded++;
+                stages[i].unload();
+            }
+            notifyAll();
+            return unloaded;
+        }
 
-    Log.d("OCR", "开始预处理 → 方向判断 → 识别...");
+        /** 在模型写锁下调用，此时没有借出的实例 */
+        synchronized void unloadAll() {
+            for (Stage stage : stages) stage.unload();
+        }
 
-    // 1. 灰度化图像（可提升对比度）
-    Bitmap subBitmap = toGrayscale(bitmap);
+        synchronized int loaded() {
+            int loaded = 0;
+            for (Stage stage : stages) {
+                if (stage.predictor != null) loaded++;
+            }
+            return loaded;
+        }
 
-    // 2. 方向分类（是否旋转 180°）
-    boolean rotated = runCls(subBitmap);
-    if (rotated) {
-        Matrix matrix = new Matrix();
-        matrix.postRotate(180);
-        subBitmap = Bitmap.createBitmap(subBitmap, 0, 0, subBitmap.getWidth(), subBitmap.getHeight(), matrix, true);
+        synchronized JSONObject stats() throws JSONException {
+            int inUse = 0;
+            for (boolean b : busy) {
+                if (b) inUse++;
+            }
+            JSONObject stats = new JSONObject();
+            stats.put("capacity", stages.length);
+            stats.put("limit", limit);
+            stats.put("loaded", loaded());
+            stats.put("busy", inUse);
+            return stats;
+        }
     }
 
-    // 3. 文本识别
-    String text = runRec(subBitmap);
-    resultList.add(text);
+    /**
+     * 一次并行执行的工作单元队列，每个工作者一条。单元是毫秒级的推理，
+     * 各队列共用一把锁即可，窃取只影响取单元的顺序。
+     */
+    private static final class WorkQueues {
+        private final ArrayDeque<Integer>[] queues;
+        private final OcrJob job;
+        private int remaining;
+        private int inFlight;
+        private RuntimeException error;
+
+        @SuppressWarnings("unchecked")
+        WorkQueues(int workers, int units, OcrJob job) {
+            this.queues = new ArrayDeque[workers];
+            for (int w = 0; w < workers; w++) queues[w] = new ArrayDeque<>();
+            for (int u = 0; u < units; u++) queues[u % workers].addLast(u);
+            this.remaining = units;
+            this.job = job;
+        }
 
-    return resultList;
-}
+        /** 先取自己队头，再从其他队列队尾窃取；没有单元或已失败时返回 -1 */
+        private synchronized int next(int self) {
+            if (error != null) return -1;
+            Integer unit = queues[self].pollFirst();
+            for (int i = 1; unit == null && i < queues.length; i++) {
+                unit = queues[(self + i) % queues.length].pollLast();
+            }
+            if (unit == null) return -1;
+            inFlight++;
+            return unit;
+        }
 
-public Bitmap toGrayscale(Bitmap bmpOriginal) {
-    int width = bmpOriginal.getWidth();
-    int height = bmpOriginal.getHeight();
-    Bitmap bmpGrayscale = Bitmap.createBitmap(width, height, Bitmap.Config.ARGB_8888);
-    Canvas canvas = new Canvas(bmpGrayscale);
-    Paint paint = new Paint();
-    ColorMatrix cm = new ColorMatrix();
-    cm.setSaturation(0); // 去除彩色
-    ColorMatrixColorFilter f = new ColorMatrixColorFilter(cm);
-    paint.setColorFilter(f);
-    canvas.drawBitmap(bmpOriginal, 0, 0, paint);
-    return bmpGrayscale;
-}
+        private synchronized void done(RuntimeException failure) {
+            inFlight--;
+            remaining--;
+            if (failure != null && error == null) error = failure;
+            notifyAll();
+        }
+
+        void drain(int self, Stage stage, Unit unit) {
+            int next;
+            while ((next = next(self)) >= 0) {
+                RuntimeException failure = null;
+                try {
+                    checkCancelled(job);
+                    unit.run(stage, next);
+                } catch (RuntimeException e) {
+                    failure = e;
+                }
+                done(failure);
+            }
+        }
 
+        /** 等其他工作者手上的单元结束；调用线程已取空所有队列 */
+        synchronized void await() {
+            boolean interrupted = false;
+            while (inFlight > 0 || (error == null && remaining > 0)) {
+                try {
+                    wait();
+                } catch (InterruptedException e) {
+                    // 结果数组仍在被写，必须等进行中的单元结束
+                    interrupted = true;
+                }
+            }
+            if (interrupted) Thread.currentThread().interrupt();
+            if (error != null) throw error;
+        }
+    }
 }
@@ -0,0 +1,225 @@
+package com.reatext.app;
+
+import android.content.Context;
+import android.graphics.Bitmap;
+import android.graphics.Color;
+import android.graphics.Matrix;
+import android.graphics.pdf.PdfRenderer;
+import android.net.Uri;
+import android.os.ParcelFileDescriptor;
+import android.os.Process;
+import android.util.Log;
+
+import com.alexcheng.heybossapp.ocr.BufferPool;
+import com.alexcheng.heybossapp.ocr.OcrJob;
+
+import java.io.IOException;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+
+/**
+ * 原生 PDF 识别：PdfRenderer 逐页渲染，渲染完一页立即送入 OCR 流水线，结果逐页回调。
+ *
+ * 不做整本预扫描，首页渲染完就开始识别；页面尺寸按 DPI 自适应（长边约 {@link #TARGET_LONG_SIDE}），
+ * 渲染位图只有一张，按页 reconfigure 复用。送入流水线的帧来自容量为 {@link #IN_FLIGHT} 的帧池，
+ * 帧池取空时渲染线程等待识别完成，所以内存占用与页数无关。
+ * 位图与帧的像素数组都取自 {@link BufferPool}，渲染结束后归还，下一本 PDF 直接复用。
+ * 整本作为一个批量优先级的 {@link OcrJob} 提交，悬浮球截屏与单张上传会插到各页之前。
+ */
+public final class PdfOcrSession {
+    private static final String TAG = "PdfOcrSession";
+    // 长边目标像素：A4 约 170 DPI，小字仍有足够的识别分辨率
+    private static final int TARGET_LONG_SIDE = 2048;
+    private static final float MIN_DPI = 72f;
+    private static final float MAX_DPI = 300f;
+    // 单页像素上限，防止超大页面（海报、图纸）按最低 DPI 仍过大
+    private static final int MAX_PIXELS = 2048 * 2048;
+    // 同时在流水线中的页数；一页在检测、一页在识别即可让各阶段都不空闲
+    private static final int IN_FLIGHT = 2;
+
+    public interface Listener {
+        void onStart(int pageCount);
+
+        /** 页序回调，width / height 为渲染尺寸，lines 的坐标基于该尺寸 */
+        void onPage(int index, int pageCount, List<OcrLine> lines, int width, int height);
+
+        /** index 为 -1 表示文档无法打开或渲染中途失败，后续页面不再渲染 */
+        void onError(int index, Exception error);
+
+        void onComplete(int pageCount);
+    }
+
+    private final Context context;
+    private final OcrEngine engine;
+    private final Uri uri;
+    private final Listener listener;
+    private final BlockingQueue<OcrFrame> frames = new ArrayBlockingQueue<>(IN_FLIGHT);
+    private final OcrJob job = new OcrJob(OcrJob.Priority.BATCH);
+    private volatile boolean cancelled;
+    // 渲染循环已退出；之后回来的帧直接归还缓冲池，由 frames 监视器保护
+    private boolean rendered;
+    private Thread thread;
+
+    public PdfOcrSession(Context context, OcrEngine engine, Uri uri, Listener listener) {
+        this.context = context.getApplicationContext();
+        this.engine = engine;
+        this.uri = uri;
+        this.listener = listener;
+        for (int i = 0; i < IN_FLIGHT; i++) frames.add(new OcrFrame());
+    }
+
+    public Uri getUri() {
+        return uri;
+    }
+
+    public synchronized void start() {
+        if (thread != null) return;
+        thread = new Thread(new Runnable() {
+            @Override
+            public void run() {
+                Process.setThreadPriority(Process.THREAD_PRIORITY_BACKGROUND);
+                renderAll();
+            }
+        }, "ocr-pdf");
+        thread.start();
+    }
+
+    /** 停止渲染后续页面；已送入流水线的页在下一个阶段或批次之前中止，不再回调 */
+    public synchronized void cancel() {
+        cancelled = true;
+        job.cancel();
+        if (thread != null) thread.interrupt();
+    }
+
+    private void renderAll() {
+        ParcelFileDescriptor fd = null;
+        PdfRenderer renderer = null;
+        try {
+            fd = context.getContentResolver().openFileDescriptor(uri, "r");
+            if (fd == null) throw new IOException("Cannot open " + uri);
+            renderer = new PdfRenderer(fd);
+        } catch (IOException | SecurityException e) {
+            Log.w(TAG, "open failed: " + uri, e);
+            closeQuietly(renderer, fd);
+            if (!cancelled) listener.onError(-1, e);
+            return;
+        }
+
+        final int pageCount = renderer.getPageCount();
+        listener.onStart(pageCount);
+        if (pageCount == 0) {
+            closeQuietly(renderer, fd);
+            listener.onComplete(0);
+            return;
+        }
+        Bitmap bitmap = null;
+        Matrix matrix = new Matrix();
+        // 最后一页回调之后才算完成，用计数而非渲染循环结束判断
+        final int[] remaining = {pageCount};
+        try {
+            for (int i = 0; i < pageCount && !cancelled; i++) {
+                final OcrFrame frame = frames.take();
+                final int index = i;
+                int width;
+                int height;
+                PdfRenderer.Page page = renderer.openPage(i);
+                try {
+                    float scale = pageScale(page.getWidth(), page.getHeight());
+                    width = Math.max(1, Math.round(page.getWidth() * scale));
+                    height = Math.max(1, Math.round(page.getHeight() * scale));
+                    bitmap = reuse(bitmap, width, height);
+                    // PDF 页面背景透明，先铺白底，否则透明像素按黑色参与识别
+                    bitmap.eraseColor(Color.WHITE);
+                    matrix.setScale(scale, scale);
+                    page.render(bitmap, null, matrix, PdfRenderer.Page.RENDER_MODE_FOR_DISPLAY);
+                } finally {
+                    page.close();
+                }
+                // 像素拷入帧池中的 int[]，位图可以立即用于下一页
+                frame.load(bitmap);
+
+                final int pageWidth = width;
+                final int pageHeight = height;
+                engine.submit(frame, job, new OcrPipeline.Callback() {
+                    @Override
+                    public void onResult(List<OcrLine> lines) {
+                        returnFrame(frame);
+                        if (!cancelled) listener.onPage(index, pageCount, lines, pageWidth, pageHeight);
+                        pageDone(remaining, pageCount);
+                    }
+
+                    @Override
+                    public void onError(Exception error) {
+                        returnFrame(frame);
+                        if (!cancelled) listener.onError(index, error);
+                        pageDone(remaining, pageCount);
+                    }
+                }, null);
+            }
+        } catch (InterruptedException e) {
+            Log.d(TAG, "cancelled: " + uri);
+        } catch (RuntimeException e) {
+            // 损坏的页面会在 openPage / render 中抛出，整本放弃
+            Log.w(TAG, "render failed: " + uri, e);
+            if (!cancelled) listener.onError(-1, e);
+        } finally {
+            BufferPool.get().release(bitmap);
+            closeQuietly(renderer, fd);
+            synchronized (frames) {
+                rendered = true;
+                for (OcrFrame idle : frames) idle.recycle();
+                frames.clear();
+            }
+        }
+    }
+
+    private void returnFrame(OcrFrame frame) {
+        synchronized (frames) {
+            if (rendered) {
+                frame.recycle();
+            } else {
+                frames.offer(frame);
+            }
+        }
+    }
+
+    private void pageDone(int[] remaining, int pageCount) {
+        boolean last;
+        synchronized (remaining) {
+            last = --remaining[0] == 0;
+        }
+        if (last && !cancelled) listener.onComplete(pageCount);
+    }
+
+    /** 页面尺寸单位为 1/72 英寸；按长边目标换算 DPI，再受 DPI 范围与像素上限约束 */
+    static float pageScale(int pointsWidth, int pointsHeight) {
+        float longSide = Math.max(1, Math.max(pointsWidth, pointsHeight));
+        float dpi = Math.max(MIN_DPI, Math.min(MAX_DPI, TARGET_LONG_SIDE * 72f / longSide));
+        float scale = dpi / 72f;
+        float pixels = pointsWidth * scale * pointsHeight * scale;
+        if (pixels > MAX_PIXELS) scale *= (float) Math.sqrt(MAX_PIXELS / pixels);
+        return scale;
+    }
+
+    /** 容量足够时原地 reconfigure，否则归还缓冲池并取一张更大的位图 */
+    private static Bitmap reuse(Bitmap bitmap, int width, int height) {
+        if (bitmap != null && bitmap.getAllocationByteCount() >= width * height * 4) {
+            bitmap.reconfigure(width, height, Bitmap.Config.ARGB_8888);
+            return bitmap;
+        }
+        BufferPool pool = BufferPool.get();
+        pool.release(bitmap);
+        return pool.acquireBitmap(width, height);
+    }
+
+    private static void closeQuietly(PdfRenderer renderer, ParcelFileDescriptor fd) {
+        if (renderer != null) renderer.close();
+        if (fd != null) {
+            try {
+                fd.close();
+            } catch (IOException ignored) {
+            }
+        }
+    }
+}
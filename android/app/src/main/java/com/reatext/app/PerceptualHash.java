@@ -0,0 +1,113 @@
+package com.reatext.app;
+
+import java.nio.ByteBuffer;
+
+/**
+ * 结果缓存的键：亮度面上的 dHash（相邻格子亮度比较得到的位图）折叠成 128 位摘要，
+ * 再附上同一份下采样数据的 64 位内容哈希。
+ *
+ * 整帧按面积平均下采样到长边 {@link #FRAME_GRID} 格，每个源像素都参与，避免点采样漏掉小字的变化。
+ * 识别裁剪直接用已经采样好的 32 × W 灰度输入，逐像素比较。
+ * 只有梯度方向相同的不同图片（版式相近的 PDF 页、相似的文字行）dHash 会相同，
+ * 内容哈希保证命中的是同一份下采样内容，不会取到别的图片的结果；重复截取的同一屏幕内容完全一致，照常命中。
+ * 键中带模型版本与尺寸：模型更新后旧结果不会命中，同内容不同分辨率的框坐标也不会混用。
+ */
+public final class PerceptualHash {
+    static final int FRAME_GRID = 256;
+
+    private PerceptualHash() {
+    }
+
+    public static String frameKey(String modelVersion, OcrFrame frame) {
+        int w = frame.width;
+        int h = frame.height;
+        int gridW = Math.max(2, Math.min(w, (int) ((long) FRAME_GRID * w / Math.max(w, h))));
+        int gridH = Math.max(1, Math.min(h, (int) ((long) FRAME_GRID * h / Math.max(w, h))));
+
+        int[] colCell = new int[w];
+        for (int x = 0; x < w; x++) colCell[x] = (int) ((long) x * gridW / w);
+        long[] sums = new long[gridW * gridH];
+        int[] counts = new int[gridW * gridH];
+
+        for (int y = 0; y < h; y++) {
+            int base = (int) ((long) y * gridH / h) * gridW;
+            if (frame.buffer != null) {
+                ByteBuffer buffer = frame.buffer;
+                int offset = frame.bufferOffset + y * frame.rowStride;
+                for (int x = 0; x < w; x++, offset += frame.pixelStride) {
+                    int p = buffer.getInt(offset); // 小端：0xAABBGGRR
+                    sums[base + colCell[x]] += ((p & 0xff) * 77 + ((p >> 8) & 0xff) * 150 + ((p >> 16) & 0xff) * 29);
+                    counts[base + colCell[x]]++;
+                }
+            } else {
+                int[] pixels = frame.pixels;
+                int row = y * w;
+                for (int x = 0; x < w; x++) {
+                    int p = pixels[row + x]; // 0xAARRGGBB
+                    sums[base + colCell[x]] += (((p >> 16) & 0xff) * 77 + ((p >> 8) & 0xff) * 150 + (p & 0xff) * 29);
+                    counts[base + colCell[x]]++;
+                }
+            }
+        }
+
+        float[] luma = new float[gridW * gridH];
+        long content = 0x84222325cbf29ce4L;
+        for (int i = 0; i < luma.length; i++) {
+            luma[i] = counts[i] == 0 ? 0 : (float) sums[i] / counts[i];
+            // 格子的亮度和是精确整数，任一像素变化都会改变它
+            content = (content ^ sums[i]) * 0x100000001b3L;
+        }
+        return modelVersion + "|" + w + "x" + h + "|" + digest(luma, 0, gridW, gridW, gridH)
+                + "|" + Long.toHexString(mix(content));
+    }
+
+    /** 识别输入张量中一张裁剪的键；plane 为其第一个通道（灰度时三通道相同） */
+    public static String cropKey(float[] plane, int offset, int width, int planeWidth, int height) {
+        return width + "x" + height + "|" + digest(plane, offset, planeWidth, width, height)
+                + "|" + Long.toHexString(contentHash(plane, offset, planeWidth, width, height));
+    }
+
+    /** 逐值的 FNV-1a（按 32 位字）再经 SplitMix64 终结 */
+    private static long contentHash(float[] values, int offset, int stride, int width, int height) {
+        long h = 0x84222325cbf29ce4L;
+        for (int y = 0; y < height; y++) {
+            int row = offset + y * stride;
+            for (int x = 0; x < width; x++) {
+                h = (h ^ Float.floatToRawIntBits(values[row + x])) * 0x100000001b3L;
+            }
+        }
+        return mix(h);
+    }
+
+    /** 逐行比较相邻格子得到 dHash 位，按 64 位一组混入两条独立的哈希链 */
+    private static String digest(float[] values, int offset, int stride, int width, int height) {
+        long h1 = 0xcbf29ce484222325L;
+        long h2 = 0x9e3779b97f4a7c15L;
+        long word = 0;
+        int bits = 0;
+        for (int y = 0; y < height; y++) {
+            int row = offset + y * stride;
+            for (int x = 0; x + 1 < width; x++) {
+                word = (word << 1) | (values[row + x] < values[row + x + 1] ? 1 : 0);
+                if (++bits == 64) {
+                    h1 = (h1 ^ word) * 0x100000001b3L;
+                    h2 = mix(h2 + word);
+                    word = 0;
+                    bits = 0;
+                }
+            }
+        }
+        if (bits > 0) {
+            h1 = (h1 ^ word) * 0x100000001b3L;
+            h2 = mix(h2 + word);
+        }
+        return Long.toHexString(h1) + Long.toHexString(h2);
+    }
+
+    // SplitMix64 终结函数
+    private static long mix(long z) {
+        z = (z ^ (z >>> 30)) * 0xbf58476d1ce4e5b9L;
+        z = (z ^ (z >>> 27)) * 0x94d049bb133111ebL;
+        return z ^ (z >>> 31);
+    }
+}
@@ -0,0 +1,179 @@
+package com.reatext.app;
+
+import android.util.Log;
+import android.util.LruCache;
+
+import org.json.JSONException;
+import org.json.JSONObject;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.charset.Charset;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * OCR 结果缓存：内存 LRU 一级，可选的磁盘二级（cacheDir 下每键一个文件）。
+ * 键由 {@link PerceptualHash} 生成。磁盘写入在后台线程进行，不拖慢识别线程；
+ * 磁盘命中的条目会提升回内存。
+ */
+public final class ResultCache<V> {
+    private static final String TAG = "ResultCache";
+    private static final Charset UTF_8 = Charset.forName("UTF-8");
+
+    /** 磁盘层的序列化方式 */
+    public interface Codec<V> {
+        String encode(V value) throws JSONException;
+
+        V decode(String data) throws JSONException;
+    }
+
+    private final String name;
+    private final LruCache<String, V> memory;
+    private final File diskDir;
+    private final int diskEntries;
+    private final Codec<V> codec;
+    private final ExecutorService diskWriter;
+
+    private final AtomicLong memoryHits = new AtomicLong();
+    private final AtomicLong diskHits = new AtomicLong();
+    private final AtomicLong misses = new AtomicLong();
+
+    /** 仅内存层 */
+    public ResultCache(String name, int memoryEntries) {
+        this(name, memoryEntries, null, 0, null);
+    }
+
+    public ResultCache(String name, int memoryEntries, File diskDir, int diskEntries, Codec<V> codec) {
+        this.name = name;
+        this.memory = new LruCache<>(memoryEntries);
+        this.diskDir = codec != null ? diskDir : null;
+        this.diskEntries = diskEntries;
+        this.codec = codec;
+        this.diskWriter = this.diskDir != null ? Executors.newSingleThreadExecutor() : null;
+    }
+
+    public V get(String key) {
+        V value = memory.get(key);
+        if (value != null) {
+            memoryHits.incrementAndGet();
+            return value;
+        }
+        value = readDisk(key);
+        if (value != null) {
+            diskHits.incrementAndGet();
+            memory.put(key, value);
+            return value;
+        }
+        misses.incrementAndGet();
+        return null;
+    }
+
+    public void put(final String key, final V value) {
+        memory.put(key, value);
+        if (diskWriter == null) return;
+        diskWriter.execute(() -> writeDisk(key, value));
+    }
+
+    public void clear() {
+        memory.evictAll();
+        if (diskWriter == null) return;
+        diskWriter.execute(() -> {
+            File[] files = diskDir.listFiles();
+            if (files == null) return;
+            for (File file : files) file.delete();
+        });
+    }
+
+    /** 内存紧张时把内存层淘汰到 maxEntries 条（磁盘层不动），返回淘汰的条数 */
+    public int trimMemory(int maxEntries) {
+        int before = memory.size();
+        memory.trimToSize(maxEntries);
+        return Math.max(0, before - memory.size());
+    }
+
+    public JSONObject stats() {
+        JSONObject stats = new JSONObject();
+        try {
+            stats.put("memoryHits", memoryHits.get());
+            stats.put("diskHits", diskHits.get());
+            stats.put("misses", misses.get());
+            stats.put("memoryEntries", memory.size());
+        } catch (JSONException e) {
+            Log.w(TAG, "stats failed", e);
+        }
+        return stats;
+    }
+
+    @Override
+    public String toString() {
+        return name + " " + stats();
+    }
+
+    private File fileFor(String key) {
+        return new File(diskDir, key.replaceAll("[^A-Za-z0-9.-]", "_"));
+    }
+
+    private V readDisk(String key) {
+        if (diskDir == null) return null;
+        File file = fileFor(key);
+        if (!file.isFile()) return null;
+        try (InputStream in = new FileInputStream(file)) {
+            byte[] data = new byte[(int) file.length()];
+            int read = 0;
+            while (read < data.length) {
+                int n = in.read(data, read, data.length - read);
+                if (n < 0) break;
+                read += n;
+            }
+            V value = codec.decode(new String(data, 0, read, UTF_8));
+            // 刷新修改时间，磁盘层按最近使用淘汰
+            file.setLastModified(System.currentTimeMillis());
+            return value;
+        } catch (IOException | JSONException e) {
+            Log.w(TAG, name + ": dropping unreadable entry " + file.getName(), e);
+            file.delete();
+            return null;
+        }
+    }
+
+    /** 先写临时文件再 rename，读到的要么是完整条目要么不存在 */
+    private void writeDisk(String key, V value) {
+        if (!diskDir.exists() && !diskDir.mkdirs()) return;
+        File target = fileFor(key);
+        File tmp = new File(diskDir, target.getName() + ".tmp");
+        try (OutputStream out = new FileOutputStream(tmp)) {
+            out.write(codec.encode(value).getBytes(UTF_8));
+        } catch (IOException | JSONException e) {
+            Log.w(TAG, name + ": write failed", e);
+            tmp.delete();
+            return;
+        }
+        if (!tmp.renameTo(target)) {
+            tmp.delete();
+            return;
+        }
+        trimDisk();
+    }
+
+    /** 超出上限时按修改时间删到上限的 3/4，避免每次写入都扫描目录 */
+    private void trimDisk() {
+        File[] files = diskDir.listFiles();
+        if (files == null || files.length <= diskEntries) return;
+        Arrays.sort(files, new Comparator<File>() {
+            @Override
+            public int compare(File a, File b) {
+                return Long.compare(a.lastModified(), b.lastModified());
+            }
+        });
+        int remove = files.length - diskEntries * 3 / 4;
+        for (int i = 0; i < remove; i++) files[i].delete();
+    }
+}
@@ -0,0 +1,230 @@
+package com.reatext.app;
+
+import android.content.Context;
+import android.content.SharedPreferences;
+import android.util.Log;
+
+import com.baidu.paddle.lite.ConfigBase;
+import com.baidu.paddle.lite.MobileConfig;
+import com.baidu.paddle.lite.PaddlePredictor;
+import com.baidu.paddle.lite.PowerMode;
+import com.baidu.paddle.lite.Tensor;
+
+import org.json.JSONException;
+import org.json.JSONObject;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * 为每个模型选择 MobileConfig 的线程数与 PowerMode。
+ *
+ * 优先级：JS 侧覆盖 > 本机计时试验结果 > 按大核数推算的默认值。
+ * 试验结果按 App 版本持久化在 SharedPreferences，模型随版本更新后重新试验。
+ */
+public final class RuntimeTuner {
+    private static final String TAG = "RuntimeTuner";
+    private static final String PREFS = "ocr_runtime";
+    private static final String KEY_VERSION = "tuned.version";
+    private static final int TRIAL_RUNS = 3;
+    // 等待识别空闲的轮询间隔
+    private static final long IDLE_POLL_MS = 500;
+
+    public static final String[] MODELS = {"det", "cls", "rec"};
+
+    /** 识别活动；计时试验只在空闲时进行 */
+    public interface Activity {
+        /** 没有进行中的识别时返回已开始的识别次数（单调递增），否则返回 -1 */
+        long idleMark();
+    }
+
+    public static final class Choice {
+        public final int threads;
+        public final PowerMode powerMode;
+        public final String source;
+
+        Choice(int threads, PowerMode powerMode, String source) {
+            this.threads = threads;
+            this.powerMode = powerMode;
+            this.source = source;
+        }
+
+        String encode() {
+            return threads + ":" + powerMode.name();
+        }
+
+        static Choice decode(String value, String source) {
+            if (value == null) return null;
+            try {
+                String[] parts = value.split(":");
+                return new Choice(Integer.parseInt(parts[0]), PowerMode.valueOf(parts[1]), source);
+            } catch (RuntimeException e) {
+                return null;
+            }
+        }
+
+        boolean sameAs(Choice other) {
+            return other != null && threads == other.threads && powerMode == other.powerMode;
+        }
+    }
+
+    private final SharedPreferences prefs;
+    private final DeviceProfile device = DeviceProfile.get();
+
+    public RuntimeTuner(Context context) {
+        prefs = context.getApplicationContext().getSharedPreferences(PREFS, Context.MODE_PRIVATE);
+        String version = ModelStore.versionKey(context);
+        if (!version.equals(prefs.getString(KEY_VERSION, null))) {
+            // 模型可能随版本变化，旧的试验结果作废（JS 覆盖保留）
+            SharedPreferences.Editor editor = prefs.edit();
+            for (String model : MODELS) editor.remove("tuned." + model);
+            editor.putString(KEY_VERSION, version).apply();
+        }
+    }
+
+    public Choice choiceFor(String model) {
+        Choice override = Choice.decode(prefs.getString("override." + model, null), "override");
+        if (override != null) return override;
+        Choice tuned = Choice.decode(prefs.getString("tuned." + model, null), "tuned");
+        if (tuned != null) return tuned;
+        return new Choice(Math.min(4, device.bigCores), PowerMode.LITE_POWER_HIGH, "default");
+    }
+
+    public void applyTo(MobileConfig config, String model) {
+        Choice choice = choiceFor(model);
+        config.setThreads(choice.threads);
+        config.setPowerMode(choice.powerMode);
+    }
+
+    /** threads <= 0 且 powerMode 为空时清除覆盖；只给一项时另一项沿用当前值 */
+    public void setOverride(String model, int threads, String powerMode) {
+        String key = "override." + model;
+        if (threads <= 0 && powerMode == null) {
+            prefs.edit().remove(key).apply();
+            return;
+        }
+        Choice current = choiceFor(model);
+        int t = threads > 0 ? Math.min(threads, device.totalCores) : current.threads;
+        PowerMode mode = powerMode != null ? PowerMode.valueOf(powerMode) : current.powerMode;
+        prefs.edit().putString(key, new Choice(t, mode, "override").encode()).apply();
+    }
+
+    public boolean needsTuning(String model) {
+        return !prefs.contains("tuned." + model);
+    }
+
+    /**
+     * 在每组候选配置上各建一个私有预测器，用全零输入计时，取中位数最小者并持久化。
+     * 不持有模型锁，不挡住正式推理：只在没有识别时试验，试验期间有识别开始则该组作废、空闲后重测。
+     * 线程被中断时放弃，不保存结果。
+     */
+    public Choice tune(String model, String modelPath, long[] inputShape, Activity activity) {
+        int size = 1;
+        for (long d : inputShape) size *= (int) d;
+        float[] input = new float[size];
+
+        Choice best = null;
+        long bestNanos = Long.MAX_VALUE;
+        try {
+            for (Choice candidate : candidates()) {
+                long nanos = -1;
+                while (nanos < 0) {
+                    long mark = awaitIdle(activity);
+                    long elapsed = trial(modelPath, candidate, inputShape, input);
+                    if (activity.idleMark() == mark) nanos = elapsed;
+                }
+                Log.d(TAG, model + " threads=" + candidate.threads + " " + candidate.powerMode
+                        + " → " + (nanos / 1000) + " us");
+                if (nanos < bestNanos) {
+                    bestNanos = nanos;
+                    best = candidate;
+                }
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return choiceFor(model);
+        }
+        if (best == null) return choiceFor(model);
+
+        Choice tuned = new Choice(best.threads, best.powerMode, "tuned");
+        prefs.edit().putString("tuned." + model, tuned.encode()).apply();
+        return tuned;
+    }
+
+    private List<Choice> candidates() {
+        List<Integer> threads = new ArrayList<>();
+        for (int t : new int[]{1, 2, device.bigCores, Math.min(device.totalCores, 2 * device.bigCores)}) {
+            if (t >= 1 && t <= device.totalCores && !threads.contains(t)) threads.add(t);
+        }
+        List<Choice> list = new ArrayList<>();
+        for (int t : threads) {
+            for (PowerMode mode : Arrays.asList(PowerMode.LITE_POWER_HIGH, PowerMode.LITE_POWER_NO_BIND)) {
+                list.add(new Choice(t, mode, "trial"));
+            }
+        }
+        return list;
+    }
+
+    private static long awaitIdle(Activity activity) throws InterruptedException {
+        long mark;
+        while ((mark = activity.idleMark()) < 0) Thread.sleep(IDLE_POLL_MS);
+        return mark;
+    }
+
+    private static long trial(String modelPath, Choice choice, long[] inputShape, float[] input) {
+        MobileConfig config = new MobileConfig();
+        config.setModelFromFile(modelPath);
+        config.setThreads(choice.threads);
+        config.setPowerMode(choice.powerMode);
+        TrialPredictor predictor = new TrialPredictor(config);
+        try {
+            Tensor tensor = predictor.getInput(0);
+            if (tensor == null) throw new IllegalStateException("failed to create predictor for " + modelPath);
+            tensor.resize(inputShape);
+            tensor.setData(input);
+            predictor.run(); // 首次运行包含内存规划，不计时
+
+            long[] samples = new long[TRIAL_RUNS];
+            for (int i = 0; i < TRIAL_RUNS; i++) {
+                long start = System.nanoTime();
+                predictor.run();
+                samples[i] = System.nanoTime() - start;
+            }
+            Arrays.sort(samples);
+            return samples[TRIAL_RUNS / 2];
+        } finally {
+            predictor.release();
+        }
+    }
+
+    /** 试验用的预测器，用完立即释放 native 资源，不等 finalize */
+    private static final class TrialPredictor extends PaddlePredictor {
+        TrialPredictor(ConfigBase config) {
+            super(config);
+        }
+
+        void release() {
+            clear();
+        }
+    }
+
+    public JSONObject describe() {
+        JSONObject result = new JSONObject();
+        try {
+            result.put("bigCores", device.bigCores);
+            result.put("totalCores", device.totalCores);
+            for (String model : MODELS) {
+                Choice choice = choiceFor(model);
+                JSONObject item = new JSONObject();
+                item.put("threads", choice.threads);
+                item.put("powerMode", choice.powerMode.name());
+                item.put("source", choice.source);
+                result.put(model, item);
+            }
+        } catch (JSONException e) {
+            Log.w(TAG, "describe failed", e);
+        }
+        return result;
+    }
+}
@@ -0,0 +1,168 @@
+package com.reatext.app;
+
+import android.net.Uri;
+import android.util.Log;
+import android.webkit.WebMessage;
+import android.webkit.WebMessagePort;
+import android.webkit.WebView;
+
+import org.json.JSONException;
+import org.json.JSONObject;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * 原生 → 网页的结果通道，基于 WebMessagePort，不再把结果拼进 evaluateJavascript 的脚本字符串。
+ *
+ * 每次页面加载完成后 {@link #connect} 新建一对端口，一端随 {@link #HANDSHAKE} 消息交给页面
+ * （见 src/utils/nativeChannel.js）；页面回 {"k":"ready"} 之后开始投递，此前的帧排队。
+ * 队列最多 {@link #MAX_PENDING} 帧，超出时丢弃最早的帧，页面迟迟不就绪时内存占用也有上限。
+ * 每帧是一条紧凑 JSON 文本，由调用方在工作线程序列化；主线程只做 postMessage，一次投递一批。
+ *
+ * 端口只交给应用自己的源（Capacitor 本地服务器或配置的 server.url）：WebView 导航到外部页面时不握手，
+ * 握手回复也只在当前页面仍是应用源时接受，识别出的文本不会流向其他页面；离开应用源时清空队列。
+ */
+public final class WebChannel {
+    private static final String TAG = "WebChannel";
+    static final String HANDSHAKE = "reatext:channel";
+    // 约相当于几十页 PDF 的行帧
+    static final int MAX_PENDING = 1024;
+
+    private final WebView webView;
+    // scheme://authority
+    private final String appOrigin;
+
+    // 以下字段由 this 监视器保护
+    private WebMessagePort port;
+    private boolean ready;
+    private ArrayDeque<String> pending = new ArrayDeque<>();
+    private int dropped;
+
+    /** appUrl 为应用页面的地址，只取其源 */
+    public WebChannel(WebView webView, String appUrl) {
+        this.webView = webView;
+        this.appOrigin = origin(appUrl);
+    }
+
+    private static String origin(String url) {
+        if (url == null) return null;
+        Uri uri = Uri.parse(url);
+        if (uri.getScheme() == null || uri.getAuthority() == null) return null;
+        return uri.getScheme() + "://" + uri.getAuthority();
+    }
+
+    /** 在主线程调用：当前页面是否来自应用源 */
+    private boolean onAppPage() {
+        return appOrigin != null && appOrigin.equalsIgnoreCase(origin(webView.getUrl()));
+    }
+
+    /**
+     * 在主线程调用；旧端口随旧页面失效，未确认的帧留给新页面。
+     * 当前页面不是应用源时不握手，并丢弃排队的帧：回到应用页面前不会就绪，排队只会无限增长。
+     */
+    public void connect() {
+        if (!onAppPage()) {
+            Log.w(TAG, "not handing the channel to " + webView.getUrl());
+            WebMessagePort old;
+            synchronized (this) {
+                old = port;
+                port = null;
+                ready = false;
+                pending.clear();
+            }
+            if (old != null) old.close();
+            return;
+        }
+        WebMessagePort[] ports = webView.createWebMessageChannel();
+        ports[0].setWebMessageCallback(new WebMessagePort.WebMessageCallback() {
+            @Override
+            public void onMessage(WebMessagePort source, WebMessage message) {
+                if (isReady(message.getData())) markReady(source);
+            }
+        });
+        WebMessagePort old;
+        synchronized (this) {
+            old = port;
+            port = ports[0];
+            ready = false;
+        }
+        if (old != null) old.close();
+        // 限定 targetOrigin：投递前页面已换成其他源时 WebView 丢弃这条消息
+        webView.postWebMessage(new WebMessage(HANDSHAKE, new WebMessagePort[]{ports[1]}), Uri.parse(appOrigin));
+    }
+
+    private static boolean isReady(String data) {
+        try {
+            return data != null && "ready".equals(new JSONObject(data).optString("k"));
+        } catch (JSONException e) {
+            Log.w(TAG, "bad message: " + data);
+            return false;
+        }
+    }
+
+    /** 端口回调默认在主线程执行 */
+    private void markReady(WebMessagePort source) {
+        if (!onAppPage()) {
+            Log.w(TAG, "ignoring ready from " + webView.getUrl());
+            return;
+        }
+        synchronized (this) {
+            // 握手回复可能来自已被替换的旧端口
+            if (source != port) return;
+            ready = true;
+        }
+        flush();
+    }
+
+    /** 任意线程调用；frames 逐条作为独立消息按顺序送达。未就绪时排队，超出 {@link #MAX_PENDING} 丢弃最早的帧 */
+    public void send(List<String> frames) {
+        synchronized (this) {
+            pending.addAll(frames);
+            if (pending.size() > MAX_PENDING) {
+                int overflow = pending.size() - MAX_PENDING;
+                for (int i = 0; i < overflow; i++) pending.pollFirst();
+                dropped += overflow;
+                Log.w(TAG, "channel not ready, dropped " + dropped + " frames so far");
+            }
+            if (!ready) return;
+        }
+        webView.post(this::flush);
+    }
+
+    /** 任意线程调用：丢弃尚未投递的帧，如新文档取代旧文档时旧文档的剩余结果 */
+    public synchronized void discardPending() {
+        pending.clear();
+    }
+
+    public void send(String frame) {
+        List<String> frames = new ArrayList<>(1);
+        frames.add(frame);
+        send(frames);
+    }
+
+    /** 在主线程执行 */
+    private void flush() {
+        ArrayDeque<String> frames;
+        WebMessagePort target;
+        synchronized (this) {
+            if (!ready || pending.isEmpty()) return;
+            frames = pending;
+            pending = new ArrayDeque<>();
+            target = port;
+        }
+        for (String frame : frames) target.postMessage(new WebMessage(frame));
+    }
+
+    public void close() {
+        WebMessagePort old;
+        synchronized (this) {
+            old = port;
+            port = null;
+            ready = false;
+            pending.clear();
+        }
+        if (old != null) old.close();
+    }
+}
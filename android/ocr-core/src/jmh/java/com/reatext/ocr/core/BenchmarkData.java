@@ -0,0 +1,128 @@
+package com.reatext.ocr.core;
+
+import java.awt.image.BufferedImage;
+import java.io.File;
+import java.io.FilenameFilter;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+
+import javax.imageio.ImageIO;
+
+/**
+ * 基准输入：合成数据固定种子生成，结果可复现；
+ * 录制数据来自 -Docr.tensors 目录（PaddleOCRLitePredictor.setTensorDumpDir 写出的 *.ocrt 与截图）。
+ */
+final class BenchmarkData {
+    static final String SYNTHETIC = "synthetic";
+    static final String RECORDED = "recorded";
+
+    private BenchmarkData() {
+    }
+
+    /** 仿截屏页面：浅色底，若干行由深色笔画块组成的“文字” */
+    static int[] syntheticPage(int width, int height, long seed) {
+        Random random = new Random(seed);
+        int[] pixels = new int[width * height];
+        Arrays.fill(pixels, 0xfff5f5f5);
+        for (int top = 40; top + 40 < height; top += 64) {
+            int left = 32 + random.nextInt(32);
+            int right = width - 32 - random.nextInt(width / 3);
+            for (int x = left; x < right; x += 28) {
+                int glyph = 16 + random.nextInt(10);
+                for (int y = top; y < top + 32; y++) {
+                    for (int dx = 0; dx < glyph && x + dx < right; dx++) {
+                        if (random.nextInt(3) == 0) pixels[y * width + x + dx] = 0xff202020;
+                    }
+                }
+            }
+        }
+        return pixels;
+    }
+
+    /** 与 syntheticPage 对应的 DB 概率图：文本行处约 0.9，背景约 0.05 */
+    static float[] syntheticProbMap(int width, int height, long seed) {
+        Random random = new Random(seed);
+        float[] prob = new float[width * height];
+        for (int i = 0; i < prob.length; i++) prob[i] = 0.05f * random.nextFloat();
+        for (int top = 12; top + 12 < height; top += 20) {
+            int left = 8 + random.nextInt(8);
+            int right = width - 8 - random.nextInt(width / 3);
+            for (int y = top; y < top + 9; y++) {
+                for (int x = left; x < right; x++) prob[y * width + x] = 0.8f + 0.2f * random.nextFloat();
+            }
+        }
+        return prob;
+    }
+
+    /** 识别输出 [batch, seqLen, classes]：每个时间步有一个明显峰值，约一半为 blank */
+    static float[] syntheticLogits(int batch, int seqLen, int classes, long seed) {
+        Random random = new Random(seed);
+        float[] logits = new float[batch * seqLen * classes];
+        float floor = 0.1f / classes;
+        for (int t = 0; t < batch * seqLen; t++) {
+            int base = t * classes;
+            for (int c = 0; c < classes; c++) logits[base + c] = floor * random.nextFloat();
+            int peak = random.nextBoolean() ? 0 : 1 + random.nextInt(classes - 1);
+            logits[base + peak] = 0.6f + 0.4f * random.nextFloat();
+        }
+        return logits;
+    }
+
+    /** 字符内容不影响解码耗时，按类别数生成占位字典 */
+    static List<String> dictionary(int classes) {
+        List<String> labels = new ArrayList<>(classes - 2);
+        for (int i = 0; i < classes - 2; i++) labels.add(String.valueOf((char) (0x4e00 + i)));
+        return labels;
+    }
+
+    static List<TensorFile> recordedTensors(final String prefix) throws IOException {
+        List<TensorFile> tensors = new ArrayList<>();
+        for (File file : listRecorded(new FilenameFilter() {
+            @Override
+            public boolean accept(File dir, String name) {
+                return name.startsWith(prefix + "-") && name.endsWith(".ocrt");
+            }
+        })) {
+            tensors.add(TensorFile.read(file));
+        }
+        return tensors;
+    }
+
+    /** 录制目录中的截图，返回 ARGB 像素与尺寸 */
+    static List<int[]> recordedImages(List<int[]> sizes) throws IOException {
+        List<int[]> images = new ArrayList<>();
+        for (File file : listRecorded(new FilenameFilter() {
+            @Override
+            public boolean accept(File dir, String name) {
+                String lower = name.toLowerCase();
+                return lower.endsWith(".png") || lower.endsWith(".jpg") || lower.endsWith(".jpeg");
+            }
+        })) {
+            BufferedImage image = ImageIO.read(file);
+            if (image == null) continue;
+            int w = image.getWidth();
+            int h = image.getHeight();
+            images.add(image.getRGB(0, 0, w, h, null, 0, w));
+            sizes.add(new int[]{w, h});
+        }
+        if (images.isEmpty()) throw new IOException("No images in " + tensorDir());
+        return images;
+    }
+
+    private static File[] listRecorded(FilenameFilter filter) throws IOException {
+        File dir = tensorDir();
+        File[] files = dir.listFiles(filter);
+        if (files == null || files.length == 0) throw new IOException("No recorded inputs in " + dir);
+        Arrays.sort(files);
+        return files;
+    }
+
+    private static File tensorDir() throws IOException {
+        String path = System.getProperty("ocr.tensors");
+        if (path == null) throw new IOException("-Docr.tensors is not set");
+        return new File(path);
+    }
+}
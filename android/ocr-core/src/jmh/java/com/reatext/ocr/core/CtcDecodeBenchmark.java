@@ -0,0 +1,53 @@
+package com.reatext.ocr.core;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+/** 一个识别批次输出的 CTC 解码；合成数据为 ppocr_keys_v1 规模（6623 字 + blank + 空格） */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class CtcDecodeBenchmark {
+    @Param({BenchmarkData.SYNTHETIC})
+    public String source;
+
+    private float[] logits;
+    private int batch;
+    private int seqLen;
+    private int classes;
+    private CtcDecoder decoder;
+
+    @Setup
+    public void setup() throws IOException {
+        if (BenchmarkData.RECORDED.equals(source)) {
+            TensorFile tensor = BenchmarkData.recordedTensors("rec").get(0); // [N, seq_len, classes]
+            logits = tensor.data;
+            batch = (int) tensor.shape[0];
+            seqLen = (int) tensor.shape[1];
+            classes = (int) tensor.shape[2];
+        } else {
+            batch = 8;
+            seqLen = 80;
+            classes = 6625;
+            logits = BenchmarkData.syntheticLogits(batch, seqLen, classes, 42);
+        }
+        decoder = new CtcDecoder(BenchmarkData.dictionary(classes));
+    }
+
+    @Benchmark
+    public void decodeBatch(Blackhole blackhole) {
+        for (int k = 0; k < batch; k++) {
+            blackhole.consume(decoder.decode(logits, k * seqLen * classes, seqLen, classes));
+        }
+    }
+}
@@ -0,0 +1,47 @@
+package com.reatext.ocr.core;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+/** DB 概率图到文本框：二值化、连通域、最小外接矩形与 unclip */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class DbPostProcessBenchmark {
+    @Param({BenchmarkData.SYNTHETIC})
+    public String source;
+
+    private float[] prob;
+    private int mapWidth;
+    private int mapHeight;
+    private final DbPostProcessor processor = new DbPostProcessor();
+
+    @Setup
+    public void setup() throws IOException {
+        if (BenchmarkData.RECORDED.equals(source)) {
+            TensorFile tensor = BenchmarkData.recordedTensors("det").get(0); // [1, 1, H, W]
+            prob = tensor.data;
+            mapHeight = (int) tensor.shape[2];
+            mapWidth = (int) tensor.shape[3];
+        } else {
+            // 一个检测块的输出尺寸
+            mapWidth = 960;
+            mapHeight = 960;
+            prob = BenchmarkData.syntheticProbMap(mapWidth, mapHeight, 42);
+        }
+    }
+
+    @Benchmark
+    public float[][] process() {
+        return processor.process(prob, mapWidth, mapHeight, 1080, 1080);
+    }
+}
@@ -0,0 +1,117 @@
+package com.reatext.ocr.core;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/** 检测分块缩放与识别批次裁剪，int[] 与截屏 RGBA 缓冲两种源 */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class PreprocessBenchmark {
+    private static final int DET_LIMIT_SIDE = 960;
+    private static final int REC_HEIGHT = 32;
+    private static final int REC_WIDTH = 320;
+    private static final int REC_BATCH = 8;
+
+    @Param({BenchmarkData.SYNTHETIC})
+    public String source;
+
+    private int[] pixels;
+    private ByteBuffer rgba;
+    private int width;
+    private int height;
+    private final List<float[]> tileQuads = new ArrayList<>();
+    private final List<int[]> tileSizes = new ArrayList<>();
+    private final float[][] lineQuads = new float[REC_BATCH][];
+    private final float[] detInput = new float[3 * DET_LIMIT_SIDE * DET_LIMIT_SIDE];
+    private final float[] recInput = new float[REC_BATCH * 3 * REC_HEIGHT * REC_WIDTH];
+
+    @Setup
+    public void setup() throws IOException {
+        if (BenchmarkData.RECORDED.equals(source)) {
+            List<int[]> sizes = new ArrayList<>();
+            pixels = BenchmarkData.recordedImages(sizes).get(0);
+            width = sizes.get(0)[0];
+            height = sizes.get(0)[1];
+        } else {
+            width = 1080;
+            height = 2340;
+            pixels = BenchmarkData.syntheticPage(width, height, 42);
+        }
+
+        // ImageReader 的 RGBA_8888 布局，行尾带填充
+        int rowStride = width * 4 + 64;
+        rgba = ByteBuffer.allocateDirect(rowStride * height).order(ByteOrder.LITTLE_ENDIAN);
+        for (int y = 0; y < height; y++) {
+            for (int x = 0; x < width; x++) {
+                int p = pixels[y * width + x]; // 0xAARRGGBB → 0xAABBGGRR
+                rgba.putInt(y * rowStride + x * 4,
+                        (p & 0xff00ff00) | ((p >> 16) & 0xff) | ((p & 0xff) << 16));
+            }
+        }
+
+        for (int[] tile : DetTiling.tiles(width, height, DET_LIMIT_SIDE)) {
+            tileQuads.add(new float[]{
+                    tile[0], tile[1], tile[0] + tile[2], tile[1],
+                    tile[0] + tile[2], tile[1] + tile[3], tile[0], tile[1] + tile[3]});
+            tileSizes.add(DetTiling.resize(tile[2], tile[3], DET_LIMIT_SIDE));
+        }
+        // 沿页面纵向均匀取几条行框，宽高比与真实文本行相近
+        int lineHeight = Math.max(8, height / 60);
+        for (int i = 0; i < REC_BATCH; i++) {
+            float top = (i + 1) * height / (REC_BATCH + 2f);
+            float right = width * (0.5f + 0.4f * i / REC_BATCH);
+            lineQuads[i] = new float[]{32, top, right, top, right, top + lineHeight, 32, top + lineHeight};
+        }
+    }
+
+    /** 整帧的全部检测块，每块写入同一缓冲 */
+    @Benchmark
+    public float[] detTiles() {
+        for (int i = 0; i < tileQuads.size(); i++) {
+            int[] size = tileSizes.get(i);
+            PreprocessKernel.sample(pixels, width, height, tileQuads.get(i),
+                    detInput, 0, size[0], size[1], size[0],
+                    false, PreprocessKernel.DET_MEAN, PreprocessKernel.DET_STD);
+        }
+        return detInput;
+    }
+
+    @Benchmark
+    public float[] detTilesBuffer() {
+        for (int i = 0; i < tileQuads.size(); i++) {
+            int[] size = tileSizes.get(i);
+            PreprocessKernel.sample(rgba, 0, width * 4 + 64, 4, width, height, tileQuads.get(i),
+                    detInput, 0, size[0], size[1], size[0],
+                    false, PreprocessKernel.DET_MEAN, PreprocessKernel.DET_STD);
+        }
+        return detInput;
+    }
+
+    @Benchmark
+    public float[] recBatch() {
+        int itemSize = 3 * REC_HEIGHT * REC_WIDTH;
+        for (int i = 0; i < REC_BATCH; i++) {
+            float[] quad = lineQuads[i];
+            float ratio = PreprocessKernel.quadWidth(quad) / PreprocessKernel.quadHeight(quad);
+            int targetWidth = Math.min(REC_WIDTH, (int) Math.ceil(REC_HEIGHT * ratio));
+            PreprocessKernel.sample(pixels, width, height, quad,
+                    recInput, i * itemSize, targetWidth, REC_HEIGHT, REC_WIDTH,
+                    true, PreprocessKernel.REC_MEAN, PreprocessKernel.REC_STD);
+        }
+        return recInput;
+    }
+}
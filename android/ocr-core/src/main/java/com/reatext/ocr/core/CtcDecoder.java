@@ -0,0 +1,131 @@
+package com.reatext.ocr.core;
+
+import java.util.List;
+
+/**
+ * CTC 贪心解码，与 PaddleOCR CTCLabelDecode 一致：
+ * 类别 0 为 blank，1..n 对应字典行，n+1 为空格；相邻重复类别只取一次，blank 断开重复。
+ *
+ * 字典展开成 char[] + 偏移表，逐时间步只做 argmax 与数组写入，不分配对象；
+ * 每行只在最后生成一个 String 和一份逐字置信度。
+ */
+public final class CtcDecoder {
+    public static final class Result {
+        public final String text;
+        /** 每个输出字符对应时间步的最大概率 */
+        public final float[] charScores;
+        /** 逐字置信度均值，空文本为 0 */
+        public final float score;
+
+        Result(String text, float[] charScores, float score) {
+            this.text = text;
+            this.charScores = charScores;
+            this.score = score;
+        }
+    }
+
+    private final char[] chars;
+    private final int[] offsets;
+
+    // 复用的逐行缓冲，按需增长
+    private char[] textBuffer = new char[64];
+    private float[] scoreBuffer = new float[64];
+
+    public CtcDecoder(List<String> dictionary) {
+        int classes = dictionary.size() + 2;
+        offsets = new int[classes + 1];
+        int total = 0;
+        for (String label : dictionary) total += label.length();
+        chars = new char[total + 1];
+
+        int pos = 0;
+        offsets[0] = 0;
+        offsets[1] = 0; // blank 不输出字符
+        for (int i = 0; i < dictionary.size(); i++) {
+            String label = dictionary.get(i);
+            label.getChars(0, label.length(), chars, pos);
+            pos += label.length();
+            offsets[i + 2] = pos;
+        }
+        chars[pos++] = ' ';
+        offsets[classes] = pos;
+    }
+
+    public int classCount() {
+        return offsets.length - 1;
+    }
+
+    /** 解码 data[offset..] 上 seqLen × classes 的概率矩阵 */
+    public Result decode(float[] data, int offset, int seqLen, int classes) {
+        int tableSize = classCount();
+        int last = 0;
+        int length = 0;
+        int emitted = 0;
+
+        for (int t = 0; t < seqLen; t++) {
+            int base = offset + t * classes;
+            int index = argmax(data, base, classes) - base;
+            if (index != 0 && index != last && index < tableSize) {
+                int from = offsets[index];
+                int to = offsets[index + 1];
+                ensureCapacity(length + (to - from), emitted + 1);
+                for (int c = from; c < to; c++) {
+                    textBuffer[length++] = chars[c];
+                }
+                scoreBuffer[emitted++] = data[base + index];
+            }
+            last = index;
+        }
+
+        float[] charScores = new float[emitted];
+        float sum = 0;
+        for (int i = 0; i < emitted; i++) {
+            charScores[i] = scoreBuffer[i];
+            sum += scoreBuffer[i];
+        }
+        return new Result(new String(textBuffer, 0, length), charScores, emitted == 0 ? 0f : sum / emitted);
+    }
+
+    /**
+     * 返回 a[from, from + len) 中最大值的下标（并列取最前）。
+     * 四路独立比较链减少分支依赖，便于 JIT 生成紧凑循环。
+     */
+    static int argmax(float[] a, int from, int len) {
+        int end = from + len;
+        int i0 = from, i1 = from, i2 = from, i3 = from;
+        float m0 = a[from], m1 = m0, m2 = m0, m3 = m0;
+
+        int i = from + 1;
+        int unrolledEnd = from + 1 + ((len - 1) & ~3);
+        for (; i < unrolledEnd; i += 4) {
+            float v0 = a[i], v1 = a[i + 1], v2 = a[i + 2], v3 = a[i + 3];
+            if (v0 > m0) { m0 = v0; i0 = i; }
+            if (v1 > m1) { m1 = v1; i1 = i + 1; }
+            if (v2 > m2) { m2 = v2; i2 = i + 2; }
+            if (v3 > m3) { m3 = v3; i3 = i + 3; }
+        }
+        for (; i < end; i++) {
+            if (a[i] > m0) { m0 = a[i]; i0 = i; }
+        }
+
+        int best = i0;
+        float max = m0;
+        if (m1 > max || (m1 == max && i1 < best)) { max = m1; best = i1; }
+        if (m2 > max || (m2 == max && i2 < best)) { max = m2; best = i2; }
+        if (m3 > max || (m3 == max && i3 < best)) { best = i3; }
+        return best;
+    }
+
+    private void ensureCapacity(int textLength, int scoreCount) {
+        if (textLength > textBuffer.length) {
+            char[] grown = new char[Math.max(textLength, textBuffer.length * 2)];
+            System.arraycopy(textBuffer, 0, grown, 0, textBuffer.length);
+            textBuffer = grown;
+        }
+        if (scoreCount > scoreBuffer.length) {
+            float[] grown = new float[Math.max(scoreCount, scoreBuffer.length * 2)];
+            System.arraycopy(scoreBuffer, 0, grown, 0, scoreBuffer.length);
+            scoreBuffer = grown;
+        }
+    }
+}
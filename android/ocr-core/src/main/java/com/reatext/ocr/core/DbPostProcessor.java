@@ -0,0 +1,387 @@
+package com.reatext.ocr.core;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+
+/**
+ * DB（Differentiable Binarization）检测后处理：
+ * 概率图二值化 → 8 邻域连通域 → 凸包 → 最小外接矩形 → 框内均值打分 → unclip 外扩 → 映射回原图坐标。
+ *
+ * 全程在原始数组上操作，工作缓冲按见过的最大尺寸复用，逐像素不分配对象。
+ * 输出的每个框为 8 个 float：左上、右上、右下、左下 (x, y)。
+ */
+public class DbPostProcessor {
+    private static final byte BG = 0;
+    private static final byte FG = 1;
+    private static final byte VISITED = 2;
+
+    private float thresh = 0.3f;
+    private float boxThresh = 0.6f;
+    private float unclipRatio = 1.5f;
+    private int maxCandidates = 1000;
+    private int minSize = 3;
+
+    // 复用缓冲
+    private byte[] mask = new byte[0];
+    private int[] stack = new int[0];
+    private int[] rowMin = new int[0];
+    private int[] rowMax = new int[0];
+    private float[] ptsX = new float[0];
+    private float[] ptsY = new float[0];
+    private int[] hull = new int[0];
+    private final float[] rect = new float[8];
+
+    public DbPostProcessor setThresh(float thresh) {
+        this.thresh = thresh;
+        return this;
+    }
+
+    public DbPostProcessor setBoxThresh(float boxThresh) {
+        this.boxThresh = boxThresh;
+        return this;
+    }
+
+    public DbPostProcessor setUnclipRatio(float unclipRatio) {
+        this.unclipRatio = unclipRatio;
+        return this;
+    }
+
+    public DbPostProcessor setMaxCandidates(int maxCandidates) {
+        this.maxCandidates = maxCandidates;
+        return this;
+    }
+
+    /**
+     * @param prob 检测输出概率图，长度 mapW * mapH
+     * @param srcW 原图宽，用于坐标映射
+     * @param srcH 原图高
+     * @return 按阅读顺序（从上到下、从左到右）排列的文本框
+     */
+    public float[][] process(float[] prob, int mapW, int mapH, int srcW, int srcH) {
+        int n = mapW * mapH;
+        ensureCapacity(n, mapH);
+
+        byte[] mask = this.mask;
+        float thresh = this.thresh;
+        for (int i = 0; i < n; i++) {
+            mask[i] = prob[i] > thresh ? FG : BG;
+        }
+
+        float scaleX = (float) srcW / mapW;
+        float scaleY = (float) srcH / mapH;
+        List<float[]> boxes = new ArrayList<>();
+        int candidates = 0;
+
+        for (int start = 0; start < n && candidates < maxCandidates; start++) {
+            if (mask[start] != FG) continue;
+            candidates++;
+
+            // 扫描顺序保证 start 所在行就是该连通域的最上一行
+            int minY = start / mapW;
+            int maxY = fillComponent(start, mapW, mapH, minY);
+            int pointCount = collectOutline(minY, maxY);
+            int hullSize = convexHull(pointCount);
+            if (hullSize < 3) continue;
+
+            float side = minAreaRect(hullSize);
+            if (side < minSize) continue;
+
+            float score = boxScore(prob, mapW, mapH);
+            if (score < boxThresh) continue;
+
+            if (!unclip()) continue;
+
+            float[] box = new float[8];
+            for (int k = 0; k < 4; k++) {
+                box[2 * k] = clamp(rect[2 * k] * scaleX, 0, srcW);
+                box[2 * k + 1] = clamp(rect[2 * k + 1] * scaleY, 0, srcH);
+            }
+            orderPoints(box);
+            boxes.add(box);
+        }
+
+        float[][] result = boxes.toArray(new float[0][]);
+        sortReadingOrder(result);
+        return result;
+    }
+
+    private void ensureCapacity(int n, int mapH) {
+        if (mask.length < n) {
+            mask = new byte[n];
+            stack = new int[n];
+        }
+        if (rowMin.length < mapH + 1) {
+            rowMin = new int[mapH + 1];
+            rowMax = new int[mapH + 1];
+            ptsX = new float[2 * (mapH + 2)];
+            ptsY = new float[2 * (mapH + 2)];
+            hull = new int[4 * (mapH + 2) + 1];
+        }
+    }
+
+    /** 8 邻域泛洪，记录每行最左/最右像素，返回最下一行 */
+    private int fillComponent(int start, int mapW, int mapH, int minY) {
+        byte[] mask = this.mask;
+        int[] stack = this.stack;
+        int maxY = minY;
+        rowMin[minY] = Integer.MAX_VALUE;
+        rowMax[minY] = -1;
+
+        int sp = 0;
+        stack[sp++] = start;
+        mask[start] = VISITED;
+        while (sp > 0) {
+            int idx = stack[--sp];
+            int y = idx / mapW;
+            int x = idx - y * mapW;
+            while (y > maxY) {
+                // 泛洪每次只跨一行，中间行必然已被触达
+                maxY++;
+                rowMin[maxY] = Integer.MAX_VALUE;
+                rowMax[maxY] = -1;
+            }
+            if (x < rowMin[y]) rowMin[y] = x;
+            if (x > rowMax[y]) rowMax[y] = x;
+
+            int y0 = y > 0 ? y - 1 : 0;
+            int y1 = y < mapH - 1 ? y + 1 : y;
+            int x0 = x > 0 ? x - 1 : 0;
+            int x1 = x < mapW - 1 ? x + 1 : x;
+            for (int ny = y0; ny <= y1; ny++) {
+                int row = ny * mapW;
+                for (int nx = x0; nx <= x1; nx++) {
+                    int ni = row + nx;
+                    if (mask[ni] == FG) {
+                        mask[ni] = VISITED;
+                        stack[sp++] = ni;
+                    }
+                }
+            }
+        }
+        return maxY;
+    }
+
+    /**
+     * 以像素方格的边为轮廓：每条水平网格线取上下两行中的最左/最右边界。
+     * 产生的点天然按 (y, x) 字典序排列，凸包无需再排序。
+     */
+    private int collectOutline(int minY, int maxY) {
+        int count = 0;
+        for (int yy = minY; yy <= maxY + 1; yy++) {
+            int left = Integer.MAX_VALUE;
+            int right = Integer.MIN_VALUE;
+            if (yy - 1 >= minY) {
+                left = rowMin[yy - 1];
+                right = rowMax[yy - 1] + 1;
+            }
+            if (yy <= maxY) {
+                left = Math.min(left, rowMin[yy]);
+                right = Math.max(right, rowMax[yy] + 1);
+            }
+            ptsX[count] = left;
+            ptsY[count] = yy;
+            count++;
+            ptsX[count] = right;
+            ptsY[count] = yy;
+            count++;
+        }
+        return count;
+    }
+
+    /** Andrew 单调链，输入已按 (y, x) 排序；结果下标写入 hull，返回凸包点数 */
+    private int convexHull(int count) {
+        int[] h = hull;
+        int k = 0;
+        for (int i = 0; i < count; i++) {
+            while (k >= 2 && cross(h[k - 2], h[k - 1], i) <= 0) k--;
+            h[k++] = i;
+        }
+        for (int i = count - 2, lower = k + 1; i >= 0; i--) {
+            while (k >= lower && cross(h[k - 2], h[k - 1], i) <= 0) k--;
+            h[k++] = i;
+        }
+        return k - 1;
+    }
+
+    private float cross(int o, int a, int b) {
+        return (ptsX[a] - ptsX[o]) * (ptsY[b] - ptsY[o]) - (ptsY[a] - ptsY[o]) * (ptsX[b] - ptsX[o]);
+    }
+
+    /** 旋转卡壳求最小外接矩形，角点写入 rect，返回短边长度 */
+    private float minAreaRect(int hullSize) {
+        float bestArea = Float.MAX_VALUE;
+        float bestUx = 1, bestUy = 0, bestMinU = 0, bestMaxU = 0, bestMinV = 0, bestMaxV = 0;
+
+        for (int i = 0; i < hullSize; i++) {
+            int a = hull[i];
+            int b = hull[i + 1];
+            float ex = ptsX[b] - ptsX[a];
+            float ey = ptsY[b] - ptsY[a];
+            float len = (float) Math.sqrt(ex * ex + ey * ey);
+            if (len == 0) continue;
+            float ux = ex / len;
+            float uy = ey / len;
+
+            float minU = Float.MAX_VALUE, maxU = -Float.MAX_VALUE;
+            float minV = Float.MAX_VALUE, maxV = -Float.MAX_VALUE;
+            for (int j = 0; j < hullSize; j++) {
+                int p = hull[j];
+                float px = ptsX[p];
+                float py = ptsY[p];
+                float u = px * ux + py * uy;
+                float v = -px * uy + py * ux;
+                if (u < minU) minU = u;
+                if (u > maxU) maxU = u;
+                if (v < minV) minV = v;
+                if (v > maxV) maxV = v;
+            }
+            float area = (maxU - minU) * (maxV - minV);
+            if (area < bestArea) {
+                bestArea = area;
+                bestUx = ux;
+                bestUy = uy;
+                bestMinU = minU;
+                bestMaxU = maxU;
+                bestMinV = minV;
+                bestMaxV = maxV;
+            }
+        }
+
+        setRect(bestUx, bestUy, bestMinU, bestMaxU, bestMinV, bestMaxV);
+        return Math.min(bestMaxU - bestMinU, bestMaxV - bestMinV);
+    }
+
+    private void setRect(float ux, float uy, float minU, float maxU, float minV, float maxV) {
+        // (u, v) → (x, y)：x = u*ux - v*uy，y = u*uy + v*ux
+        rect[0] = minU * ux - minV * uy;
+        rect[1] = minU * uy + minV * ux;
+        rect[2] = maxU * ux - minV * uy;
+        rect[3] = maxU * uy + minV * ux;
+        rect[4] = maxU * ux - maxV * uy;
+        rect[5] = maxU * uy + maxV * ux;
+        rect[6] = minU * ux - maxV * uy;
+        rect[7] = minU * uy + maxV * ux;
+    }
+
+    /** 框内概率均值（对应 PaddleOCR 的 fast 模式） */
+    private float boxScore(float[] prob, int mapW, int mapH) {
+        float minX = Math.min(Math.min(rect[0], rect[2]), Math.min(rect[4], rect[6]));
+        float maxX = Math.max(Math.max(rect[0], rect[2]), Math.max(rect[4], rect[6]));
+        float minY = Math.min(Math.min(rect[1], rect[3]), Math.min(rect[5], rect[7]));
+        float maxY = Math.max(Math.max(rect[1], rect[3]), Math.max(rect[5], rect[7]));
+        int x0 = Math.max(0, (int) Math.floor(minX));
+        int x1 = Math.min(mapW - 1, (int) Math.ceil(maxX));
+        int y0 = Math.max(0, (int) Math.floor(minY));
+        int y1 = Math.min(mapH - 1, (int) Math.ceil(maxY));
+
+        double sum = 0;
+        int count = 0;
+        for (int y = y0; y <= y1; y++) {
+            float cy = y + 0.5f;
+            int row = y * mapW;
+            for (int x = x0; x <= x1; x++) {
+                if (insideRect(x + 0.5f, cy)) {
+                    sum += prob[row + x];
+                    count++;
+                }
+            }
+        }
+        return count == 0 ? 0f : (float) (sum / count);
+    }
+
+    private boolean insideRect(float px, float py) {
+        for (int k = 0; k < 4; k++) {
+            int a = 2 * k;
+            int b = 2 * ((k + 1) & 3);
+            float c = (rect[b] - rect[a]) * (py - rect[a + 1]) - (rect[b + 1] - rect[a + 1]) * (px - rect[a]);
+            if (c < 0) return false;
+        }
+        return true;
+    }
+
+    /**
+     * 按 distance = area * unclipRatio / perimeter 向外偏移。
+     * 矩形偏移后的最小外接矩形就是四边各外扩 distance，无需通用多边形裁剪。
+     */
+    private boolean unclip() {
+        float ux = rect[2] - rect[0];
+        float uy = rect[3] - rect[1];
+        float vx = rect[6] - rect[0];
+        float vy = rect[7] - rect[1];
+        float w = (float) Math.sqrt(ux * ux + uy * uy);
+        float h = (float) Math.sqrt(vx * vx + vy * vy);
+        if (w == 0 || h == 0) return false;
+
+        float distance = w * h * unclipRatio / (2 * (w + h));
+        if (Math.min(w, h) + 2 * distance < minSize + 2) return false;
+
+        float dux = ux / w * distance, duy = uy / w * distance;
+        float dvx = vx / h * distance, dvy = vy / h * distance;
+        rect[0] += -dux - dvx;
+        rect[1] += -duy - dvy;
+        rect[2] += dux - dvx;
+        rect[3] += duy - dvy;
+        rect[4] += dux + dvx;
+        rect[5] += duy + dvy;
+        rect[6] += -dux + dvx;
+        rect[7] += -duy + dvy;
+        return true;
+    }
+
+    /** 与 PaddleOCR get_mini_boxes 一致：按 x 分左右两组，再各自按 y 分上下 */
+    static void orderPoints(float[] box) {
+        // 对 4 个点按 x 做插入排序
+        for (int i = 1; i < 4; i++) {
+            float x = box[2 * i], y = box[2 * i + 1];
+            int j = i - 1;
+            while (j >= 0 && box[2 * j] > x) {
+                box[2 * j + 2] = box[2 * j];
+                box[2 * j + 3] = box[2 * j + 1];
+                j--;
+            }
+            box[2 * j + 2] = x;
+            box[2 * j + 3] = y;
+        }
+        float lx0 = box[0], ly0 = box[1], lx1 = box[2], ly1 = box[3];
+        float rx0 = box[4], ry0 = box[5], rx1 = box[6], ry1 = box[7];
+        boolean leftSwap = ly1 < ly0;
+        boolean rightSwap = ry1 < ry0;
+        box[0] = leftSwap ? lx1 : lx0;
+        box[1] = leftSwap ? ly1 : ly0;
+        box[2] = rightSwap ? rx1 : rx0;
+        box[3] = rightSwap ? ry1 : ry0;
+        box[4] = rightSwap ? rx0 : rx1;
+        box[5] = rightSwap ? ry0 : ry1;
+        box[6] = leftSwap ? lx0 : lx1;
+        box[7] = leftSwap ? ly0 : ly1;
+    }
+
+    /** 与 PaddleOCR sorted_boxes 一致：先按左上角 y 排，同一行（y 差 < 10）内按 x 排 */
+    static void sortReadingOrder(float[][] boxes) {
+        Arrays.sort(boxes, new Comparator<float[]>() {
+            @Override
+            public int compare(float[] a, float[] b) {
+                int c = Float.compare(a[1], b[1]);
+                return c != 0 ? c : Float.compare(a[0], b[0]);
+            }
+        });
+        for (int i = 0; i < boxes.length - 1; i++) {
+            for (int j = i; j >= 0; j--) {
+                float[] a = boxes[j];
+                float[] b = boxes[j + 1];
+                if (Math.abs(b[1] - a[1]) < 10 && b[0] < a[0]) {
+                    boxes[j] = b;
+                    boxes[j + 1] = a;
+                } else {
+                    break;
+                }
+            }
+        }
+    }
+
+    private static float clamp(float v, float min, float max) {
+        return v < min ? min : (v > max ? max : v);
+    }
+}
@@ -0,0 +1,166 @@
+package com.reatext.ocr.core;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * 检测输入的尺寸与分块规划，与 PaddleOCR DetResizeForTest(limit_type = max) 一致：
+ * 长边超过 limitSide 时等比缩小，两边各取整到 32 的倍数，不拉伸、不放大。
+ *
+ * 长截图、扫描页整幅缩放比会低于 1/2，字太小，改为分块检测：块边长取短边（不超过 2 × limitSide；
+ * 短边不足 limitSide 的细长条沿长边取 limitSide），每块单独缩放到 limitSide 以内，缩放比不低于 1/2。相邻块重叠至少一行文字的高度，
+ * 保证每行都完整落在某一块内；被块边界截断的半行由 {@link #merge} 去重时丢弃。
+ */
+public final class DetTiling {
+    private static final int MIN_OVERLAP = 64;
+    // 两框较小者有这么多面积落在另一框内时视为同一行
+    private static final float DUPLICATE_COVERAGE = 0.5f;
+    // 横向相接的两段，纵向重叠超过较矮者的这一比例时视为被竖直块边界截开的同一行
+    private static final float SAME_ROW_OVERLAP = 0.7f;
+
+    private DetTiling() {
+    }
+
+    /** 等比缩放到长边不超过 limitSide，宽高取整为 32 的倍数；返回 {w, h} */
+    public static int[] resize(int width, int height, int limitSide) {
+        float ratio = Math.max(width, height) > limitSide ? (float) limitSide / Math.max(width, height) : 1f;
+        return new int[]{roundTo32(width * ratio), roundTo32(height * ratio)};
+    }
+
+    private static int roundTo32(float v) {
+        return Math.max(32, Math.round(v / 32f) * 32);
+    }
+
+    /** 分块区域 {x, y, w, h}；不需要分块时只有整幅图一块 */
+    public static List<int[]> tiles(int width, int height, int limitSide) {
+        List<int[]> tiles = new ArrayList<>();
+        int longSide = Math.max(width, height);
+        int shortSide = Math.min(width, height);
+        // 整幅缩放比不低于 1/2 时不分块；增量识别的横条带也走这里
+        if (longSide <= 2 * limitSide) {
+            tiles.add(new int[]{0, 0, width, height});
+            return tiles;
+        }
+
+        int side = Math.min(shortSide, 2 * limitSide);
+        // 短边不足 limitSide 的细长条按短边切方块会切出几十个小块：沿长边的块长至少取 limitSide，这样的块不用缩小
+        int along = Math.max(side, limitSide);
+        int tileW = width < height ? side : along;
+        int tileH = width < height ? along : side;
+        // 重叠必须小于块长，否则步长为 0 或负
+        int overlap = Math.min(Math.max(MIN_OVERLAP, along / 8), along / 2);
+        int[] xs = positions(width, tileW, overlap);
+        int[] ys = positions(height, tileH, overlap);
+        for (int y : ys) {
+            for (int x : xs) {
+                tiles.add(new int[]{x, y, Math.min(tileW, width - x), Math.min(tileH, height - y)});
+            }
+        }
+        return tiles;
+    }
+
+    /** 在 [0, length) 上均匀摆放边长 side 的块，相邻重叠不少于 overlap（须小于 side），首尾贴边 */
+    private static int[] positions(int length, int side, int overlap) {
+        if (length <= side) return new int[]{0};
+        int count = (int) Math.ceil((double) (length - overlap) / (side - overlap));
+        int[] positions = new int[count];
+        float step = (float) (length - side) / (count - 1);
+        for (int i = 0; i < count; i++) positions[i] = Math.round(i * step);
+        return positions;
+    }
+
+    /**
+     * 合并各块的检测框（已平移到整图坐标）并按阅读顺序排列。
+     * 不同块的框互相覆盖时视为同一行，保留面积较大的（较完整的）一个；
+     * 同一行被左右两块各截一段时，合并为两段的外接矩形。
+     */
+    public static float[][] merge(List<float[][]> tileBoxes) {
+        if (tileBoxes.size() == 1) return tileBoxes.get(0);
+        List<float[]> boxes = new ArrayList<>();
+        List<Integer> owners = new ArrayList<>();
+        for (int t = 0; t < tileBoxes.size(); t++) {
+            for (float[] box : tileBoxes.get(t)) {
+                boxes.add(box);
+                owners.add(t);
+            }
+        }
+
+        int n = boxes.size();
+        float[][] bounds = new float[n][];
+        for (int i = 0; i < n; i++) bounds[i] = bounds(boxes.get(i));
+        boolean[] dropped = new boolean[n];
+        for (int i = 0; i < n; i++) {
+            if (dropped[i]) continue;
+            for (int j = i + 1; j < n && !dropped[i]; j++) {
+                if (dropped[j] || owners.get(i).equals(owners.get(j))) continue;
+                float[] a = bounds[i];
+                float[] b = bounds[j];
+                float areaI = area(a);
+                float areaJ = area(b);
+                if (intersection(a, b) >= DUPLICATE_COVERAGE * Math.min(areaI, areaJ)) {
+                    if (areaI >= areaJ) {
+                        dropped[j] = true;
+                    } else {
+                        dropped[i] = true;
+                    }
+                } else if (sameRowSegments(a, b)) {
+                    bounds[i] = new float[]{
+                            Math.min(a[0], b[0]), Math.min(a[1], b[1]), Math.max(a[2], b[2]), Math.max(a[3], b[3])};
+                    boxes.set(i, rect(bounds[i]));
+                    dropped[j] = true;
+                }
+            }
+        }
+
+        List<float[]> kept = new ArrayList<>(n);
+        for (int i = 0; i < n; i++) {
+            if (!dropped[i]) kept.add(boxes.get(i));
+        }
+        float[][] result = kept.toArray(new float[0][]);
+        DbPostProcessor.sortReadingOrder(result);
+        return result;
+    }
+
+    /** 把块内坐标平移到整图坐标 */
+    public static void offset(float[][] boxes, float dx, float dy) {
+        for (float[] box : boxes) {
+            for (int k = 0; k < 8; k += 2) {
+                box[k] += dx;
+                box[k + 1] += dy;
+            }
+        }
+    }
+
+    private static boolean sameRowSegments(float[] a, float[] b) {
+        float overlapX = Math.min(a[2], b[2]) - Math.max(a[0], b[0]);
+        float overlapY = Math.min(a[3], b[3]) - Math.max(a[1], b[1]);
+        float minHeight = Math.min(a[3] - a[1], b[3] - b[1]);
+        return overlapX > 0 && overlapY > SAME_ROW_OVERLAP * minHeight;
+    }
+
+    private static float[] rect(float[] b) {
+        return new float[]{b[0], b[1], b[2], b[1], b[2], b[3], b[0], b[3]};
+    }
+
+    // {minX, minY, maxX, maxY}
+    private static float[] bounds(float[] box) {
+        float minX = box[0], maxX = box[0], minY = box[1], maxY = box[1];
+        for (int k = 2; k < 8; k += 2) {
+            minX = Math.min(minX, box[k]);
+            maxX = Math.max(maxX, box[k]);
+            minY = Math.min(minY, box[k + 1]);
+            maxY = Math.max(maxY, box[k + 1]);
+        }
+        return new float[]{minX, minY, maxX, maxY};
+    }
+
+    private static float area(float[] b) {
+        return Math.max(0, b[2] - b[0]) * Math.max(0, b[3] - b[1]);
+    }
+
+    private static float intersection(float[] a, float[] b) {
+        float w = Math.min(a[2], b[2]) - Math.max(a[0], b[0]);
+        float h = Math.min(a[3], b[3]) - Math.max(a[1], b[1]);
+        return w > 0 && h > 0 ? w * h : 0;
+    }
+}
@@ -0,0 +1,215 @@
+package com.reatext.ocr.core;
+
+import java.nio.ByteBuffer;
+
+/**
+ * 融合预处理内核：一次遍历完成 缩放/透视裁剪 + 可选灰度 + mean/std 归一化 + CHW 排布。
+ *
+ * 源图是 ARGB int[] 像素；目标区域由四边形 quad（左上、右上、右下、左下）描述，
+ * 按 p0→p1、p0→p3 两条边做仿射采样（DB 输出为矩形，仿射即精确），双线性插值。
+ * 整图缩放就是 quad 取整幅图四角的特例。
+ *
+ * 源图也可以是 ImageReader 的 RGBA 缓冲（按 rowStride / pixelStride 寻址），
+ * 截屏帧不经过 Bitmap 直接采样进张量。两个版本循环体相同，分开写以便 JIT 各自内联。
+ */
+public final class PreprocessKernel {
+    public static final float[] DET_MEAN = {0.485f, 0.456f, 0.406f};
+    public static final float[] DET_STD = {0.229f, 0.224f, 0.225f};
+    public static final float[] REC_MEAN = {0.5f, 0.5f, 0.5f};
+    public static final float[] REC_STD = {0.5f, 0.5f, 0.5f};
+
+    private PreprocessKernel() {
+    }
+
+    /**
+     * 把 quad 区域采样为 dstW × dstH，按 CHW 写入 dst[offset..]。
+     * 每个通道平面宽 planeWidth，[dstW, planeWidth) 之间写 0 作为批内右侧填充。
+     */
+    public static void sample(int[] src, int srcW, int srcH, float[] quad,
+                              float[] dst, int offset, int dstW, int dstH, int planeWidth,
+                              boolean gray, float[] mean, float[] std) {
+        // 归一化折叠成 v * scale + bias
+        float scaleR = 1f / (255f * std[0]), biasR = -mean[0] / std[0];
+        float scaleG = 1f / (255f * std[1]), biasG = -mean[1] / std[1];
+        float scaleB = 1f / (255f * std[2]), biasB = -mean[2] / std[2];
+
+        // 目标像素中心 (x + 0.5, y + 0.5) 映射回源图，再减 0.5 对齐到源像素中心
+        float ux = (quad[2] - quad[0]) / dstW, uy = (quad[3] - quad[1]) / dstW;
+        float vx = (quad[6] - quad[0]) / dstH, vy = (quad[7] - quad[1]) / dstH;
+        float originX = quad[0] + 0.5f * (ux + vx) - 0.5f;
+        float originY = quad[1] + 0.5f * (uy + vy) - 0.5f;
+        int maxX = srcW - 1;
+        int maxY = srcH - 1;
+
+        int planeSize = dstH * planeWidth;
+        int gOffset = planeSize;
+        int bOffset = 2 * planeSize;
+
+        for (int y = 0; y < dstH; y++) {
+            float sx = originX + y * vx;
+            float sy = originY + y * vy;
+            int row = offset + y * planeWidth;
+
+            for (int x = 0; x < dstW; x++, sx += ux, sy += uy) {
+                int x0 = (int) Math.floor(sx);
+                int y0 = (int) Math.floor(sy);
+                float fx = sx - x0;
+                float fy = sy - y0;
+                int x1 = x0 + 1;
+                int y1 = y0 + 1;
+                if (x0 < 0) x0 = 0; else if (x0 > maxX) x0 = maxX;
+                if (x1 < 0) x1 = 0; else if (x1 > maxX) x1 = maxX;
+                if (y0 < 0) y0 = 0; else if (y0 > maxY) y0 = maxY;
+                if (y1 < 0) y1 = 0; else if (y1 > maxY) y1 = maxY;
+
+                int p00 = src[y0 * srcW + x0];
+                int p01 = src[y0 * srcW + x1];
+                int p10 = src[y1 * srcW + x0];
+                int p11 = src[y1 * srcW + x1];
+                float w00 = (1 - fx) * (1 - fy);
+                float w01 = fx * (1 - fy);
+                float w10 = (1 - fx) * fy;
+                float w11 = fx * fy;
+
+                float r = ((p00 >> 16) & 0xff) * w00 + ((p01 >> 16) & 0xff) * w01
+                        + ((p10 >> 16) & 0xff) * w10 + ((p11 >> 16) & 0xff) * w11;
+                float g = ((p00 >> 8) & 0xff) * w00 + ((p01 >> 8) & 0xff) * w01
+                        + ((p10 >> 8) & 0xff) * w10 + ((p11 >> 8) & 0xff) * w11;
+                float b = (p00 & 0xff) * w00 + (p01 & 0xff) * w01
+                        + (p10 & 0xff) * w10 + (p11 & 0xff) * w11;
+                if (gray) {
+                    float l = 0.299f * r + 0.587f * g + 0.114f * b;
+                    r = l;
+                    g = l;
+                    b = l;
+                }
+
+                int index = row + x;
+                dst[index] = r * scaleR + biasR;
+                dst[gOffset + index] = g * scaleG + biasG;
+                dst[bOffset + index] = b * scaleB + biasB;
+            }
+
+            for (int x = dstW; x < planeWidth; x++) {
+                int index = row + x;
+                dst[index] = 0f;
+                dst[gOffset + index] = 0f;
+                dst[bOffset + index] = 0f;
+            }
+        }
+    }
+
+    /**
+     * 同 {@link #sample(int[], int, int, float[], float[], int, int, int, int, boolean, float[], float[])}，
+     * 源为 RGBA_8888 缓冲：像素 (x, y) 位于 srcOffset + y * rowStride + x * pixelStride。
+     * src 须为小端序，getInt 得到 0xAABBGGRR。
+     */
+    public static void sample(ByteBuffer src, int srcOffset, int rowStride, int pixelStride, int srcW, int srcH,
+                              float[] quad, float[] dst, int offset, int dstW, int dstH, int planeWidth,
+                              boolean gray, float[] mean, float[] std) {
+        float scaleR = 1f / (255f * std[0]), biasR = -mean[0] / std[0];
+        float scaleG = 1f / (255f * std[1]), biasG = -mean[1] / std[1];
+        float scaleB = 1f / (255f * std[2]), biasB = -mean[2] / std[2];
+
+        float ux = (quad[2] - quad[0]) / dstW, uy = (quad[3] - quad[1]) / dstW;
+        float vx = (quad[6] - quad[0]) / dstH, vy = (quad[7] - quad[1]) / dstH;
+        float originX = quad[0] + 0.5f * (ux + vx) - 0.5f;
+        float originY = quad[1] + 0.5f * (uy + vy) - 0.5f;
+        int maxX = srcW - 1;
+        int maxY = srcH - 1;
+
+        int planeSize = dstH * planeWidth;
+        int gOffset = planeSize;
+        int bOffset = 2 * planeSize;
+
+        for (int y = 0; y < dstH; y++) {
+            float sx = originX + y * vx;
+            float sy = originY + y * vy;
+            int row = offset + y * planeWidth;
+
+            for (int x = 0; x < dstW; x++, sx += ux, sy += uy) {
+                int x0 = (int) Math.floor(sx);
+                int y0 = (int) Math.floor(sy);
+                float fx = sx - x0;
+                float fy = sy - y0;
+                int x1 = x0 + 1;
+                int y1 = y0 + 1;
+                if (x0 < 0) x0 = 0; else if (x0 > maxX) x0 = maxX;
+                if (x1 < 0) x1 = 0; else if (x1 > maxX) x1 = maxX;
+                if (y0 < 0) y0 = 0; else if (y0 > maxY) y0 = maxY;
+                if (y1 < 0) y1 = 0; else if (y1 > maxY) y1 = maxY;
+
+                int row0 = srcOffset + y0 * rowStride;
+                int row1 = srcOffset + y1 * rowStride;
+                int p00 = src.getInt(row0 + x0 * pixelStride);
+                int p01 = src.getInt(row0 + x1 * pixelStride);
+                int p10 = src.getInt(row1 + x0 * pixelStride);
+                int p11 = src.getInt(row1 + x1 * pixelStride);
+                float w00 = (1 - fx) * (1 - fy);
+                float w01 = fx * (1 - fy);
+                float w10 = (1 - fx) * fy;
+                float w11 = fx * fy;
+
+                float r = (p00 & 0xff) * w00 + (p01 & 0xff) * w01
+                        + (p10 & 0xff) * w10 + (p11 & 0xff) * w11;
+                float g = ((p00 >> 8) & 0xff) * w00 + ((p01 >> 8) & 0xff) * w01
+                        + ((p10 >> 8) & 0xff) * w10 + ((p11 >> 8) & 0xff) * w11;
+                float b = ((p00 >> 16) & 0xff) * w00 + ((p01 >> 16) & 0xff) * w01
+                        + ((p10 >> 16) & 0xff) * w10 + ((p11 >> 16) & 0xff) * w11;
+                if (gray) {
+                    float l = 0.299f * r + 0.587f * g + 0.114f * b;
+                    r = l;
+                    g = l;
+                    b = l;
+                }
+
+                int index = row + x;
+                dst[index] = r * scaleR + biasR;
+                dst[gOffset + index] = g * scaleG + biasG;
+                dst[bOffset + index] = b * scaleB + biasB;
+            }
+
+            for (int x = dstW; x < planeWidth; x++) {
+                int index = row + x;
+                dst[index] = 0f;
+                dst[gOffset + index] = 0f;
+                dst[bOffset + index] = 0f;
+            }
+        }
+    }
+
+    /** 整幅图对应的 quad */
+    public static void fullFrame(int width, int height, float[] quad) {
+        quad[0] = 0;
+        quad[1] = 0;
+        quad[2] = width;
+        quad[3] = 0;
+        quad[4] = width;
+        quad[5] = height;
+        quad[6] = 0;
+        quad[7] = height;
+    }
+
+    /** quad 顺时针换起点 quarterTurns 次：1 = 逆时针旋转 90°，2 = 旋转 180° */
+    public static void rotate(float[] quad, float[] out, int quarterTurns) {
+        for (int k = 0; k < 4; k++) {
+            int from = (k + quarterTurns) & 3;
+            out[2 * k] = quad[2 * from];
+            out[2 * k + 1] = quad[2 * from + 1];
+        }
+    }
+
+    public static float quadWidth(float[] quad) {
+        return Math.max(distance(quad, 0, 1), distance(quad, 3, 2));
+    }
+
+    public static float quadHeight(float[] quad) {
+        return Math.max(distance(quad, 0, 3), distance(quad, 1, 2));
+    }
+
+    private static float distance(float[] quad, int a, int b) {
+        float dx = quad[2 * a] - quad[2 * b];
+        float dy = quad[2 * a + 1] - quad[2 * b + 1];
+        return (float) Math.sqrt(dx * dx + dy * dy);
+    }
+}
@@ -0,0 +1,69 @@
+package com.reatext.ocr.core;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+
+/**
+ * 录制张量的文件格式，供基准测试在 JVM 上回放真实模型输出：
+ * "OCRT" 魔数、int 维数、各维 long，随后是小端 float32 数据。
+ * 头部按 DataOutputStream 大端写入，数据段按小端写入以便直接映射。
+ */
+public final class TensorFile {
+    private static final int MAGIC = 0x4f435254; // "OCRT"
+
+    public final long[] shape;
+    public final float[] data;
+
+    public TensorFile(long[] shape, float[] data) {
+        this.shape = shape;
+        this.data = data;
+    }
+
+    /** 写入 data 的前 shape 元素个数个值；数组可以比张量长（复用缓冲的情况） */
+    public static void write(File file, long[] shape, float[] data) throws IOException {
+        int count = elementCount(shape);
+        if (count > data.length) {
+            throw new IllegalArgumentException("data shorter than shape: " + data.length + " < " + count);
+        }
+        ByteBuffer bytes = ByteBuffer.allocate(count * 4).order(ByteOrder.LITTLE_ENDIAN);
+        bytes.asFloatBuffer().put(data, 0, count);
+        try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(file)))) {
+            out.writeInt(MAGIC);
+            out.writeInt(shape.length);
+            for (long dim : shape) out.writeLong(dim);
+            out.write(bytes.array());
+        }
+    }
+
+    public static TensorFile read(File file) throws IOException {
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(file)))) {
+            if (in.readInt() != MAGIC) throw new IOException("Not a tensor file: " + file);
+            int rank = in.readInt();
+            if (rank < 0 || rank > 8) throw new IOException("Bad rank " + rank + ": " + file);
+            long[] shape = new long[rank];
+            for (int i = 0; i < rank; i++) shape[i] = in.readLong();
+            byte[] bytes = new byte[elementCount(shape) * 4];
+            in.readFully(bytes);
+            float[] data = new float[bytes.length / 4];
+            ByteBuffer.wrap(bytes).order(ByteOrder.LITTLE_ENDIAN).asFloatBuffer().get(data);
+            return new TensorFile(shape, data);
+        }
+    }
+
+    public static int elementCount(long[] shape) {
+        long count = 1;
+        for (long dim : shape) count *= dim;
+        if (count < 0 || count > Integer.MAX_VALUE / 4) {
+            throw new IllegalArgumentException("Tensor too large: " + count);
+        }
+        return (int) count;
+    }
+}
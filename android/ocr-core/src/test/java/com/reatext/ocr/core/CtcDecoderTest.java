@@ -0,0 +1,101 @@
+package com.reatext.ocr.core;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+
+import org.junit.Test;
+
+import java.util.Arrays;
+
+public class CtcDecoderTest {
+    // 类别：0 blank，1 "a"，2 "b"，3 "ch"（多字符标签），4 空格
+    private static final int CLASSES = 5;
+
+    private final CtcDecoder decoder = new CtcDecoder(Arrays.asList("a", "b", "ch"));
+
+    /** 每个时间步在 indices[t] 处取 scores[t]，其余类别平分剩余概率 */
+    private static float[] probs(int offset, int[] indices, float[] scores) {
+        float[] data = new float[offset + indices.length * CLASSES];
+        Arrays.fill(data, -1f);
+        for (int t = 0; t < indices.length; t++) {
+            int base = offset + t * CLASSES;
+            for (int c = 0; c < CLASSES; c++) data[base + c] = (1f - scores[t]) / (CLASSES - 1);
+            data[base + indices[t]] = scores[t];
+        }
+        return data;
+    }
+
+    @Test
+    public void classCountIncludesBlankAndSpace() {
+        assertEquals(CLASSES, decoder.classCount());
+    }
+
+    @Test
+    public void collapsesRepeatsAndBlankSeparatesThem() {
+        int[] indices = {1, 1, 0, 1, 2, 2, 4, 3, 3};
+        float[] scores = {0.9f, 0.8f, 0.7f, 0.6f, 0.5f, 0.95f, 0.85f, 0.75f, 0.99f};
+        CtcDecoder.Result result = decoder.decode(probs(0, indices, scores), 0, indices.length, CLASSES);
+
+        assertEquals("aab ch", result.text);
+        // 每个输出类别取它第一个时间步的概率
+        assertArrayEquals(new float[]{0.9f, 0.6f, 0.5f, 0.85f, 0.75f}, result.charScores, 1e-6f);
+        assertEquals((0.9f + 0.6f + 0.5f + 0.85f + 0.75f) / 5, result.score, 1e-6f);
+    }
+
+    @Test
+    public void allBlankDecodesToEmptyTextWithZeroScore() {
+        int[] indices = {0, 0, 0};
+        CtcDecoder.Result result = decoder.decode(probs(0, indices, new float[]{0.9f, 0.9f, 0.9f}), 0, 3, CLASSES);
+
+        assertEquals("", result.text);
+        assertEquals(0, result.charScores.length);
+        assertEquals(0f, result.score, 0f);
+    }
+
+    @Test
+    public void decodesFromOffsetWithinBatchOutput() {
+        // 批量输出中第二行从 offset 开始，前面的数据不能影响结果
+        int offset = 3 * CLASSES + 2;
+        int[] indices = {2, 0, 2, 3};
+        float[] scores = {0.6f, 0.9f, 0.7f, 0.8f};
+        CtcDecoder.Result result = decoder.decode(probs(offset, indices, scores), offset, indices.length, CLASSES);
+
+        assertEquals("bbch", result.text);
+        assertEquals(3, result.charScores.length);
+    }
+
+    @Test
+    public void outOfTableClassesAreSkipped() {
+        // 模型输出类别数多于字典时，超出部分不输出字符
+        int classes = CLASSES + 2;
+        float[] data = new float[2 * classes];
+        data[classes - 1] = 1f;
+        data[classes + 1] = 1f;
+        CtcDecoder.Result result = decoder.decode(data, 0, 2, classes);
+
+        assertEquals("a", result.text);
+    }
+
+    @Test
+    public void argmaxPicksFirstOfTies() {
+        float[] a = {0f, 3f, 1f, 3f, 3f, 2f, 3f, 0f, 3f};
+        assertEquals(1, CtcDecoder.argmax(a, 0, a.length));
+        assertEquals(3, CtcDecoder.argmax(a, 2, 7));
+        assertEquals(5, CtcDecoder.argmax(new float[]{9f, 1f, 1f, 1f, 1f, 2f}, 1, 5));
+    }
+
+    @Test
+    public void growsBuffersForLongLines() {
+        int[] indices = new int[300];
+        float[] scores = new float[300];
+        for (int t = 0; t < indices.length; t++) {
+            // a、blank 交替，每个 a 单独输出
+            indices[t] = t % 2 == 0 ? 1 : 0;
+            scores[t] = 0.9f;
+        }
+        CtcDecoder.Result result = decoder.decode(probs(0, indices, scores), 0, indices.length, CLASSES);
+
+        assertEquals(150, result.text.length());
+        assertEquals(150, result.charScores.length);
+    }
+}
@@ -0,0 +1,91 @@
+package com.reatext.ocr.core;
+
+import static org.junit.Assert.assertEquals;
+
+import org.junit.Test;
+
+public class DbPostProcessorTest {
+    private static final int MAP_W = 60;
+    private static final int MAP_H = 40;
+
+    private static void fill(float[] prob, int x0, int y0, int x1, int y1, float value) {
+        for (int y = y0; y < y1; y++) {
+            for (int x = x0; x < x1; x++) prob[y * MAP_W + x] = value;
+        }
+    }
+
+    @Test
+    public void unclipsRectangleAndMapsToSourceScale() {
+        float[] prob = new float[MAP_W * MAP_H];
+        // 20 × 8 像素的文字区域
+        fill(prob, 10, 5, 30, 13, 0.9f);
+        float[][] boxes = new DbPostProcessor().process(prob, MAP_W, MAP_H, MAP_W * 2, MAP_H * 2);
+
+        assertEquals(1, boxes.length);
+        // distance = 20 × 8 × 1.5 / (2 × 28)，四边各外扩后按 ×2 映射回原图
+        float d = 20f * 8f * 1.5f / 56f;
+        float[] box = boxes[0];
+        assertEquals((10 - d) * 2, box[0], 1e-3f);
+        assertEquals((5 - d) * 2, box[1], 1e-3f);
+        assertEquals((30 + d) * 2, box[2], 1e-3f);
+        assertEquals((5 - d) * 2, box[3], 1e-3f);
+        assertEquals((30 + d) * 2, box[4], 1e-3f);
+        assertEquals((13 + d) * 2, box[5], 1e-3f);
+        assertEquals((10 - d) * 2, box[6], 1e-3f);
+        assertEquals((13 + d) * 2, box[7], 1e-3f);
+    }
+
+    @Test
+    public void unclipClampsToSourceBounds() {
+        float[] prob = new float[MAP_W * MAP_H];
+        fill(prob, 0, 0, 20, 6, 0.9f);
+        float[] box = new DbPostProcessor().process(prob, MAP_W, MAP_H, MAP_W, MAP_H)[0];
+
+        assertEquals(0f, box[0], 0f);
+        assertEquals(0f, box[1], 0f);
+    }
+
+    @Test
+    public void dropsComponentsBelowMinSize() {
+        float[] prob = new float[MAP_W * MAP_H];
+        // 2 × 2 的点与 1 像素宽的竖线都小于最小边长 3
+        fill(prob, 5, 5, 7, 7, 0.9f);
+        fill(prob, 40, 5, 41, 35, 0.9f);
+        assertEquals(0, new DbPostProcessor().process(prob, MAP_W, MAP_H, MAP_W, MAP_H).length);
+    }
+
+    @Test
+    public void dropsComponentsBelowBoxThreshold() {
+        float[] prob = new float[MAP_W * MAP_H];
+        // 高于二值化阈值 0.3、低于框阈值 0.6
+        fill(prob, 10, 5, 30, 13, 0.5f);
+        assertEquals(0, new DbPostProcessor().process(prob, MAP_W, MAP_H, MAP_W, MAP_H).length);
+        assertEquals(1, new DbPostProcessor().setBoxThresh(0.4f).process(prob, MAP_W, MAP_H, MAP_W, MAP_H).length);
+    }
+
+    @Test
+    public void returnsBoxesInReadingOrder() {
+        float[] prob = new float[MAP_W * MAP_H];
+        fill(prob, 35, 25, 55, 32, 0.9f);
+        fill(prob, 35, 5, 55, 12, 0.9f);
+        // 与右上框同一行（y 差 < 10），应排在它前面
+        fill(prob, 5, 7, 25, 14, 0.9f);
+        float[][] boxes = new DbPostProcessor().process(prob, MAP_W, MAP_H, MAP_W, MAP_H);
+
+        assertEquals(3, boxes.length);
+        assertEquals(true, boxes[0][0] < boxes[1][0]);
+        assertEquals(true, boxes[1][1] < boxes[2][1]);
+    }
+
+    @Test
+    public void reusesBuffersAcrossSizes() {
+        DbPostProcessor processor = new DbPostProcessor();
+        float[] large = new float[MAP_W * MAP_H];
+        fill(large, 10, 5, 30, 13, 0.9f);
+        assertEquals(1, processor.process(large, MAP_W, MAP_H, MAP_W, MAP_H).length);
+
+        // 更小的图复用上一张的缓冲，残留数据不能产生框
+        float[] small = new float[20 * 10];
+        assertEquals(0, processor.process(small, 20, 10, 20, 10).length);
+    }
+}
@@ -0,0 +1,128 @@
+package com.reatext.ocr.core;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+public class DetTilingTest {
+    private static float[] rect(float x0, float y0, float x1, float y1) {
+        return new float[]{x0, y0, x1, y0, x1, y1, x0, y1};
+    }
+
+    @Test
+    public void resizeKeepsAspectAndRoundsTo32() {
+        assertArrayEquals(new int[]{960, 544}, DetTiling.resize(1920, 1080, 960));
+        // 不放大
+        assertArrayEquals(new int[]{320, 224}, DetTiling.resize(320, 224, 960));
+        // 极细的边至少 32
+        assertArrayEquals(new int[]{32, 960}, DetTiling.resize(3, 4000, 960));
+    }
+
+    @Test
+    public void smallImagesAreOneTile() {
+        List<int[]> tiles = DetTiling.tiles(1080, 1920, 960);
+        assertEquals(1, tiles.size());
+        assertArrayEquals(new int[]{0, 0, 1080, 1920}, tiles.get(0));
+    }
+
+    @Test
+    public void longScreenshotTilesOverlapAndCoverTheImage() {
+        List<int[]> tiles = DetTiling.tiles(1080, 6000, 960);
+        int covered = 0;
+        for (int[] tile : tiles) {
+            assertEquals(0, tile[0]);
+            assertEquals(1080, tile[2]);
+            // 相邻块重叠，不留缝
+            assertEquals(true, tile[1] <= covered);
+            covered = Math.max(covered, tile[1] + tile[3]);
+        }
+        assertEquals(6000, covered);
+    }
+
+    /** 块须覆盖整幅图、相邻不留缝，且每块缩放比不低于 1/2 */
+    private static void assertCovers(int width, int height, int limitSide, List<int[]> tiles) {
+        boolean[] rows = new boolean[height];
+        boolean[] cols = new boolean[width];
+        for (int[] tile : tiles) {
+            assertEquals(true, tile[2] > 0 && tile[3] > 0);
+            assertEquals(true, tile[0] + tile[2] <= width && tile[1] + tile[3] <= height);
+            assertEquals(true, Math.max(tile[2], tile[3]) <= 2 * limitSide);
+            for (int y = tile[1]; y < tile[1] + tile[3]; y++) rows[y] = true;
+            for (int x = tile[0]; x < tile[0] + tile[2]; x++) cols[x] = true;
+        }
+        for (boolean row : rows) assertEquals(true, row);
+        for (boolean col : cols) assertEquals(true, col);
+    }
+
+    @Test
+    public void thinStripsDoNotBreakTiling() {
+        // 短边不超过最小重叠（64）时曾导致负长度数组或除零
+        int[][] sizes = {{40, 5000}, {60, 3000}, {64, 5000}, {1, 2000}, {5000, 40}};
+        for (int[] size : sizes) {
+            List<int[]> tiles = DetTiling.tiles(size[0], size[1], 960);
+            assertCovers(size[0], size[1], 960, tiles);
+            assertEquals(true, tiles.size() <= 7);
+        }
+    }
+
+    @Test
+    public void narrowStripUsesTilesOfLimitLength() {
+        // 200 宽的长条按短边切方块要 37 块；沿长边取 limitSide 只要 6 块，且不需要缩小
+        List<int[]> tiles = DetTiling.tiles(200, 5000, 960);
+        assertCovers(200, 5000, 960, tiles);
+        assertEquals(6, tiles.size());
+        for (int[] tile : tiles) assertEquals(true, tile[2] == 200 && tile[3] <= 960);
+    }
+
+    @Test
+    public void tinyLimitSideStillTerminates() {
+        List<int[]> tiles = DetTiling.tiles(3, 100, 1);
+        assertCovers(3, 100, 1, tiles);
+    }
+
+    @Test
+    public void mergeKeepsLargerOfDuplicatesFromDifferentTiles() {
+        float[] whole = rect(10, 100, 400, 130);
+        float[] cut = rect(10, 100, 400, 118);
+        float[][] merged = DetTiling.merge(Arrays.asList(new float[][]{whole}, new float[][]{cut}));
+
+        assertEquals(1, merged.length);
+        assertArrayEquals(whole, merged[0], 0f);
+    }
+
+    @Test
+    public void mergeJoinsRowSplitByVerticalTileBorder() {
+        float[] left = rect(10, 100, 520, 130);
+        float[] right = rect(500, 101, 900, 131);
+        float[][] merged = DetTiling.merge(Arrays.asList(new float[][]{left}, new float[][]{right}));
+
+        assertEquals(1, merged.length);
+        assertArrayEquals(rect(10, 100, 900, 131), merged[0], 0f);
+    }
+
+    @Test
+    public void mergeKeepsOverlappingBoxesFromTheSameTile() {
+        float[][] tile = {rect(10, 100, 400, 130), rect(20, 105, 300, 125)};
+        float[][] merged = DetTiling.merge(Arrays.asList(tile, new float[0][]));
+
+        assertEquals(2, merged.length);
+    }
+
+    @Test
+    public void singleTileMergeIsIdentity() {
+        float[][] boxes = {rect(0, 0, 10, 10)};
+        assertEquals(boxes, DetTiling.merge(Collections.singletonList(boxes)));
+    }
+
+    @Test
+    public void offsetTranslatesAllCorners() {
+        float[][] boxes = {rect(0, 0, 10, 5)};
+        DetTiling.offset(boxes, 3, 100);
+        assertArrayEquals(rect(3, 100, 13, 105), boxes[0], 0f);
+    }
+}
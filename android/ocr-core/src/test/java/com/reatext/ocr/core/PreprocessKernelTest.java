@@ -0,0 +1,97 @@
+package com.reatext.ocr.core;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+
+import org.junit.Test;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.util.Arrays;
+import java.util.Random;
+
+public class PreprocessKernelTest {
+    private static final int W = 37;
+    private static final int H = 23;
+
+    private final int[] argb = new int[W * H];
+    // 与 argb 相同像素的 RGBA 缓冲：带起始偏移、行尾填充与 4 字节像素步长，模拟 ImageReader 平面
+    private final int offset = 16;
+    private final int rowStride = W * 4 + 12;
+    private final ByteBuffer rgba = ByteBuffer.allocate(offset + H * rowStride).order(ByteOrder.LITTLE_ENDIAN);
+
+    public PreprocessKernelTest() {
+        Random random = new Random(42);
+        for (int y = 0; y < H; y++) {
+            for (int x = 0; x < W; x++) {
+                int r = random.nextInt(256), g = random.nextInt(256), b = random.nextInt(256);
+                argb[y * W + x] = 0xff000000 | (r << 16) | (g << 8) | b;
+                int p = offset + y * rowStride + x * 4;
+                rgba.put(p, (byte) r);
+                rgba.put(p + 1, (byte) g);
+                rgba.put(p + 2, (byte) b);
+                rgba.put(p + 3, (byte) 0xff);
+            }
+        }
+    }
+
+    private void assertParity(float[] quad, int dstW, int dstH, int planeWidth, boolean gray) {
+        int dstOffset = 5;
+        float[] fromInts = new float[dstOffset + 3 * dstH * planeWidth];
+        float[] fromBuffer = new float[fromInts.length];
+        Arrays.fill(fromInts, Float.NaN);
+        Arrays.fill(fromBuffer, Float.NaN);
+        PreprocessKernel.sample(argb, W, H, quad, fromInts, dstOffset, dstW, dstH, planeWidth,
+                gray, PreprocessKernel.DET_MEAN, PreprocessKernel.DET_STD);
+        PreprocessKernel.sample(rgba, offset, rowStride, 4, W, H, quad, fromBuffer, dstOffset, dstW, dstH, planeWidth,
+                gray, PreprocessKernel.DET_MEAN, PreprocessKernel.DET_STD);
+        assertArrayEquals(fromInts, fromBuffer, 0f);
+    }
+
+    @Test
+    public void intAndBufferSourcesAgreeOnFullFrameResize() {
+        float[] quad = new float[8];
+        PreprocessKernel.fullFrame(W, H, quad);
+        assertParity(quad, 32, 32, 32, false);
+    }
+
+    @Test
+    public void intAndBufferSourcesAgreeOnRotatedCropWithPadding() {
+        float[] quad = {5.5f, 3f, 30f, 6f, 28f, 18.5f, 3.5f, 15.5f};
+        float[] rotated = new float[8];
+        PreprocessKernel.rotate(quad, rotated, 1);
+        assertParity(quad, 24, 8, 40, false);
+        assertParity(rotated, 8, 24, 8, true);
+    }
+
+    @Test
+    public void samplesExactPixelsAndZeroesPadding() {
+        float[] quad = new float[8];
+        PreprocessKernel.fullFrame(W, H, quad);
+        int planeWidth = W + 3;
+        float[] dst = new float[3 * H * planeWidth];
+        Arrays.fill(dst, Float.NaN);
+        PreprocessKernel.sample(argb, W, H, quad, dst, 0, W, H, planeWidth,
+                false, PreprocessKernel.REC_MEAN, PreprocessKernel.REC_STD);
+
+        // 原尺寸采样落在像素中心，等于逐像素归一化
+        int p = argb[7 * W + 11];
+        assertEquals(((p >> 16) & 0xff) / 127.5f - 1f, dst[7 * planeWidth + 11], 1e-5f);
+        assertEquals(((p >> 8) & 0xff) / 127.5f - 1f, dst[H * planeWidth + 7 * planeWidth + 11], 1e-5f);
+        assertEquals((p & 0xff) / 127.5f - 1f, dst[2 * H * planeWidth + 7 * planeWidth + 11], 1e-5f);
+        for (int c = 0; c < 3; c++) {
+            for (int x = W; x < planeWidth; x++) assertEquals(0f, dst[c * H * planeWidth + 4 * planeWidth + x], 0f);
+        }
+    }
+
+    @Test
+    public void quadSizeAndRotation() {
+        float[] quad = {0, 0, 40, 0, 40, 10, 0, 10};
+        assertEquals(40f, PreprocessKernel.quadWidth(quad), 1e-6f);
+        assertEquals(10f, PreprocessKernel.quadHeight(quad), 1e-6f);
+
+        float[] rotated = new float[8];
+        PreprocessKernel.rotate(quad, rotated, 2);
+        assertArrayEquals(new float[]{40, 10, 0, 10, 0, 0, 40, 0}, rotated, 0f);
+    }
+}
@@ -0,0 +1,197 @@
+package com.alexcheng.heybossapp.ocr;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import android.content.Context;
+import androidx.test.ext.junit.runners.AndroidJUnit4;
+import androidx.test.platform.app.InstrumentationRegistry;
+
+import com.getcapacitor.JSObject;
+
+import org.json.JSONArray;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.nio.charset.Charset;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 把 {@link HistorySync} 指向本地的 HTTP 替身，检查批量上传、凭据与被拒请求的处理。
+ */
+@RunWith(AndroidJUnit4.class)
+public class HistorySyncTest {
+    private static final Charset UTF_8 = Charset.forName("UTF-8");
+
+    private HistoryStore store;
+    private HistorySync sync;
+    private StandIn server;
+
+    @Before
+    public void setUp() throws Exception {
+        Context context = InstrumentationRegistry.getInstrumentation().getTargetContext();
+        store = new HistoryStore(context);
+        store.clear();
+        sync = new HistorySync(context, store);
+        server = new StandIn();
+        // configure 会立即安排一轮上传；先在空日志上等它跑完，之后每个测试只由 flush 触发一轮
+        sync.configure(new HistorySync.Config(server.url(), "anon", "user-token", "user-1",
+                "history", "thumbs", false));
+        flush();
+    }
+
+    @After
+    public void tearDown() throws IOException {
+        sync.shutdown();
+        server.close();
+        store.clear();
+    }
+
+    private JSObject flush() throws InterruptedException {
+        final CountDownLatch done = new CountDownLatch(1);
+        sync.flush(done::countDown);
+        assertTrue(done.await(30, TimeUnit.SECONDS));
+        return sync.status();
+    }
+
+    @Test
+    public void rowsUploadAsOneBatchWithTheUserToken() throws Exception {
+        for (int i = 0; i < 3; i++) store.add("line " + i, null, 1_700_000_000_000L + i);
+
+        JSObject status = flush();
+
+        assertEquals(0, status.optInt("pendingRecords"));
+        assertEquals(3, status.optInt("uploadedRecords"));
+        assertEquals(1, server.requests.size());
+        Request request = server.requests.get(0);
+        assertEquals("POST /rest/v1/history", request.line);
+        assertEquals("Bearer user-token", request.headers.get("authorization"));
+        JSONArray rows = new JSONArray(request.body);
+        assertEquals(3, rows.length());
+        assertEquals("user-1", rows.getJSONObject(0).getString("user_id"));
+    }
+
+    @Test
+    public void rejectedRowIsQuarantinedWhileTheRestOfTheBatchUploads() throws Exception {
+        server.rejectBodiesContaining = "bad row";
+        store.add("good 1", null, 1_700_000_000_000L);
+        store.add("bad row", null, 1_700_000_000_001L);
+        store.add("good 2", null, 1_700_000_000_002L);
+        store.add("good 3", null, 1_700_000_000_003L);
+
+        JSObject status = flush();
+
+        assertEquals(3, status.optInt("uploadedRecords"));
+        assertEquals(1, status.optInt("quarantined"));
+        assertEquals(0, status.optInt("dropped"));
+        // 被拒的行仍在日志中等待重试
+        assertEquals(1, status.optInt("pendingRecords"));
+    }
+
+    @Test
+    public void serverErrorKeepsTheBatchForRetry() throws Exception {
+        server.status = 503;
+        for (int i = 0; i < 3; i++) store.add("line " + i, null, 1_700_000_000_000L + i);
+
+        JSObject status = flush();
+
+        assertEquals(0, status.optInt("uploadedRecords"));
+        assertEquals(3, status.optInt("pendingRecords"));
+        assertEquals(1, server.requests.size());
+    }
+
+    private static final class Request {
+        final String line;
+        final Map<String, String> headers;
+        final String body;
+
+        Request(String line, Map<String, String> headers, String body) {
+            this.line = line;
+            this.headers = headers;
+            this.body = body;
+        }
+    }
+
+    /** 最小的 HTTP/1.1 替身：逐个连接读一个请求，记下后按设定的状态码回复并关闭连接 */
+    private static final class StandIn implements Runnable {
+        final List<Request> requests = Collections.synchronizedList(new ArrayList<Request>());
+        volatile int status = 201;
+        volatile String rejectBodiesContaining;
+        private final ServerSocket socket = new ServerSocket(0, 8, InetAddress.getByName("127.0.0.1"));
+        private final Thread thread = new Thread(this, "history-stand-in");
+
+        StandIn() throws IOException {
+            thread.start();
+        }
+
+        String url() {
+            return "http://127.0.0.1:" + socket.getLocalPort();
+        }
+
+        void close() throws IOException {
+            socket.close();
+        }
+
+        @Override
+        public void run() {
+            while (!socket.isClosed()) {
+                try (Socket client = socket.accept()) {
+                    Request request = read(client.getInputStream());
+                    requests.add(request);
+                    String reject = rejectBodiesContaining;
+                    int code = reject != null && request.body.contains(reject) ? 400 : status;
+                    OutputStream out = client.getOutputStream();
+                    out.write(("HTTP/1.1 " + code + " Stand-in\r\nContent-Length: 0\r\nConnection: close\r\n\r\n")
+                            .getBytes(UTF_8));
+                    out.flush();
+                } catch (IOException e) {
+                    // 关闭 socket 时 accept 抛出，循环随之结束
+                }
+            }
+        }
+
+        private static Request read(InputStream in) throws IOException {
+            String[] start = readLine(in).split(" ");
+            Map<String, String> headers = new HashMap<>();
+            String line;
+            while (!(line = readLine(in)).isEmpty()) {
+                int colon = line.indexOf(':');
+                headers.put(line.substring(0, colon).trim().toLowerCase(Locale.ROOT), line.substring(colon + 1).trim());
+            }
+            String length = headers.get("content-length");
+            byte[] body = new byte[length == null ? 0 : Integer.parseInt(length)];
+            int read = 0;
+            while (read < body.length) {
+                int n = in.read(body, read, body.length - read);
+                if (n < 0) break;
+                read += n;
+            }
+            return new Request(start[0] + " " + start[1], headers, new String(body, 0, read, UTF_8));
+        }
+
+        private static String readLine(InputStream in) throws IOException {
+            ByteArrayOutputStream line = new ByteArrayOutputStream();
+            int c;
+            while ((c = in.read()) >= 0 && c != '\n') {
+                if (c != '\r') line.write(c);
+            }
+            return new String(line.toByteArray(), UTF_8);
+        }
+    }
+}
@@ -0,0 +1,254 @@
+package com.alexcheng.heybossapp.ocr;
+
+import android.graphics.Bitmap;
+import android.util.Log;
+
+import org.json.JSONException;
+import org.json.JSONObject;
+
+import java.nio.ByteBuffer;
+import java.util.ArrayDeque;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * OCR 热路径上大对象的复用池：ARGB_8888 Bitmap、int[] 像素、float[] 张量缓冲与 direct ByteBuffer。
+ *
+ * 每种类型按容量分级（TreeMap 取不小于需求的最小一级），只接受不超过需求 2 倍的对象，避免小请求占用大块。
+ * float[] 按长度精确匹配：Tensor.setData 要求数组长度与张量元素数相等。
+ * 池中对象总字节数受预算约束，超出时从最早归还的对象开始淘汰（Bitmap 同时 recycle）。
+ *
+ * 插件与宿主 App 共用同一个实例（插件解码图片，App 运行识别），线程安全。
+ */
+public final class BufferPool {
+    private static final String TAG = "BufferPool";
+    // 可复用的最大浪费比例：池中对象容量不超过需求的 2 倍
+    private static final int MAX_OVERSIZE = 2;
+
+    private static BufferPool instance;
+
+    /** 预算取堆上限的 1/8，且不超过 64 MB；3 GB 设备上的 256 MB 堆对应 32 MB */
+    public static synchronized BufferPool get() {
+        if (instance == null) {
+            long budget = Math.min(64L << 20, Runtime.getRuntime().maxMemory() / 8);
+            instance = new BufferPool(budget);
+        }
+        return instance;
+    }
+
+    private final TreeMap<Integer, ArrayDeque<Bitmap>> bitmaps = new TreeMap<>();
+    private final TreeMap<Integer, ArrayDeque<int[]>> ints = new TreeMap<>();
+    private final TreeMap<Integer, ArrayDeque<float[]>> floats = new TreeMap<>();
+    private final TreeMap<Integer, ArrayDeque<ByteBuffer>> buffers = new TreeMap<>();
+    // 按归还顺序记录池中所有对象，淘汰从队头开始
+    private final ArrayDeque<Object> order = new ArrayDeque<>();
+
+    // 以下字段由 this 监视器保护
+    private long budgetBytes;
+    private long pooledBytes;
+    private long hits;
+    private long misses;
+    private long evictions;
+    private long rejected;
+
+    public BufferPool(long budgetBytes) {
+        this.budgetBytes = budgetBytes;
+    }
+
+    /** 取一张 width × height 的 ARGB_8888 可变位图，内容未清空；可作为 BitmapFactory inBitmap */
+    public Bitmap acquireBitmap(int width, int height) {
+        int bytes = width * height * 4;
+        synchronized (this) {
+            Bitmap bitmap = take(bitmaps, bytes);
+            if (bitmap != null) {
+                bitmap.reconfigure(width, height, Bitmap.Config.ARGB_8888);
+                return bitmap;
+            }
+        }
+        return Bitmap.createBitmap(width, height, Bitmap.Config.ARGB_8888);
+    }
+
+    /** 长度不小于 minLength 的 int[]，内容未清空 */
+    public int[] acquireInts(int minLength) {
+        synchronized (this) {
+            int[] array = take(ints, minLength);
+            if (array != null) return array;
+        }
+        return new int[minLength];
+    }
+
+    /** 长度恰为 length 的 float[]，内容未清空 */
+    public float[] acquireFloats(int length) {
+        synchronized (this) {
+            ArrayDeque<float[]> queue = floats.get(length);
+            if (queue != null && !queue.isEmpty()) {
+                float[] array = queue.pollLast();
+                if (queue.isEmpty()) floats.remove(length);
+                removeFromOrder(array);
+                pooledBytes -= length * 4L;
+                hits++;
+                return array;
+            }
+            misses++;
+        }
+        return new float[length];
+    }
+
+    /** 容量不小于 minCapacity 的 direct 缓冲，position 0、limit minCapacity */
+    public ByteBuffer acquireDirect(int minCapacity) {
+        ByteBuffer buffer;
+        synchronized (this) {
+            buffer = take(buffers, minCapacity);
+        }
+        if (buffer == null) buffer = ByteBuffer.allocateDirect(minCapacity);
+        buffer.clear();
+        buffer.limit(minCapacity);
+        return buffer;
+    }
+
+    public void release(Bitmap bitmap) {
+        if (bitmap == null || bitmap.isRecycled()) return;
+        if (!bitmap.isMutable() || bitmap.getConfig() != Bitmap.Config.ARGB_8888) {
+            bitmap.recycle();
+            return;
+        }
+        if (!put(bitmaps, bitmap.getAllocationByteCount(), bitmap)) bitmap.recycle();
+    }
+
+    public void release(int[] array) {
+        if (array != null && array.length > 0) put(ints, array.length, array);
+    }
+
+    public void release(float[] array) {
+        if (array != null && array.length > 0) put(floats, array.length, array);
+    }
+
+    public void release(ByteBuffer buffer) {
+        if (buffer != null && buffer.isDirect()) put(buffers, buffer.capacity(), buffer);
+    }
+
+    /** 调整预算并立即淘汰超出部分；内存紧张时可调低 */
+    public synchronized void setBudget(long budgetBytes) {
+        this.budgetBytes = budgetBytes;
+        evictTo(budgetBytes);
+    }
+
+    public synchronized long getBudget() {
+        return budgetBytes;
+    }
+
+    /** 淘汰到 targetBytes 以下，返回释放的字节数 */
+    public synchronized long trimTo(long targetBytes) {
+        long before = pooledBytes;
+        evictTo(targetBytes);
+        return before - pooledBytes;
+    }
+
+    public synchronized JSONObject stats() {
+        JSONObject stats = new JSONObject();
+        try {
+            stats.put("budgetBytes", budgetBytes);
+            stats.put("pooledBytes", pooledBytes);
+            stats.put("bitmaps", count(bitmaps));
+            stats.put("intArrays", count(ints));
+            stats.put("floatArrays", count(floats));
+            stats.put("directBuffers", count(buffers));
+            stats.put("hits", hits);
+            stats.put("misses", misses);
+            stats.put("evictions", evictions);
+            stats.put("rejected", rejected);
+        } catch (JSONException e) {
+            Log.w(TAG, "stats failed", e);
+        }
+        return stats;
+    }
+
+    /** 取容量在 [need, need × MAX_OVERSIZE] 内最小的一个；容量单位：位图与缓冲为字节，数组为长度 */
+    private <T> T take(TreeMap<Integer, ArrayDeque<T>> classes, int need) {
+        Map.Entry<Integer, ArrayDeque<T>> entry = classes.ceilingEntry(need);
+        if (entry == null || entry.getKey() > (long) need * MAX_OVERSIZE) {
+            misses++;
+            return null;
+        }
+        ArrayDeque<T> queue = entry.getValue();
+        T item = queue.pollLast();
+        if (queue.isEmpty()) classes.remove(entry.getKey());
+        removeFromOrder(item);
+        pooledBytes -= bytesOf(item);
+        hits++;
+        return item;
+    }
+
+    private synchronized <T> boolean put(TreeMap<Integer, ArrayDeque<T>> classes, int sizeKey, T item) {
+        long bytes = bytesOf(item);
+        if (bytes > budgetBytes) {
+            rejected++;
+            return false;
+        }
+        evictTo(budgetBytes - bytes);
+        ArrayDeque<T> queue = classes.get(sizeKey);
+        if (queue == null) {
+            queue = new ArrayDeque<>();
+            classes.put(sizeKey, queue);
+        }
+        queue.addLast(item);
+        order.addLast(item);
+        pooledBytes += bytes;
+        return true;
+    }
+
+    private void evictTo(long targetBytes) {
+        while (pooledBytes > targetBytes && !order.isEmpty()) {
+            Object item = order.pollFirst();
+            // 先取大小：recycle 之后 getAllocationByteCount 返回 0
+            long bytes = bytesOf(item);
+            if (item instanceof Bitmap) {
+                removeFrom(bitmaps, ((Bitmap) item).getAllocationByteCount(), item);
+                ((Bitmap) item).recycle();
+            } else if (item instanceof int[]) {
+                removeFrom(ints, ((int[]) item).length, item);
+            } else if (item instanceof float[]) {
+                removeFrom(floats, ((float[]) item).length, item);
+            } else {
+                removeFrom(buffers, ((ByteBuffer) item).capacity(), item);
+            }
+            pooledBytes -= bytes;
+            evictions++;
+        }
+    }
+
+    private static <T> void removeFrom(TreeMap<Integer, ArrayDeque<T>> classes, int sizeKey, Object item) {
+        ArrayDeque<T> queue = classes.get(sizeKey);
+        if (queue == null) return;
+        removeIdentity(queue.iterator(), item);
+        if (queue.isEmpty()) classes.remove(sizeKey);
+    }
+
+    private void removeFromOrder(Object item) {
+        // 按引用比较：相同长度的数组 equals 也是引用比较，但 ByteBuffer.equals 比较内容
+        removeIdentity(order.descendingIterator(), item);
+    }
+
+    private static void removeIdentity(Iterator<?> iterator, Object item) {
+        while (iterator.hasNext()) {
+            if (iterator.next() == item) {
+                iterator.remove();
+                return;
+            }
+        }
+    }
+
+    private static long bytesOf(Object item) {
+        if (item instanceof Bitmap) return ((Bitmap) item).getAllocationByteCount();
+        if (item instanceof int[]) return ((int[]) item).length * 4L;
+        if (item instanceof float[]) return ((float[]) item).length * 4L;
+        return ((ByteBuffer) item).capacity();
+    }
+
+    private static int count(TreeMap<Integer, ? extends ArrayDeque<?>> classes) {
+        int count = 0;
+        for (ArrayDeque<?> queue : classes.values()) count += queue.size();
+        return count;
+    }
+}
@@ -0,0 +1,464 @@
+package com.alexcheng.heybossapp.ocr;
+
+import android.content.Context;
+import android.database.Cursor;
+import android.database.sqlite.SQLiteDatabase;
+import android.database.sqlite.SQLiteOpenHelper;
+import android.database.sqlite.SQLiteStatement;
+import android.graphics.Bitmap;
+import android.graphics.BitmapFactory;
+import android.util.Base64;
+import android.util.Log;
+
+import org.json.JSONException;
+import org.json.JSONObject;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * 识别历史的本地存储：SQLite 主表 + FTS4 全文索引，缩略图以 JPEG 文件存放在 files/history-thumbs。
+ *
+ * 索引内容由 {@link HistoryTokenizer} 预先切好（CJK 二元组 + 字母数字词），FTS 只按空白切分，
+ * 因此不依赖系统 SQLite 是否编译了 FTS5 或 ICU 分词器。
+ * 列表按 (created_at, id) 倒序键集分页，翻页代价与总条数无关；搜索先在 FTS 中取 docid 再回表。
+ *
+ * 同库的 sync_queue 是上传日志：每条记录待上传的行与缩略图各占一项，由 {@link HistorySync} 消费，
+ * 上传成功才删除，进程被杀或断网后下次继续。
+ *
+ * 所有方法都是同步的磁盘 IO，由 OcrPlugin 的历史线程与 HistorySync 的上传线程调用。
+ */
+final class HistoryStore {
+    private static final String TAG = "HistoryStore";
+    private static final String DB_NAME = "ocr-history.db";
+    private static final int DB_VERSION = 2;
+    // 列表中缩略图显示为 64dp 方块，长边 256 足够高分屏使用
+    private static final int THUMB_SIDE = 256;
+    private static final int THUMB_QUALITY = 80;
+    // 有图的行入队后先推迟这么久，缩略图写完即放行；进程在此期间退出时行按无图上传
+    private static final long THUMBNAIL_GRACE_MS = 60_000;
+
+    // sync_queue.kind
+    static final int SYNC_ROW = 0;
+    static final int SYNC_THUMBNAIL = 1;
+
+    static final class Record {
+        final long id;
+        final String text;
+        final String thumbnailPath;
+        final long createdAt;
+
+        Record(long id, String text, String thumbnailPath, long createdAt) {
+            this.id = id;
+            this.text = text;
+            this.thumbnailPath = thumbnailPath;
+            this.createdAt = createdAt;
+        }
+
+        JSONObject toJson() throws JSONException {
+            JSONObject json = new JSONObject();
+            json.put("id", id);
+            json.put("text", text);
+            json.put("thumbnailPath", thumbnailPath == null ? JSONObject.NULL : thumbnailPath);
+            json.put("createdAt", createdAt);
+            return json;
+        }
+    }
+
+    /** 一页结果；nextCursor 为 null 表示没有更多 */
+    static final class Page {
+        final List<Record> records;
+        final String nextCursor;
+
+        Page(List<Record> records, String nextCursor) {
+            this.records = records;
+            this.nextCursor = nextCursor;
+        }
+    }
+
+    /** 一项待上传的日志，连同它指向的记录 */
+    static final class SyncEntry {
+        final long queueId;
+        final int attempts;
+        final Record record;
+
+        SyncEntry(long queueId, int attempts, Record record) {
+            this.queueId = queueId;
+            this.attempts = attempts;
+            this.record = record;
+        }
+    }
+
+    private static final class Helper extends SQLiteOpenHelper {
+        Helper(Context context) {
+            super(context, DB_NAME, null, DB_VERSION);
+            setWriteAheadLoggingEnabled(true);
+        }
+
+        @Override
+        public void onCreate(SQLiteDatabase db) {
+            db.execSQL("CREATE TABLE history ("
+                    + "id INTEGER PRIMARY KEY AUTOINCREMENT, "
+                    + "text TEXT NOT NULL, "
+                    + "thumbnail TEXT, "
+                    + "created_at INTEGER NOT NULL)");
+            db.execSQL("CREATE INDEX history_created ON history (created_at DESC, id DESC)");
+            // docid 与 history.id 相同；prefix 索引让单字与短前缀查询不必扫描整个词表
+            db.execSQL("CREATE VIRTUAL TABLE history_fts USING fts4(tokens, tokenize=unicode61, prefix=\"1,2\")");
+            createSyncQueue(db);
+        }
+
+        @Override
+        public void onUpgrade(SQLiteDatabase db, int oldVersion, int newVersion) {
+            if (oldVersion < 2) {
+                createSyncQueue(db);
+                // 此前的记录从未上传过
+                db.execSQL("INSERT INTO sync_queue (record_id, kind) SELECT id, " + SYNC_ROW + " FROM history");
+                db.execSQL("INSERT INTO sync_queue (record_id, kind) SELECT id, " + SYNC_THUMBNAIL
+                        + " FROM history WHERE thumbnail IS NOT NULL");
+            }
+        }
+
+        private static void createSyncQueue(SQLiteDatabase db) {
+            db.execSQL("CREATE TABLE sync_queue ("
+                    + "id INTEGER PRIMARY KEY AUTOINCREMENT, "
+                    + "record_id INTEGER NOT NULL, "
+                    + "kind INTEGER NOT NULL, "
+                    + "attempts INTEGER NOT NULL DEFAULT 0, "
+                    + "next_attempt_at INTEGER NOT NULL DEFAULT 0, "
+                    + "UNIQUE (record_id, kind))");
+            db.execSQL("CREATE INDEX sync_queue_due ON sync_queue (kind, next_attempt_at)");
+        }
+    }
+
+    private final Context context;
+    private final Helper helper;
+    private final File thumbDir;
+
+    HistoryStore(Context context) {
+        this.context = context.getApplicationContext();
+        this.helper = new Helper(this.context);
+        this.thumbDir = new File(this.context.getFilesDir(), "history-thumbs");
+    }
+
+    /**
+     * 新增一条记录。image 为 data URL 或图片路径（content:// 、file:// 、绝对路径），可为 null；
+     * 缩略图生成失败只记日志，记录照常保存。
+     */
+    Record add(String text, String image, long createdAt) {
+        SQLiteDatabase db = helper.getWritableDatabase();
+        long id;
+        // 行与插入同一事务入上传日志；有图时先推迟，等缩略图路径写入后再放行，避免上传到缺 image_url 的行
+        db.beginTransaction();
+        try {
+            id = insert(db, text, createdAt);
+            enqueueSync(db, id, SYNC_ROW, image == null ? 0 : System.currentTimeMillis() + THUMBNAIL_GRACE_MS);
+            db.setTransactionSuccessful();
+        } finally {
+            db.endTransaction();
+        }
+        String thumbnail = image == null ? null : writeThumbnail(id, image);
+        if (image != null) {
+            db.beginTransaction();
+            try {
+                if (thumbnail != null) {
+                    setThumbnail(db, id, thumbnail);
+                    enqueueSync(db, id, SYNC_THUMBNAIL, 0);
+                }
+                releaseSync(db, id, SYNC_ROW);
+                db.setTransactionSuccessful();
+            } finally {
+                db.endTransaction();
+            }
+        }
+        return new Record(id, text, thumbnail, createdAt);
+    }
+
+    private static void enqueueSync(SQLiteDatabase db, long id, int kind, long notBefore) {
+        try (SQLiteStatement enqueue = db.compileStatement(
+                "INSERT OR IGNORE INTO sync_queue (record_id, kind, next_attempt_at) VALUES (?, ?, ?)")) {
+            enqueue.bindLong(1, id);
+            enqueue.bindLong(2, kind);
+            enqueue.bindLong(3, notBefore);
+            enqueue.executeInsert();
+        }
+    }
+
+    /** 取消尚未尝试过的上传项的推迟 */
+    private static void releaseSync(SQLiteDatabase db, long id, int kind) {
+        try (SQLiteStatement release = db.compileStatement(
+                "UPDATE sync_queue SET next_attempt_at = 0 WHERE record_id = ? AND kind = ? AND attempts = 0")) {
+            release.bindLong(1, id);
+            release.bindLong(2, kind);
+            release.executeUpdateDelete();
+        }
+    }
+
+    private static long insert(SQLiteDatabase db, String text, long createdAt) {
+        long id;
+        try (SQLiteStatement insert = db.compileStatement(
+                "INSERT INTO history (text, created_at) VALUES (?, ?)")) {
+            insert.bindString(1, text);
+            insert.bindLong(2, createdAt);
+            id = insert.executeInsert();
+        }
+        try (SQLiteStatement index = db.compileStatement(
+                "INSERT INTO history_fts (docid, tokens) VALUES (?, ?)")) {
+            index.bindLong(1, id);
+            index.bindString(2, HistoryTokenizer.index(text));
+            index.executeInsert();
+        }
+        return id;
+    }
+
+    private static void setThumbnail(SQLiteDatabase db, long id, String path) {
+        try (SQLiteStatement update = db.compileStatement("UPDATE history SET thumbnail = ? WHERE id = ?")) {
+            update.bindString(1, path);
+            update.bindLong(2, id);
+            update.executeUpdateDelete();
+        }
+    }
+
+    /**
+     * 分页查询，按时间倒序。query 为空时列出全部，否则按全文检索过滤（每个词都要命中，词按前缀匹配）。
+     * cursor 为上一页返回的 nextCursor，首页传 null。
+     */
+    Page query(String query, int limit, String cursor) {
+        StringBuilder sql = new StringBuilder("SELECT id, text, thumbnail, created_at FROM history");
+        List<String> args = new ArrayList<>();
+        List<String> where = new ArrayList<>();
+        String match = query == null ? null : HistoryTokenizer.query(query);
+        if (query != null && !query.trim().isEmpty() && match == null) {
+            // 只有标点等不可检索字符
+            return new Page(new ArrayList<Record>(), null);
+        }
+        if (match != null) {
+            where.add("id IN (SELECT docid FROM history_fts WHERE tokens MATCH ?)");
+            args.add(match);
+        }
+        if (cursor != null) {
+            long[] position = parseCursor(cursor);
+            where.add("(created_at < ? OR (created_at = ? AND id < ?))");
+            args.add(Long.toString(position[0]));
+            args.add(Long.toString(position[0]));
+            args.add(Long.toString(position[1]));
+        }
+        for (int i = 0; i < where.size(); i++) {
+            sql.append(i == 0 ? " WHERE " : " AND ").append(where.get(i));
+        }
+        // 多取一条判断是否还有下一页
+        sql.append(" ORDER BY created_at DESC, id DESC LIMIT ").append(limit + 1);
+
+        List<Record> records = new ArrayList<>(limit);
+        boolean more = false;
+        try (Cursor c = helper.getReadableDatabase().rawQuery(sql.toString(), args.toArray(new String[0]))) {
+            while (c.moveToNext()) {
+                if (records.size() == limit) {
+                    more = true;
+                    break;
+                }
+                records.add(new Record(c.getLong(0), c.getString(1), c.isNull(2) ? null : c.getString(2), c.getLong(3)));
+            }
+        }
+        String next = null;
+        if (more) {
+            Record last = records.get(records.size() - 1);
+            next = last.createdAt + ":" + last.id;
+        }
+        return new Page(records, next);
+    }
+
+    private static long[] parseCursor(String cursor) {
+        int sep = cursor.indexOf(':');
+        if (sep < 0) throw new IllegalArgumentException("Invalid cursor: " + cursor);
+        try {
+            return new long[]{Long.parseLong(cursor.substring(0, sep)), Long.parseLong(cursor.substring(sep + 1))};
+        } catch (NumberFormatException e) {
+            throw new IllegalArgumentException("Invalid cursor: " + cursor, e);
+        }
+    }
+
+    /** 批量删除，连同索引与缩略图；返回实际删除的条数 */
+    int delete(List<Long> ids) {
+        SQLiteDatabase db = helper.getWritableDatabase();
+        List<String> thumbnails = new ArrayList<>();
+        int deleted = 0;
+        db.beginTransaction();
+        try (SQLiteStatement select = db.compileStatement("SELECT COUNT(*) FROM history WHERE id = ?");
+             SQLiteStatement delete = db.compileStatement("DELETE FROM history WHERE id = ?");
+             SQLiteStatement unindex = db.compileStatement("DELETE FROM history_fts WHERE docid = ?");
+             SQLiteStatement unqueue = db.compileStatement("DELETE FROM sync_queue WHERE record_id = ?")) {
+            for (long id : ids) {
+                select.bindLong(1, id);
+                if (select.simpleQueryForLong() == 0) continue;
+                thumbnails.add(new File(thumbDir, id + ".jpg").getPath());
+                delete.bindLong(1, id);
+                deleted += delete.executeUpdateDelete();
+                unindex.bindLong(1, id);
+                unindex.executeUpdateDelete();
+                unqueue.bindLong(1, id);
+                unqueue.executeUpdateDelete();
+            }
+            db.setTransactionSuccessful();
+        } finally {
+            db.endTransaction();
+        }
+        // 文件在事务提交后再删，回滚时缩略图仍在
+        for (String path : thumbnails) {
+            File file = new File(path);
+            if (file.exists() && !file.delete()) Log.w(TAG, "failed to delete " + path);
+        }
+        return deleted;
+    }
+
+    /** 清空全部记录与缩略图，返回删除的条数 */
+    int clear() {
+        SQLiteDatabase db = helper.getWritableDatabase();
+        int deleted;
+        db.beginTransaction();
+        try {
+            deleted = db.delete("history", null, null);
+            db.execSQL("DELETE FROM history_fts");
+            db.execSQL("DELETE FROM sync_queue");
+            db.setTransactionSuccessful();
+        } finally {
+            db.endTransaction();
+        }
+        File[] files = thumbDir.listFiles();
+        if (files != null) {
+            for (File file : files) {
+                if (!file.delete()) Log.w(TAG, "failed to delete " + file);
+            }
+        }
+        return deleted;
+    }
+
+    /** 到期（next_attempt_at <= now）的上传项，按入队顺序 */
+    List<SyncEntry> dueSync(int kind, long now, int limit) {
+        List<SyncEntry> entries = new ArrayList<>(limit);
+        try (Cursor c = helper.getReadableDatabase().rawQuery(
+                "SELECT q.id, q.attempts, h.id, h.text, h.thumbnail, h.created_at"
+                        + " FROM sync_queue q JOIN history h ON h.id = q.record_id"
+                        + " WHERE q.kind = ? AND q.next_attempt_at <= ? ORDER BY q.id LIMIT ?",
+                new String[]{Integer.toString(kind), Long.toString(now), Integer.toString(limit)})) {
+            while (c.moveToNext()) {
+                Record record = new Record(c.getLong(2), c.getString(3), c.isNull(4) ? null : c.getString(4), c.getLong(5));
+                entries.add(new SyncEntry(c.getLong(0), c.getInt(1), record));
+            }
+        }
+        return entries;
+    }
+
+    /** 上传成功或放弃，移出日志 */
+    void completeSync(List<SyncEntry> entries) {
+        SQLiteDatabase db = helper.getWritableDatabase();
+        db.beginTransaction();
+        try (SQLiteStatement delete = db.compileStatement("DELETE FROM sync_queue WHERE id = ?")) {
+            for (SyncEntry entry : entries) {
+                delete.bindLong(1, entry.queueId);
+                delete.executeUpdateDelete();
+            }
+            db.setTransactionSuccessful();
+        } finally {
+            db.endTransaction();
+        }
+    }
+
+    /** 上传失败，记一次尝试并推迟到 nextAttemptAt */
+    void deferSync(List<SyncEntry> entries, long nextAttemptAt) {
+        SQLiteDatabase db = helper.getWritableDatabase();
+        db.beginTransaction();
+        try (SQLiteStatement update = db.compileStatement(
+                "UPDATE sync_queue SET attempts = attempts + 1, next_attempt_at = ? WHERE id = ?")) {
+            for (SyncEntry entry : entries) {
+                update.bindLong(1, nextAttemptAt);
+                update.bindLong(2, entry.queueId);
+                update.executeUpdateDelete();
+            }
+            db.setTransactionSuccessful();
+        } finally {
+            db.endTransaction();
+        }
+    }
+
+    int pendingSync(int kind) {
+        try (SQLiteStatement count = helper.getReadableDatabase().compileStatement(
+                "SELECT COUNT(*) FROM sync_queue WHERE kind = ?")) {
+            count.bindLong(1, kind);
+            return (int) count.simpleQueryForLong();
+        }
+    }
+
+    /** 最早的 next_attempt_at；没有待上传项时返回 -1 */
+    long nextSyncAt(int kind) {
+        try (SQLiteStatement next = helper.getReadableDatabase().compileStatement(
+                "SELECT IFNULL(MIN(next_attempt_at), -1) FROM sync_queue WHERE kind = ?")) {
+            next.bindLong(1, kind);
+            return next.simpleQueryForLong();
+        }
+    }
+
+    /** 等比缩小到长边 {@link #THUMB_SIDE} 后写成 JPEG，返回文件路径；失败返回 null */
+    private String writeThumbnail(long id, String image) {
+        Bitmap bitmap = null;
+        try {
+            bitmap = decodeThumbnail(context, image);
+            if (bitmap == null) return null;
+            if (!thumbDir.isDirectory() && !thumbDir.mkdirs()) throw new IOException("Cannot create " + thumbDir);
+            File file = new File(thumbDir, id + ".jpg");
+            try (OutputStream out = new FileOutputStream(file)) {
+                bitmap.compress(Bitmap.CompressFormat.JPEG, THUMB_QUALITY, out);
+            }
+            return file.getPath();
+        } catch (IOException | IllegalArgumentException e) {
+            Log.w(TAG, "thumbnail failed for record " + id, e);
+            return null;
+        } finally {
+            if (bitmap != null) bitmap.recycle();
+        }
+    }
+
+    private static Bitmap decodeThumbnail(Context context, String image) throws IOException {
+        byte[] data = null;
+        if (image.startsWith("data:")) {
+            int comma = image.indexOf(',');
+            if (comma < 0) throw new IllegalArgumentException("Invalid data URL");
+            data = Base64.decode(image.substring(comma + 1), Base64.DEFAULT);
+        }
+
+        BitmapFactory.Options options = new BitmapFactory.Options();
+        options.inJustDecodeBounds = true;
+        decode(context, image, data, options);
+        if (options.outWidth <= 0 || options.outHeight <= 0) return null;
+        // 先按 2 的幂下采样到不小于目标尺寸，再精确缩放
+        int sampleSize = 1;
+        while (Math.max(options.outWidth, options.outHeight) / (sampleSize * 2) >= THUMB_SIDE) {
+            sampleSize *= 2;
+        }
+        options.inJustDecodeBounds = false;
+        options.inSampleSize = sampleSize;
+        Bitmap decoded = decode(context, image, data, options);
+        if (decoded == null) return null;
+
+        float scale = (float) THUMB_SIDE / Math.max(decoded.getWidth(), decoded.getHeight());
+        if (scale >= 1f) return decoded;
+        Bitmap scaled = Bitmap.createScaledBitmap(decoded,
+                Math.max(1, Math.round(decoded.getWidth() * scale)),
+                Math.max(1, Math.round(decoded.getHeight() * scale)), true);
+        if (scaled != decoded) decoded.recycle();
+        return scaled;
+    }
+
+    private static Bitmap decode(Context context, String image, byte[] data, BitmapFactory.Options options)
+            throws IOException {
+        if (data != null) return BitmapFactory.decodeByteArray(data, 0, data.length, options);
+        try (InputStream in = ImageSource.open(context, image)) {
+            return BitmapFactory.decodeStream(in, null, options);
+        }
+    }
+}
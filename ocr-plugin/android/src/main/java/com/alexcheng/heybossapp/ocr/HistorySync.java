@@ -0,0 +1,418 @@
+package com.alexcheng.heybossapp.ocr;
+
+import android.content.Context;
+import android.content.SharedPreferences;
+import android.util.Log;
+
+import com.getcapacitor.JSObject;
+
+import org.json.JSONArray;
+import org.json.JSONException;
+import org.json.JSONObject;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.HttpURLConnection;
+import java.net.URL;
+import java.nio.charset.Charset;
+import java.text.SimpleDateFormat;
+import java.util.List;
+import java.util.Locale;
+import java.util.Random;
+import java.util.TimeZone;
+import java.util.UUID;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * 把 {@link HistoryStore} 上传日志中的记录同步到 Supabase（PostgREST + Storage）。
+ *
+ * 行通道：第一条记录入队后等 {@link #COALESCE_MS} 再上传，期间的记录合并成一次批量 INSERT，
+ * 攒够 {@link #BATCH_SIZE} 条立即上传。请求体可选 gzip（默认关闭，PostgREST 不解压请求体）；
+ * 开启后服务端以 400/415 拒绝时改发未压缩的 JSON 并在本次配置内不再压缩，不因编码问题丢弃记录。
+ * 缩略图通道：令牌桶限速，桶满才唤醒一次，一次连传一整桶，不为每张缩略图单独起一次网络。
+ * 只在登录后启用：每个请求都带用户的访问令牌，行写入 user_id，缩略图放在私有 bucket 的用户目录下；
+ * 行里的 image_url 是按记录 id 确定的需鉴权的对象地址，不等缩略图上传完成。
+ * 失败按指数退避（带抖动）重试。其余 4xx 视为请求内容有误：批量插入对半拆开重传，
+ * 只把服务端确实拒绝的单行隔离（按最长退避推迟，计入 quarantined），其他行照常写入；记录都不会被丢弃。
+ *
+ * 服务地址由 JS 通过 configureHistorySync 传入，测试时可指向本地的 HTTP 替身。
+ */
+final class HistorySync {
+    private static final String TAG = "HistorySync";
+    static final String DEFAULT_TABLE = "6807108f7e14d9f5d6dbf8a3_history";
+    static final String DEFAULT_BUCKET = "history-thumbnails";
+    private static final String PREFS = "ocr-history-sync";
+    private static final Charset UTF_8 = Charset.forName("UTF-8");
+
+    private static final int BATCH_SIZE = 50;
+    private static final long COALESCE_MS = 60_000;
+    // 退避：30 s 起翻倍，最长 1 h，±20% 抖动
+    private static final long BACKOFF_BASE_MS = 30_000;
+    private static final long BACKOFF_MAX_MS = 3_600_000;
+    // 缩略图：桶容量 8 张，每 10 s 补一张
+    private static final int THUMB_BURST = 8;
+    private static final long THUMB_INTERVAL_MS = 10_000;
+    private static final int TIMEOUT_MS = 15_000;
+
+    private enum Outcome {
+        SENT,
+        // 可重试的失败，已按退避推迟
+        DEFERRED,
+        // 服务端认为请求内容有误，日志未改动
+        REJECTED
+    }
+
+    static final class Config {
+        final String url;
+        final String apiKey;
+        final String accessToken;
+        final String userId;
+        final String table;
+        final String bucket;
+        final boolean compress;
+
+        Config(String url, String apiKey, String accessToken, String userId, String table, String bucket,
+               boolean compress) {
+            this.url = url.endsWith("/") ? url.substring(0, url.length() - 1) : url;
+            this.apiKey = apiKey;
+            this.accessToken = accessToken;
+            this.userId = userId;
+            this.table = table;
+            this.bucket = bucket;
+            this.compress = compress;
+        }
+    }
+
+    private final HistoryStore store;
+    private final String installId;
+    private final ScheduledExecutorService executor = Executors.newSingleThreadScheduledExecutor();
+    private final Random random = new Random();
+    private final SimpleDateFormat isoFormat = new SimpleDateFormat("yyyy-MM-dd'T'HH:mm:ss.SSS'Z'", Locale.US);
+
+    private volatile Config config;
+
+    // 以下字段只在 executor 线程写
+    private double thumbTokens = THUMB_BURST;
+    private long thumbRefilledAt = System.currentTimeMillis();
+    private volatile int uploadedRecords;
+    private volatile int uploadedThumbnails;
+    private volatile int batches;
+    private volatile int dropped;
+    private volatile int quarantined;
+    private volatile String lastError;
+    // 服务端拒绝过 gzip 请求体；重新 configure 时清除
+    private volatile boolean gzipRejected;
+
+    // 由 this 监视器保护
+    private ScheduledFuture<?> scheduled;
+    private long scheduledAt;
+
+    HistorySync(Context context, HistoryStore store) {
+        this.store = store;
+        this.installId = installId(context);
+        isoFormat.setTimeZone(TimeZone.getTimeZone("UTC"));
+    }
+
+    /** 缩略图在用户目录下再按安装区分，不同设备的记录 id 不会互相覆盖 */
+    private static String installId(Context context) {
+        SharedPreferences prefs = context.getSharedPreferences(PREFS, Context.MODE_PRIVATE);
+        String id = prefs.getString("installId", null);
+        if (id == null) {
+            id = UUID.randomUUID().toString();
+            prefs.edit().putString("installId", id).apply();
+        }
+        return id;
+    }
+
+    /** 设置或更新服务地址与登录凭据（如令牌刷新后），并立即上传积压的记录 */
+    void configure(Config config) {
+        this.config = config;
+        gzipRejected = false;
+        schedule(0);
+    }
+
+    /** 新记录已写入日志 */
+    void onRecordAdded() {
+        if (config == null) return;
+        schedule(store.pendingSync(HistoryStore.SYNC_ROW) >= BATCH_SIZE ? 0 : COALESCE_MS);
+    }
+
+    /** 忽略合并等待与退避时间，立即上传一轮，完成后在上传线程回调 done */
+    void flush(final Runnable done) {
+        executor.execute(() -> {
+            // 手动同步不受退避约束：把未到期的项视为到期
+            drain(Long.MAX_VALUE);
+            done.run();
+        });
+    }
+
+    void shutdown() {
+        // 日志在库中，未完成的上传下次启动继续
+        executor.shutdownNow();
+    }
+
+    JSObject status() {
+        JSObject status = new JSObject();
+        status.put("configured", config != null);
+        status.put("pendingRecords", store.pendingSync(HistoryStore.SYNC_ROW));
+        status.put("pendingThumbnails", store.pendingSync(HistoryStore.SYNC_THUMBNAIL));
+        status.put("uploadedRecords", uploadedRecords);
+        status.put("uploadedThumbnails", uploadedThumbnails);
+        status.put("batches", batches);
+        status.put("dropped", dropped);
+        status.put("quarantined", quarantined);
+        status.put("lastError", lastError);
+        status.put("compress", config != null && config.compress && !gzipRejected);
+        return status;
+    }
+
+    /** 在 delayMs 后上传；已有更早的计划时保留原计划 */
+    private synchronized void schedule(long delayMs) {
+        long at = System.currentTimeMillis() + delayMs;
+        if (scheduled != null && !scheduled.isDone() && scheduledAt <= at) return;
+        if (scheduled != null) scheduled.cancel(false);
+        scheduledAt = at;
+        scheduled = executor.schedule(() -> drain(System.currentTimeMillis()), delayMs, TimeUnit.MILLISECONDS);
+    }
+
+    /** 只在 executor 线程执行；上传 next_attempt_at <= due 的项，然后安排下一轮 */
+    private void drain(long due) {
+        synchronized (this) {
+            if (scheduled != null) scheduled.cancel(false);
+            scheduled = null;
+        }
+        Config config = this.config;
+        if (config == null) return;
+        try {
+            drainRows(config, due);
+            drainThumbnails(config, due);
+            scheduleNext();
+        } catch (RuntimeException e) {
+            // 数据库异常；不再自动安排，等下一条记录或手动同步
+            Log.e(TAG, "sync failed", e);
+            lastError = e.toString();
+        }
+    }
+
+    private void drainRows(Config config, long due) {
+        while (!Thread.currentThread().isInterrupted()) {
+            List<HistoryStore.SyncEntry> batch = store.dueSync(HistoryStore.SYNC_ROW, due, BATCH_SIZE);
+            if (batch.isEmpty()) return;
+            if (!uploadRows(config, batch)) return;
+        }
+    }
+
+    /** 上传一批行，返回本轮是否继续；被拒时对半拆开分别重传，直到定位到被拒的单行 */
+    private boolean uploadRows(Config config, List<HistoryStore.SyncEntry> rows) {
+        byte[] body;
+        try {
+            body = rowsJson(config, rows).getBytes(UTF_8);
+        } catch (JSONException e) {
+            throw new IllegalStateException(e);
+        }
+        switch (send(rows, config, config.url + "/rest/v1/" + config.table, "application/json", body,
+                config.compress && !gzipRejected, "Prefer", "return=minimal")) {
+            case SENT:
+                batches++;
+                uploadedRecords += rows.size();
+                return true;
+            case DEFERRED:
+                return false;
+            default:
+                if (rows.size() == 1) {
+                    quarantine(rows);
+                    return true;
+                }
+                int half = rows.size() / 2;
+                return uploadRows(config, rows.subList(0, half))
+                        && uploadRows(config, rows.subList(half, rows.size()));
+        }
+    }
+
+    private String rowsJson(Config config, List<HistoryStore.SyncEntry> batch) throws JSONException {
+        JSONArray rows = new JSONArray();
+        for (HistoryStore.SyncEntry entry : batch) {
+            HistoryStore.Record record = entry.record;
+            // PostgREST 批量插入要求每行的键相同
+            JSONObject row = new JSONObject();
+            row.put("user_id", config.userId);
+            row.put("image_url", record.thumbnailPath == null ? JSONObject.NULL
+                    : config.url + "/storage/v1/object/authenticated/" + config.bucket + "/" + objectPath(config, record));
+            row.put("text_content", record.text);
+            row.put("created_at", isoFormat.format(record.createdAt));
+            rows.put(row);
+        }
+        return rows.toString();
+    }
+
+    /** 首级目录为用户 id，供 Storage 的行级策略限定只有本人可读写 */
+    private String objectPath(Config config, HistoryStore.Record record) {
+        return config.userId + "/" + installId + "/" + record.id + ".jpg";
+    }
+
+    private void drainThumbnails(Config config, long due) {
+        refillTokens();
+        while (thumbTokens >= 1 && !Thread.currentThread().isInterrupted()) {
+            List<HistoryStore.SyncEntry> next = store.dueSync(HistoryStore.SYNC_THUMBNAIL, due, 1);
+            if (next.isEmpty()) return;
+            HistoryStore.Record record = next.get(0).record;
+            byte[] data;
+            try {
+                data = readFully(new File(record.thumbnailPath));
+            } catch (IOException e) {
+                Log.w(TAG, "thumbnail missing for record " + record.id, e);
+                store.completeSync(next);
+                dropped++;
+                continue;
+            }
+            thumbTokens -= 1;
+            Outcome outcome = send(next, config,
+                    config.url + "/storage/v1/object/" + config.bucket + "/" + objectPath(config, record),
+                    "image/jpeg", data, false, "x-upsert", "true");
+            if (outcome == Outcome.DEFERRED) return;
+            if (outcome == Outcome.REJECTED) {
+                quarantine(next);
+                continue;
+            }
+            uploadedThumbnails++;
+        }
+    }
+
+    private void refillTokens() {
+        long now = System.currentTimeMillis();
+        thumbTokens = Math.min(THUMB_BURST, thumbTokens + (double) (now - thumbRefilledAt) / THUMB_INTERVAL_MS);
+        thumbRefilledAt = now;
+    }
+
+    private void scheduleNext() {
+        long now = System.currentTimeMillis();
+        long next = store.nextSyncAt(HistoryStore.SYNC_ROW);
+        long thumbs = store.nextSyncAt(HistoryStore.SYNC_THUMBNAIL);
+        if (thumbs >= 0) {
+            // 等桶重新装满再唤醒，缩略图成批上传
+            refillTokens();
+            long full = now + (long) Math.ceil((THUMB_BURST - thumbTokens) * THUMB_INTERVAL_MS);
+            thumbs = Math.max(thumbs, full);
+            next = next < 0 ? thumbs : Math.min(next, thumbs);
+        }
+        if (next >= 0) schedule(Math.max(0, next - now));
+    }
+
+    /**
+     * 发送一个请求；成功时移出日志，可重试的失败按退避推迟这些项（本轮该通道停止），
+     * 请求内容被拒时不改动日志，由调用方拆分或隔离。
+     */
+    private Outcome send(List<HistoryStore.SyncEntry> entries, Config config, String url, String contentType,
+                         byte[] body, boolean gzip, String... headers) {
+        int status;
+        String error;
+        try {
+            HttpURLConnection connection = (HttpURLConnection) new URL(url).openConnection();
+            connection.setConnectTimeout(TIMEOUT_MS);
+            connection.setReadTimeout(TIMEOUT_MS);
+            connection.setRequestMethod("POST");
+            connection.setDoOutput(true);
+            connection.setRequestProperty("apikey", config.apiKey);
+            connection.setRequestProperty("Authorization", "Bearer " + config.accessToken);
+            connection.setRequestProperty("Content-Type", contentType);
+            for (int i = 0; i + 1 < headers.length; i += 2) {
+                connection.setRequestProperty(headers[i], headers[i + 1]);
+            }
+            byte[] payload = body;
+            if (gzip) {
+                payload = gzip(body);
+                connection.setRequestProperty("Content-Encoding", "gzip");
+            }
+            connection.setFixedLengthStreamingMode(payload.length);
+            try (OutputStream out = connection.getOutputStream()) {
+                out.write(payload);
+            }
+            status = connection.getResponseCode();
+            // 读完响应体再关闭，同一轮的后续请求复用连接
+            error = readResponse(connection, status);
+        } catch (IOException e) {
+            return retryLater(entries, e.toString());
+        }
+        if (status >= 200 && status < 300) {
+            store.completeSync(entries);
+            return Outcome.SENT;
+        }
+        String message = "HTTP " + status + (error.isEmpty() ? "" : ": " + error);
+        if (gzip && (status == 400 || status == 415)) {
+            // 服务端不解压请求体：改发未压缩的同一批，不算请求有误
+            Log.w(TAG, "gzip body rejected, falling back to plain JSON: " + message);
+            gzipRejected = true;
+            return send(entries, config, url, contentType, body, false, headers);
+        }
+        if (status == 408 || status == 429 || status >= 500 || status == 401 || status == 403 || status == 404) {
+            // 401/403 可能是令牌过期，404 是表或 bucket 配置有误，等 JS 重新 configure 后重试
+            return retryLater(entries, message);
+        }
+        Log.w(TAG, "request rejected for " + entries.size() + " entries: " + message);
+        lastError = message;
+        return Outcome.REJECTED;
+    }
+
+    /** 被拒的单项留在日志中按最长退避推迟，到期或手动同步时再试 */
+    private void quarantine(List<HistoryStore.SyncEntry> entries) {
+        store.deferSync(entries, System.currentTimeMillis() + BACKOFF_MAX_MS);
+        quarantined += entries.size();
+        Log.w(TAG, "quarantined record " + entries.get(0).record.id + ": " + lastError);
+    }
+
+    private Outcome retryLater(List<HistoryStore.SyncEntry> entries, String error) {
+        int attempts = 0;
+        for (HistoryStore.SyncEntry entry : entries) attempts = Math.max(attempts, entry.attempts);
+        long delay = Math.min(BACKOFF_MAX_MS, BACKOFF_BASE_MS << Math.min(attempts, 16));
+        delay = (long) (delay * (0.8 + 0.4 * random.nextDouble()));
+        store.deferSync(entries, System.currentTimeMillis() + delay);
+        Log.w(TAG, "sync failed, retry in " + delay + " ms: " + error);
+        lastError = error;
+        return Outcome.DEFERRED;
+    }
+
+    /** 读完响应体；失败时返回截断后的错误信息，成功时返回空串 */
+    private static String readResponse(HttpURLConnection connection, int status) throws IOException {
+        InputStream in = status >= 400 ? connection.getErrorStream() : connection.getInputStream();
+        if (in == null) return "";
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        try {
+            copy(in, out);
+        } finally {
+            in.close();
+        }
+        if (status < 400) return "";
+        String text = new String(out.toByteArray(), UTF_8);
+        return text.length() > 200 ? text.substring(0, 200) : text;
+    }
+
+    private static byte[] gzip(byte[] data) throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream(data.length / 4 + 64);
+        try (GZIPOutputStream zip = new GZIPOutputStream(out)) {
+            zip.write(data);
+        }
+        return out.toByteArray();
+    }
+
+    private static byte[] readFully(File file) throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream((int) file.length());
+        try (InputStream in = new FileInputStream(file)) {
+            copy(in, out);
+        }
+        return out.toByteArray();
+    }
+
+    private static void copy(InputStream in, OutputStream out) throws IOException {
+        byte[] buffer = new byte[8192];
+        int n;
+        while ((n = in.read(buffer)) > 0) out.write(buffer, 0, n);
+    }
+}
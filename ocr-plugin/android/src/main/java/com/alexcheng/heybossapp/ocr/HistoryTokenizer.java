@@ -0,0 +1,125 @@
+package com.alexcheng.heybossapp.ocr;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+
+/**
+ * 历史记录全文检索的分词，建索引与查询共用。
+ *
+ * FTS 自带的分词器把连续的汉字当成一个词，搜不到句子中间的字；这里在 Java 侧切好词元再交给 FTS：
+ * 字母与数字按词切分并转小写；CJK（汉字、假名、谚文）连续段切成重叠的二元组，段尾再补一个单字。
+ * 这样每个字都是某个词元的首字，单字查询用前缀 "字*" 即可命中，多字查询用相邻二元组组成的短语。
+ */
+final class HistoryTokenizer {
+    // 查询词元上限，防止粘贴整段文字时生成过长的 MATCH 表达式
+    private static final int MAX_QUERY_TERMS = 32;
+
+    private HistoryTokenizer() {
+    }
+
+    /** 索引用的词元，以空格分隔 */
+    static String index(String text) {
+        StringBuilder out = new StringBuilder(text.length() * 3);
+        for (Segment segment : segments(text)) {
+            if (!segment.cjk) {
+                append(out, segment.text);
+                continue;
+            }
+            int[] cps = codePoints(segment.text);
+            for (int i = 0; i + 1 < cps.length; i++) {
+                append(out, new String(cps, i, 2));
+            }
+            append(out, new String(cps, cps.length - 1, 1));
+        }
+        return out.toString();
+    }
+
+    /** 用户输入转成 FTS MATCH 表达式，各部分之间为 AND；没有可检索的字符时返回 null */
+    static String query(String input) {
+        List<String> terms = new ArrayList<>();
+        for (Segment segment : segments(input)) {
+            if (terms.size() >= MAX_QUERY_TERMS) break;
+            if (!segment.cjk) {
+                // 最后输入的词可能没打完，所有词都按前缀匹配
+                terms.add(segment.text + "*");
+                continue;
+            }
+            int[] cps = codePoints(segment.text);
+            if (cps.length == 1) {
+                terms.add(segment.text + "*");
+                continue;
+            }
+            StringBuilder phrase = new StringBuilder("\"");
+            for (int i = 0; i + 1 < cps.length; i++) {
+                if (i > 0) phrase.append(' ');
+                phrase.append(new String(cps, i, 2));
+            }
+            terms.add(phrase.append('"').toString());
+        }
+        if (terms.isEmpty()) return null;
+        StringBuilder match = new StringBuilder();
+        for (String term : terms) {
+            if (match.length() > 0) match.append(' ');
+            match.append(term);
+        }
+        return match.toString();
+    }
+
+    private static final class Segment {
+        final String text;
+        final boolean cjk;
+
+        Segment(String text, boolean cjk) {
+            this.text = text;
+            this.cjk = cjk;
+        }
+    }
+
+    /** 切成字母数字词与 CJK 连续段，其余字符（标点、空白、符号）作为分隔 */
+    private static List<Segment> segments(String text) {
+        List<Segment> segments = new ArrayList<>();
+        int start = -1;
+        boolean cjk = false;
+        int i = 0;
+        while (i <= text.length()) {
+            int cp = i < text.length() ? text.codePointAt(i) : ' ';
+            boolean isCjk = isCjk(cp);
+            boolean isWord = isCjk || Character.isLetterOrDigit(cp);
+            if (start >= 0 && (!isWord || isCjk != cjk)) {
+                String segment = text.substring(start, i);
+                segments.add(new Segment(cjk ? segment : segment.toLowerCase(Locale.ROOT), cjk));
+                start = -1;
+            }
+            if (isWord && start < 0) {
+                start = i;
+                cjk = isCjk;
+            }
+            i += Character.charCount(cp);
+        }
+        return segments;
+    }
+
+    private static boolean isCjk(int cp) {
+        return (cp >= 0x3040 && cp <= 0x30FF)      // 平假名、片假名
+                || (cp >= 0x3400 && cp <= 0x4DBF)   // 扩展 A
+                || (cp >= 0x4E00 && cp <= 0x9FFF)   // 基本汉字
+                || (cp >= 0xAC00 && cp <= 0xD7AF)   // 谚文音节
+                || (cp >= 0xF900 && cp <= 0xFAFF)   // 兼容汉字
+                || (cp >= 0x20000 && cp <= 0x2FA1F); // 扩展 B 及以后
+    }
+
+    private static int[] codePoints(String text) {
+        int[] cps = new int[text.codePointCount(0, text.length())];
+        for (int i = 0, k = 0; i < text.length(); k++) {
+            cps[k] = text.codePointAt(i);
+            i += Character.charCount(cps[k]);
+        }
+        return cps;
+    }
+
+    private static void append(StringBuilder out, String token) {
+        if (out.length() > 0) out.append(' ');
+        out.append(token);
+    }
+}
@@ -0,0 +1,127 @@
+package com.alexcheng.heybossapp.ocr;
+
+import android.content.Context;
+import android.graphics.Bitmap;
+import android.graphics.BitmapFactory;
+import android.graphics.Canvas;
+import android.graphics.Matrix;
+import android.media.ExifInterface;
+import android.net.Uri;
+import android.os.Build;
+
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+
+/**
+ * 在原生侧按路径解码图片，避免大图以 base64 字符串穿过 JS 桥。
+ * 支持 content:// 、file:// 与普通文件路径；按最长边下采样并校正 EXIF 方向。
+ * 解码与旋转的目标位图都取自 {@link BufferPool}，用完后由调用方 release 回池。
+ */
+final class ImageSource {
+    // 检测按长边 960 缩放或分块，识别裁剪也用不到更高分辨率；限制最长边控制内存
+    static final int MAX_SIDE = 2560;
+
+    final Bitmap bitmap;
+    /** 原图坐标 = 解码后坐标 × scale */
+    final float scale;
+
+    private ImageSource(Bitmap bitmap, float scale) {
+        this.bitmap = bitmap;
+        this.scale = scale;
+    }
+
+    static ImageSource decode(Context context, String path) throws IOException {
+        BitmapFactory.Options bounds = new BitmapFactory.Options();
+        bounds.inJustDecodeBounds = true;
+        try (InputStream in = open(context, path)) {
+            BitmapFactory.decodeStream(in, null, bounds);
+        }
+        if (bounds.outWidth <= 0 || bounds.outHeight <= 0) {
+            throw new IOException("Unsupported image: " + path);
+        }
+
+        int sampleSize = 1;
+        while (Math.max(bounds.outWidth, bounds.outHeight) / sampleSize > MAX_SIDE) {
+            sampleSize *= 2;
+        }
+        BufferPool pool = BufferPool.get();
+        BitmapFactory.Options options = new BitmapFactory.Options();
+        options.inSampleSize = sampleSize;
+        options.inPreferredConfig = Bitmap.Config.ARGB_8888;
+        options.inMutable = true;
+        // 下采样后的尺寸各解码器取整方式不同，按向上取整申请，容量只会多不会少
+        options.inBitmap = pool.acquireBitmap(
+                (bounds.outWidth + sampleSize - 1) / sampleSize, (bounds.outHeight + sampleSize - 1) / sampleSize);
+        Bitmap bitmap;
+        try {
+            bitmap = decodeStream(context, path, options);
+        } catch (IllegalArgumentException e) {
+            // 个别格式（如部分 WebP / HEIF）不支持 inBitmap，改为新分配
+            pool.release(options.inBitmap);
+            options.inBitmap = null;
+            bitmap = decodeStream(context, path, options);
+        }
+        if (bitmap == null) {
+            pool.release(options.inBitmap);
+            throw new IOException("Failed to decode image: " + path);
+        }
+        float scale = (float) bounds.outWidth / bitmap.getWidth();
+
+        int degrees = orientationDegrees(context, path);
+        if (degrees != 0) {
+            Bitmap rotated = rotate(pool, bitmap, degrees);
+            pool.release(bitmap);
+            bitmap = rotated;
+        }
+        return new ImageSource(bitmap, scale);
+    }
+
+    private static Bitmap decodeStream(Context context, String path, BitmapFactory.Options options) throws IOException {
+        try (InputStream in = open(context, path)) {
+            return BitmapFactory.decodeStream(in, null, options);
+        }
+    }
+
+    /** 只有 90° 的整数倍，像素一一对应，不需要插值 */
+    private static Bitmap rotate(BufferPool pool, Bitmap source, int degrees) {
+        int w = source.getWidth();
+        int h = source.getHeight();
+        boolean swap = degrees == 90 || degrees == 270;
+        Bitmap rotated = pool.acquireBitmap(swap ? h : w, swap ? w : h);
+        Matrix matrix = new Matrix();
+        matrix.postRotate(degrees);
+        // 旋转后平移回第一象限
+        if (degrees == 90) matrix.postTranslate(h, 0);
+        else if (degrees == 180) matrix.postTranslate(w, h);
+        else matrix.postTranslate(0, w);
+        new Canvas(rotated).drawBitmap(source, matrix, null);
+        return rotated;
+    }
+
+    static InputStream open(Context context, String path) throws IOException {
+        if (path.startsWith("content://") || path.startsWith("file://")) {
+            InputStream in = context.getContentResolver().openInputStream(Uri.parse(path));
+            if (in == null) throw new IOException("Cannot open " + path);
+            return in;
+        }
+        return new FileInputStream(path);
+    }
+
+    /** ExifInterface(InputStream) 需要 API 24，更低版本不做方向校正 */
+    private static int orientationDegrees(Context context, String path) {
+        if (Build.VERSION.SDK_INT < Build.VERSION_CODES.N) return 0;
+        try (InputStream in = open(context, path)) {
+            int orientation = new ExifInterface(in)
+                    .getAttributeInt(ExifInterface.TAG_ORIENTATION, ExifInterface.ORIENTATION_NORMAL);
+            switch (orientation) {
+                case ExifInterface.ORIENTATION_ROTATE_90: return 90;
+                case ExifInterface.ORIENTATION_ROTATE_180: return 180;
+                case ExifInterface.ORIENTATION_ROTATE_270: return 270;
+                default: return 0;
+            }
+        } catch (IOException e) {
+            return 0;
+        }
+    }
+}
@@ -0,0 +1,48 @@
+package com.alexcheng.heybossapp.ocr;
+
+import android.graphics.Bitmap;
+
+import org.json.JSONArray;
+import org.json.JSONObject;
+
+/**
+ * 宿主 App 提供的 OCR 引擎入口。
+ * 插件模块本身不依赖 Paddle Lite，由 App 启动时通过 {@link OcrPlugin#setEngineBridge} 注入。
+ */
+public interface OcrEngineBridge {
+
+    interface RecognitionCallback {
+        /** lines 每项为 { text, confidence, box: [[x, y] × 4] }，坐标基于传入的 bitmap */
+        void onResult(JSONArray lines);
+
+        void onError(Exception error);
+    }
+
+    /** 持有一次引用：引用存在期间模型保持常驻 */
+    void acquire();
+
+    /** 释放引用：引用归零后开始空闲计时，超时卸载模型 */
+    void release();
+
+    /**
+     * 覆盖模型运行配置。model 为 det / cls / rec / all；
+     * threads <= 0 且 powerMode 为 null 时清除覆盖，恢复自动调优结果。
+     */
+    void setModelConfig(String model, int threads, String powerMode);
+
+    /** 各模型当前生效的线程数、PowerMode 及来源（override / tuned / default） */
+    JSONObject getModelConfig();
+
+    /** 各阶段耗时分位数（毫秒）、计数器与缓存命中情况 */
+    JSONObject getMetrics();
+
+    /** 清零耗时直方图与计数器 */
+    void resetMetrics();
+
+    /**
+     * 异步识别一张图。像素在调用时读取，返回后 bitmap 即可回收；
+     * 按 job 的优先级调度，同优先级的队列已满时阻塞调用线程，回调在引擎工作线程执行。
+     * job 取消后回调收到 CancellationException。
+     */
+    void recognize(Bitmap bitmap, OcrJob job, RecognitionCallback callback) throws InterruptedException;
+}
@@ -0,0 +1,56 @@
+package com.alexcheng.heybossapp.ocr;
+
+import java.util.concurrent.CancellationException;
+
+/**
+ * 一次识别任务的优先级与取消标记。
+ *
+ * 引擎按优先级调度：悬浮球截屏 > 单张上传 > 批量 / PDF，高优先级任务在每个阶段都先于低优先级执行。
+ * 同一任务可以包含多帧（批量图片、PDF 各页、增量识别的各条带），共用一个取消标记；
+ * 取消后尚未开始的阶段直接跳过，进行中的阶段在下一个分块或裁剪之前停止，回调收到 CancellationException。
+ * 已知文本都是正向的任务（屏幕截图）可标记为 upright，跳过方向分类，也不加载分类模型。
+ */
+public final class OcrJob {
+
+    /** 声明顺序即调度顺序 */
+    public enum Priority {
+        INTERACTIVE,
+        UPLOAD,
+        BATCH
+    }
+
+    private final Priority priority;
+    private volatile boolean cancelled;
+    private volatile boolean upright;
+
+    public OcrJob(Priority priority) {
+        this.priority = priority;
+    }
+
+    public Priority getPriority() {
+        return priority;
+    }
+
+    /** 在提交之前设置 */
+    public OcrJob setUpright(boolean upright) {
+        this.upright = upright;
+        return this;
+    }
+
+    public boolean isUpright() {
+        return upright;
+    }
+
+    public void cancel() {
+        cancelled = true;
+    }
+
+    public boolean isCancelled() {
+        return cancelled;
+    }
+
+    /** 在阶段之间、分块与裁剪之间调用 */
+    public void throwIfCancelled() {
+        if (cancelled) throw new CancellationException("OCR job cancelled");
+    }
+}
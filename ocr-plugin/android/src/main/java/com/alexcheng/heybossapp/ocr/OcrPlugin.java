@@ -4,15 +4,76 @@ import android.content.Intent;
 import android.net.Uri;
 import android.os.Build;
 import android.provider.Settings;
+import android.text.TextUtils;
 
+import com.getcapacitor.JSArray;
 import com.getcapacitor.JSObject;
 import com.getcapacitor.Plugin;
 import com.getcapacitor.PluginCall;
 import com.getcapacitor.PluginMethod;
 import com.getcapacitor.annotation.CapacitorPlugin;
 
+import org.json.JSONArray;
+import org.json.JSONException;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.atomic.AtomicInteger;
+
 @CapacitorPlugin(name = "OCRPlugin")
 public class OcrPlugin extends Plugin {
+    // 每个优先级同时在引擎中的图片数；一张在检测、一张在识别即可让各阶段都不空闲（同 PdfOcrSession）
+    private static final int IN_FLIGHT = 2;
+
+    private static volatile OcrEngineBridge engineBridge;
+
+    private OcrEngineBridge heldEngine;
+
+    // 解码与提交按优先级各用一个线程，同优先级按提交顺序串行；引擎繁忙时在这里阻塞，不占用插件调用线程。
+    // 引擎按优先级分道反压：批量的解码线程阻塞在已满的批量队列上时，单张识别仍在自己的线程上解码并立即入队
+    private final ExecutorService[] decodeExecutors = newDecodeExecutors();
+    // 解码前取许可、识别回调时归还：一张解码后的帧最大约 20 MB，引擎队列里的帧数不能只靠队列容量限制
+    private final Semaphore[] inFlight = newInFlightPermits();
+
+    // 调用方传入 jobId 的任务，供 cancelRecognition 取消
+    private final Map<String, OcrJob> jobs = new ConcurrentHashMap<>();
+
+    // 历史记录的数据库与缩略图 IO 串行在此线程，不阻塞识别与插件调用线程
+    private final ExecutorService historyExecutor = Executors.newSingleThreadExecutor();
+    private HistoryStore historyStore;
+    private HistorySync historySync;
+
+    /** 由宿主 App 在 BridgeActivity 加载插件之前调用 */
+    public static void setEngineBridge(OcrEngineBridge bridge) {
+        engineBridge = bridge;
+    }
+
+    @Override
+    public void load() {
+        // 插件存活期间持有引擎引用，避免每次调用重新加载模型
+        heldEngine = engineBridge;
+        if (heldEngine != null) heldEngine.acquire();
+    }
+
+    @Override
+    protected void handleOnDestroy() {
+        for (ExecutorService executor : decodeExecutors) executor.shutdownNow();
+        historyExecutor.execute(() -> {
+            if (historySync != null) historySync.shutdown();
+        });
+        historyExecutor.shutdown();
+        if (heldEngine != null) {
+            heldEngine.release();
+            heldEngine = null;
+        }
+    }
 
     @PluginMethod
     public void toggleFloatingBall(PluginCall call) {
@@ -47,4 +108,511 @@ public class OcrPlugin extends Plugin {
         result.put("enabled", enable);
         call.resolve(result);
     }
+
+    /**
+     * 覆盖 Paddle Lite 运行配置
+     * calls: OCRPlugin.setEngineConfig({ model: 'det'|'cls'|'rec'|'all', threads?, powerMode? })
+     */
+    @PluginMethod
+    public void setEngineConfig(PluginCall call) {
+        OcrEngineBridge engine = engineBridge;
+        if (engine == null) {
+            call.reject("OCR engine not available");
+            return;
+        }
+        String model = call.getString("model", "all");
+        int threads = call.getInt("threads", 0);
+        String powerMode = call.getString("powerMode");
+        try {
+            engine.setModelConfig(model, threads, powerMode);
+        } catch (IllegalArgumentException e) {
+            call.reject("Invalid engine config: " + e.getMessage(), e);
+            return;
+        }
+        resolveModelConfig(call, engine);
+    }
+
+    @PluginMethod
+    public void getEngineConfig(PluginCall call) {
+        OcrEngineBridge engine = engineBridge;
+        if (engine == null) {
+            call.reject("OCR engine not available");
+            return;
+        }
+        resolveModelConfig(call, engine);
+    }
+
+    /**
+     * 性能指标
+     * calls: OCRPlugin.getOcrMetrics() -> { sinceMs, stages: { detRun: { count, p50Ms, ... } }, counters, cache }
+     */
+    @PluginMethod
+    public void getOcrMetrics(PluginCall call) {
+        OcrEngineBridge engine = engineBridge;
+        if (engine == null) {
+            call.reject("OCR engine not available");
+            return;
+        }
+        try {
+            call.resolve(JSObject.fromJSONObject(engine.getMetrics()));
+        } catch (JSONException e) {
+            call.reject("Failed to read metrics", e);
+        }
+    }
+
+    @PluginMethod
+    public void resetOcrMetrics(PluginCall call) {
+        OcrEngineBridge engine = engineBridge;
+        if (engine == null) {
+            call.reject("OCR engine not available");
+            return;
+        }
+        engine.resetMetrics();
+        call.resolve();
+    }
+
+    private void resolveModelConfig(PluginCall call, OcrEngineBridge engine) {
+        try {
+            call.resolve(JSObject.fromJSONObject(engine.getModelConfig()));
+        } catch (JSONException e) {
+            call.reject("Failed to read engine config", e);
+        }
+    }
+
+    /**
+     * 取消 recognize / recognizeBatch 中以同一 jobId 发起的任务。
+     * 未开始的图片不再解码，识别中的在下一个阶段或批次之前中止，对应调用以 CANCELLED 拒绝（批量为逐项 error）。
+     * calls: OCRPlugin.cancelRecognition({ jobId }) -> { cancelled }
+     */
+    @PluginMethod
+    public void cancelRecognition(PluginCall call) {
+        String jobId = call.getString("jobId");
+        if (jobId == null) {
+            call.reject("Must provide a jobId");
+            return;
+        }
+        OcrJob job = jobs.remove(jobId);
+        if (job != null) job.cancel();
+        JSObject result = new JSObject();
+        result.put("cancelled", job != null);
+        call.resolve(result);
+    }
+
+    /** 新建任务；带 jobId 时登记，完成后由 {@link #finishJob} 移除。classifyAngle 为 false 时跳过方向分类 */
+    private OcrJob startJob(PluginCall call, OcrJob.Priority priority) {
+        OcrJob job = new OcrJob(priority).setUpright(!call.getBoolean("classifyAngle", true));
+        String jobId = call.getString("jobId");
+        if (jobId != null) {
+            OcrJob previous = jobs.put(jobId, job);
+            // 复用 jobId 视为放弃旧任务
+            if (previous != null) previous.cancel();
+        }
+        return job;
+    }
+
+    private void finishJob(PluginCall call, OcrJob job) {
+        String jobId = call.getString("jobId");
+        if (jobId != null) jobs.remove(jobId, job);
+    }
+
+    private void decode(OcrJob job, Runnable task) {
+        decodeExecutors[job.getPriority().ordinal()].execute(task);
+    }
+
+    /** 每个优先级一个线程，首次提交时创建 */
+    private static ExecutorService[] newDecodeExecutors() {
+        OcrJob.Priority[] priorities = OcrJob.Priority.values();
+        ExecutorService[] executors = new ExecutorService[priorities.length];
+        for (OcrJob.Priority priority : priorities) {
+            final String name = "ocr-decode-" + priority.name().toLowerCase(Locale.ROOT);
+            executors[priority.ordinal()] = Executors.newSingleThreadExecutor(r -> new Thread(r, name));
+        }
+        return executors;
+    }
+
+    private static Semaphore[] newInFlightPermits() {
+        Semaphore[] permits = new Semaphore[OcrJob.Priority.values().length];
+        for (int i = 0; i < permits.length; i++) permits[i] = new Semaphore(IN_FLIGHT);
+        return permits;
+    }
+
+    /**
+     * 识别单张图片，图片在原生侧按路径解码；优先级高于批量识别与 PDF。
+     * 传入 jobId 时可用 cancelRecognition 取消。
+     * calls: OCRPlugin.recognize({ path: 'content://...' | 'file://...' | '/sdcard/...', jobId?, classifyAngle? })
+     */
+    @PluginMethod
+    public void recognize(final PluginCall call) {
+        final OcrEngineBridge engine = engineBridge;
+        if (engine == null) {
+            call.reject("OCR engine not available");
+            return;
+        }
+        final String path = call.getString("path");
+        if (path == null) {
+            call.reject("Must provide a path");
+            return;
+        }
+        final OcrJob job = startJob(call, OcrJob.Priority.UPLOAD);
+        decode(job, () -> recognizePath(engine, path, job, new ItemCallback() {
+            @Override
+            public void onResult(JSObject result) {
+                finishJob(call, job);
+                call.resolve(result);
+            }
+
+            @Override
+            public void onError(Exception error) {
+                finishJob(call, job);
+                if (error instanceof CancellationException) {
+                    call.reject("Recognition cancelled", "CANCELLED");
+                } else {
+                    call.reject("Recognition failed: " + error.getMessage(), error);
+                }
+            }
+        }));
+    }
+
+    /**
+     * 批量识别：逐张解码并送入引擎流水线，每完成一张触发 recognizeProgress 事件，
+     * 全部完成后按输入顺序返回；单张失败只记录在对应项的 error 中。
+     * 以批量优先级执行，整批共用一个任务，传入 jobId 时可整批取消（已完成的项保留结果）。
+     * calls: OCRPlugin.recognizeBatch({ paths: [...], jobId?, classifyAngle? })
+     */
+    @PluginMethod
+    public void recognizeBatch(final PluginCall call) {
+        final OcrEngineBridge engine = engineBridge;
+        if (engine == null) {
+            call.reject("OCR engine not available");
+            return;
+        }
+        final List<String> paths;
+        try {
+            JSArray array = call.getArray("paths");
+            if (array == null) {
+                call.reject("Must provide paths");
+                return;
+            }
+            paths = array.toList();
+        } catch (JSONException e) {
+            call.reject("Invalid paths", e);
+            return;
+        }
+
+        final int total = paths.size();
+        final JSObject[] items = new JSObject[total];
+        final AtomicInteger completed = new AtomicInteger();
+        if (total == 0) {
+            JSObject empty = new JSObject();
+            empty.put("results", new JSArray());
+            call.resolve(empty);
+            return;
+        }
+
+        final OcrJob job = startJob(call, OcrJob.Priority.BATCH);
+        for (int i = 0; i < total; i++) {
+            final int index = i;
+            final String path = paths.get(i);
+            decode(job, () -> recognizePath(engine, path, job, new ItemCallback() {
+                @Override
+                public void onResult(JSObject result) {
+                    JSObject item = new JSObject();
+                    item.put("index", index);
+                    item.put("path", path);
+                    item.put("result", result);
+                    finish(item, null);
+                }
+
+                @Override
+                public void onError(Exception error) {
+                    JSObject item = new JSObject();
+                    item.put("index", index);
+                    item.put("path", path);
+                    item.put("error", String.valueOf(error.getMessage()));
+                    finish(item, error.getMessage());
+                }
+
+                private void finish(JSObject item, String error) {
+                    items[index] = item;
+                    int done = completed.incrementAndGet();
+
+                    JSObject progress = new JSObject();
+                    progress.put("index", index);
+                    progress.put("path", path);
+                    progress.put("completed", done);
+                    progress.put("total", total);
+                    if (error != null) progress.put("error", error);
+                    notifyListeners("recognizeProgress", progress);
+
+                    if (done == total) {
+                        finishJob(call, job);
+                        JSArray results = new JSArray();
+                        for (JSObject entry : items) results.put(entry);
+                        JSObject response = new JSObject();
+                        response.put("results", results);
+                        call.resolve(response);
+                    }
+                }
+            }));
+        }
+    }
+
+    private interface ItemCallback {
+        void onResult(JSObject result);
+
+        void onError(Exception error);
+    }
+
+    /**
+     * 在本优先级的解码线程上执行：等到本优先级在引擎中的图片少于 {@link #IN_FLIGHT} 张 → 解码 → 提交引擎 → 回收位图；
+     * 结果换算回原图坐标
+     */
+    private void recognizePath(OcrEngineBridge engine, String path, OcrJob job, final ItemCallback itemCallback) {
+        final Semaphore permits = inFlight[job.getPriority().ordinal()];
+        try {
+            permits.acquire();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            itemCallback.onError(e);
+            return;
+        }
+        // 每条路径恰好回调一次，回调时归还许可
+        final ItemCallback callback = new ItemCallback() {
+            @Override
+            public void onResult(JSObject result) {
+                permits.release();
+                itemCallback.onResult(result);
+            }
+
+            @Override
+            public void onError(Exception error) {
+                permits.release();
+                itemCallback.onError(error);
+            }
+        };
+        if (job.isCancelled()) {
+            callback.onError(new CancellationException("OCR job cancelled"));
+            return;
+        }
+        final ImageSource image;
+        try {
+            image = ImageSource.decode(getContext(), path);
+        } catch (Exception e) {
+            callback.onError(e);
+            return;
+        }
+        final int width = Math.round(image.bitmap.getWidth() * image.scale);
+        final int height = Math.round(image.bitmap.getHeight() * image.scale);
+        try {
+            engine.recognize(image.bitmap, job, new OcrEngineBridge.RecognitionCallback() {
+                @Override
+                public void onResult(JSONArray lines) {
+                    try {
+                        callback.onResult(toResult(lines, image.scale, width, height));
+                    } catch (JSONException e) {
+                        callback.onError(e);
+                    }
+                }
+
+                @Override
+                public void onError(Exception error) {
+                    callback.onError(error);
+                }
+            });
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            callback.onError(e);
+        } finally {
+            BufferPool.get().release(image.bitmap);
+        }
+    }
+
+    /** 只在 historyExecutor 上调用 */
+    private HistoryStore history() {
+        if (historyStore == null) historyStore = new HistoryStore(getContext());
+        return historyStore;
+    }
+
+    /** 只在 historyExecutor 上调用 */
+    private HistorySync historySync() {
+        if (historySync == null) historySync = new HistorySync(getContext(), history());
+        return historySync;
+    }
+
+    /**
+     * 保存一条识别历史；image 可为 data URL 或图片路径，原生侧生成缩略图文件
+     * calls: OCRPlugin.addHistoryRecord({ text, image?, createdAt? }) -> { record }
+     */
+    @PluginMethod
+    public void addHistoryRecord(final PluginCall call) {
+        final String text = call.getString("text");
+        if (text == null) {
+            call.reject("Must provide text");
+            return;
+        }
+        final String image = call.getString("image");
+        final long createdAt = call.getLong("createdAt", System.currentTimeMillis());
+        historyExecutor.execute(() -> {
+            try {
+                JSObject result = new JSObject();
+                result.put("record", history().add(text, image, createdAt).toJson());
+                call.resolve(result);
+                historySync().onRecordAdded();
+            } catch (JSONException | RuntimeException e) {
+                call.reject("Failed to save history", e);
+            }
+        });
+    }
+
+    /**
+     * 按时间倒序分页；query 非空时全文检索（中日韩按字、其他按词前缀匹配）
+     * calls: OCRPlugin.queryHistory({ query?, limit?, cursor? }) -> { records, nextCursor }
+     */
+    @PluginMethod
+    public void queryHistory(final PluginCall call) {
+        final String query = call.getString("query");
+        final int limit = Math.max(1, Math.min(100, call.getInt("limit", 20)));
+        final String cursor = call.getString("cursor");
+        historyExecutor.execute(() -> {
+            try {
+                HistoryStore.Page page = history().query(query, limit, cursor);
+                JSArray records = new JSArray();
+                for (HistoryStore.Record record : page.records) records.put(record.toJson());
+                JSObject result = new JSObject();
+                result.put("records", records);
+                result.put("nextCursor", page.nextCursor);
+                call.resolve(result);
+            } catch (IllegalArgumentException e) {
+                call.reject(e.getMessage(), e);
+            } catch (JSONException | RuntimeException e) {
+                call.reject("Failed to query history", e);
+            }
+        });
+    }
+
+    /**
+     * 批量删除历史记录及其缩略图
+     * calls: OCRPlugin.deleteHistoryRecords({ ids: [...] }) -> { deleted }
+     */
+    @PluginMethod
+    public void deleteHistoryRecords(final PluginCall call) {
+        final List<Long> ids = new ArrayList<>();
+        try {
+            JSArray array = call.getArray("ids");
+            if (array == null) {
+                call.reject("Must provide ids");
+                return;
+            }
+            for (int i = 0; i < array.length(); i++) ids.add(array.getLong(i));
+        } catch (JSONException e) {
+            call.reject("Invalid ids", e);
+            return;
+        }
+        historyExecutor.execute(() -> {
+            try {
+                JSObject result = new JSObject();
+                result.put("deleted", history().delete(ids));
+                call.resolve(result);
+            } catch (RuntimeException e) {
+                call.reject("Failed to delete history", e);
+            }
+        });
+    }
+
+    @PluginMethod
+    public void clearHistory(final PluginCall call) {
+        historyExecutor.execute(() -> {
+            try {
+                JSObject result = new JSObject();
+                result.put("deleted", history().clear());
+                call.resolve(result);
+            } catch (RuntimeException e) {
+                call.reject("Failed to clear history", e);
+            }
+        });
+    }
+
+    /**
+     * 登录后设置历史上传的 Supabase 地址与用户凭据；可重复调用（如令牌刷新后）。未登录时不上传
+     * calls: OCRPlugin.configureHistorySync({ url, apiKey, accessToken, userId, table?, bucket?, compress? })
+     */
+    @PluginMethod
+    public void configureHistorySync(final PluginCall call) {
+        String url = call.getString("url");
+        String apiKey = call.getString("apiKey");
+        String accessToken = call.getString("accessToken");
+        String userId = call.getString("userId");
+        if (url == null || apiKey == null) {
+            call.reject("Must provide url and apiKey");
+            return;
+        }
+        if (accessToken == null || userId == null) {
+            // 只用 anon key 上传会把记录写成无主的公开数据
+            call.reject("History sync requires a signed-in session (accessToken and userId)");
+            return;
+        }
+        final HistorySync.Config config = new HistorySync.Config(url, apiKey, accessToken, userId,
+                call.getString("table", HistorySync.DEFAULT_TABLE),
+                call.getString("bucket", HistorySync.DEFAULT_BUCKET),
+                call.getBoolean("compress", false));
+        historyExecutor.execute(() -> {
+            try {
+                historySync().configure(config);
+                call.resolve(historySync().status());
+            } catch (RuntimeException e) {
+                call.reject("Failed to configure history sync", e);
+            }
+        });
+    }
+
+    /**
+     * 立即上传积压的历史（忽略合并等待与退避），完成一轮后返回同步状态
+     * calls: OCRPlugin.syncHistory() -> { pendingRecords, uploadedRecords, ... }
+     */
+    @PluginMethod
+    public void syncHistory(final PluginCall call) {
+        historyExecutor.execute(() -> {
+            try {
+                final HistorySync sync = historySync();
+                sync.flush(() -> call.resolve(sync.status()));
+            } catch (RuntimeException e) {
+                call.reject("Failed to sync history", e);
+            }
+        });
+    }
+
+    @PluginMethod
+    public void getHistorySyncStatus(final PluginCall call) {
+        historyExecutor.execute(() -> {
+            try {
+                call.resolve(historySync().status());
+            } catch (RuntimeException e) {
+                call.reject("Failed to read history sync status", e);
+            }
+        });
+    }
+
+    private static JSObject toResult(JSONArray lines, float scale, int width, int height) throws JSONException {
+        String[] texts = new String[lines.length()];
+        JSArray outLines = new JSArray();
+        for (int i = 0; i < lines.length(); i++) {
+            JSObject line = JSObject.fromJSONObject(lines.getJSONObject(i));
+            texts[i] = line.getString("text");
+            if (scale != 1f) {
+                JSONArray box = line.getJSONArray("box");
+                for (int k = 0; k < box.length(); k++) {
+                    JSONArray point = box.getJSONArray(k);
+                    point.put(0, point.getDouble(0) * scale);
+                    point.put(1, point.getDouble(1) * scale);
+                }
+            }
+            outLines.put(line);
+        }
+        JSObject result = new JSObject();
+        result.put("text", TextUtils.join("\n", texts));
+        result.put("lines", outLines);
+        result.put("width", width);
+        result.put("height", height);
+        return result;
+    }
 }
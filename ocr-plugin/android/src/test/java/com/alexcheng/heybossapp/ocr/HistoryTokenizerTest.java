@@ -0,0 +1,65 @@
+package com.alexcheng.heybossapp.ocr;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.Test;
+
+public class HistoryTokenizerTest {
+
+    @Test
+    public void cjkRunsBecomeOverlappingBigramsPlusTrailingChar() {
+        assertEquals("你好 好世 世界 界", HistoryTokenizer.index("你好世界"));
+        assertEquals("猫", HistoryTokenizer.index("猫"));
+    }
+
+    @Test
+    public void wordsAreLowercasedAndSplitOnPunctuation() {
+        assertEquals("hello world 2024", HistoryTokenizer.index("Hello, World 2024"));
+        assertEquals("", HistoryTokenizer.index("  ...  "));
+    }
+
+    @Test
+    public void scriptChangeSplitsSegments() {
+        assertEquals("abc 你好 好 def", HistoryTokenizer.index("abc你好def"));
+        assertEquals("ocr 识别 别测 测试 试", HistoryTokenizer.index("OCR识别测试"));
+        assertEquals("カタ タカ カナ ナ", HistoryTokenizer.index("カタカナ"));
+    }
+
+    @Test
+    public void supplementaryCharactersStayWhole() {
+        assertEquals("𠀀𠀁 𠀁 x", HistoryTokenizer.index("𠀀𠀁x"));
+    }
+
+    @Test
+    public void queryUsesPrefixTermsAndBigramPhrases() {
+        assertEquals("hello* world*", HistoryTokenizer.query("Hello world"));
+        assertEquals("猫*", HistoryTokenizer.query("猫"));
+        assertEquals("ocr* \"识别 别测 测试\"", HistoryTokenizer.query("OCR识别测试"));
+    }
+
+    @Test
+    public void everyIndexedCharIsReachableBySingleCharQuery() {
+        // 单字查询 "世*" 要能命中 "世界" 这个词元
+        String tokens = " " + HistoryTokenizer.index("你好世界") + " ";
+        String term = HistoryTokenizer.query("世");
+        assertEquals("世*", term);
+        assertTrue(tokens.contains(" 世"));
+    }
+
+    @Test
+    public void queryWithoutSearchableCharsIsNull() {
+        assertNull(HistoryTokenizer.query(""));
+        assertNull(HistoryTokenizer.query(" ,.!? "));
+    }
+
+    @Test
+    public void queryIsCappedAtThirtyTwoTerms() {
+        StringBuilder input = new StringBuilder();
+        for (int i = 0; i < 40; i++) input.append('w').append(i).append(' ');
+        String[] terms = HistoryTokenizer.query(input.toString()).split(" ");
+        assertEquals(32, terms.length);
+        assertEquals("w31*", terms[31]);
+    }
+}
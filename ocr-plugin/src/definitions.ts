@@ -1,3 +1,282 @@
+import type { PluginListenerHandle } from '@capacitor/core';
+
+export type OcrModel = 'det' | 'cls' | 'rec';
+
+export type OcrPowerMode =
+  | 'LITE_POWER_HIGH'
+  | 'LITE_POWER_LOW'
+  | 'LITE_POWER_FULL'
+  | 'LITE_POWER_NO_BIND'
+  | 'LITE_POWER_RAND_HIGH'
+  | 'LITE_POWER_RAND_LOW';
+
+export interface OcrModelRuntime {
+  threads: number;
+  powerMode: OcrPowerMode;
+  /** override：JS 覆盖；tuned：本机计时试验结果；default：按大核数推算 */
+  source: 'override' | 'tuned' | 'default';
+}
+
+export interface OcrEngineConfig {
+  bigCores: number;
+  totalCores: number;
+  det: OcrModelRuntime;
+  cls: OcrModelRuntime;
+  rec: OcrModelRuntime;
+}
+
+export interface OcrTextLine {
+  text: string;
+  /** 逐字置信度均值，0~1 */
+  confidence: number;
+  /** 原图坐标下的四个顶点：左上、右上、右下、左下 */
+  box: [number, number][];
+}
+
+export interface OcrRecognizeResult {
+  /** 按阅读顺序以换行拼接的全文 */
+  text: string;
+  lines: OcrTextLine[];
+  width: number;
+  height: number;
+}
+
+export interface OcrBatchItem {
+  index: number;
+  path: string;
+  result?: OcrRecognizeResult;
+  error?: string;
+}
+
+export interface OcrRecognizeProgress {
+  index: number;
+  path: string;
+  completed: number;
+  total: number;
+  error?: string;
+}
+
+export type OcrMetricStage =
+  | 'assetLoad'
+  | 'modelInit'
+  | 'preprocess'
+  | 'detRun'
+  | 'detPost'
+  | 'cls'
+  | 'recRun'
+  | 'decode'
+  | 'total';
+
+export interface OcrStageMetrics {
+  count: number;
+  meanMs: number;
+  p50Ms: number;
+  p95Ms: number;
+  p99Ms: number;
+  maxMs: number;
+}
+
+export interface OcrCacheStats {
+  memoryHits: number;
+  diskHits: number;
+  misses: number;
+  memoryEntries: number;
+}
+
+/** 原生 BufferPool：解码位图、像素数组与张量缓冲的复用池 */
+export interface OcrBufferPoolStats {
+  budgetBytes: number;
+  pooledBytes: number;
+  bitmaps: number;
+  intArrays: number;
+  floatArrays: number;
+  directBuffers: number;
+  hits: number;
+  misses: number;
+  evictions: number;
+  /** 单个对象超过预算、未入池 */
+  rejected: number;
+}
+
+/** 分类或识别的预测器实例池 */
+export interface OcrPredictorPoolStats {
+  /** 设备大核数（最多 4） */
+  capacity: number;
+  /** 当前可同时使用的实例数，过热或内存紧张时降低 */
+  limit: number;
+  loaded: number;
+  busy: number;
+}
+
+/** 内存调控：等级由系统内存通知决定，持续一分钟没有新通知后恢复 NORMAL */
+export interface OcrMemoryStats {
+  level: 'NORMAL' | 'LOW' | 'CRITICAL';
+  lowRamDevice: boolean;
+  /** 应用堆上限（MB） */
+  memoryClassMb: number;
+  /** 单帧（截屏、检测输入）字节预算，0 为不限 */
+  frameBudgetBytes: number;
+  /** 当前检测输入长边上限 */
+  detLimitSide: number;
+  /** 等级变化次数 */
+  changes: number;
+  /** 最近几次变化各方释放的内容（新的在前），如 frameCacheEvicted、bufferPoolBytes、predictorReleased、captureWidth */
+  recent: Array<{ level: string; reason: string; at: number } & Record<string, number | boolean | string>>;
+}
+
+export interface OcrMetrics {
+  /** 距上次 reset（或进程启动）的毫秒数 */
+  sinceMs: number;
+  /** 尚未执行过的阶段不出现 */
+  stages: Partial<Record<OcrMetricStage, OcrStageMetrics>>;
+  counters: {
+    frames: number;
+    frameCacheHits: number;
+    detBoxes: number;
+    clsCrops: number;
+    /** 未经方向分类的裁剪（任务标记为正向，或近似方形） */
+    clsSkipped: number;
+    recCrops: number;
+    recCacheHits: number;
+    /** 取消或被新截屏取代的帧 */
+    framesCancelled: number;
+    bytesCopied: number;
+    /** 不经缓冲池的分配（模型输出数组） */
+    bytesAllocated: number;
+  };
+  cache: { frame: OcrCacheStats; rec: OcrCacheStats };
+  pool: OcrBufferPoolStats;
+  /** 当前已加载的模型，各阶段首次使用时才加载 */
+  loadedModels: OcrModel[];
+  /** 模型未加载时缺省 */
+  predictorPool?: { cls: OcrPredictorPoolStats; rec: OcrPredictorPoolStats };
+  memory?: OcrMemoryStats;
+}
+
+/** 本地识别历史中的一条记录；thumbnailPath 为缩略图的本地文件路径，可用 Capacitor.convertFileSrc 显示 */
+export interface OcrHistoryRecord {
+  id: number;
+  text: string;
+  thumbnailPath: string | null;
+  /** 毫秒时间戳 */
+  createdAt: number;
+}
+
+/** 历史查询的一页结果；nextCursor 为 null 表示没有更多 */
+export interface OcrHistoryPage {
+  records: OcrHistoryRecord[];
+  nextCursor: string | null;
+}
+
+export interface OcrHistorySyncConfig {
+  /** Supabase 项目地址；测试时可指向本地 HTTP 替身 */
+  url: string;
+  apiKey: string;
+  /** 登录用户的访问令牌；未登录时不能开启同步 */
+  accessToken: string;
+  /** 登录用户的 id，写入每行的 user_id，也是缩略图所在目录 */
+  userId: string;
+  /** 默认 6807108f7e14d9f5d6dbf8a3_history */
+  table?: string;
+  /** 存放缩略图的私有 Storage bucket（按用户目录鉴权读取），默认 history-thumbnails */
+  bucket?: string;
+  /**
+   * 批量插入的请求体是否 gzip（Content-Encoding: gzip），默认 false：Supabase 的 PostgREST 不解压请求体。
+   * 只在网关支持时开启；服务端以 400/415 拒绝时自动改发未压缩的 JSON，记录不会被丢弃
+   */
+  compress?: boolean;
+}
+
+export interface OcrHistorySyncStatus {
+  configured: boolean;
+  pendingRecords: number;
+  pendingThumbnails: number;
+  /** 以下计数自插件加载起累计 */
+  uploadedRecords: number;
+  uploadedThumbnails: number;
+  batches: number;
+  /** 本地缩略图文件已不存在而放弃上传的缩略图 */
+  dropped: number;
+  /** 被服务端拒绝（400、409、422 等）而隔离的项：留在队列中按最长退避重试，同批的其他行照常上传 */
+  quarantined: number;
+  lastError: string | null;
+  /** 行上传当前是否 gzip（已配置开启且服务端未拒绝） */
+  compress: boolean;
+}
+
 export interface OcrPluginPlugin {
   echo(options: { value: string }): Promise<{ value: string }>;
+
+  toggleFloatingBall(options: { enable: boolean }): Promise<{ enabled: boolean }>;
+
+  /**
+   * 覆盖 Paddle Lite 线程数 / PowerMode，下次加载模型时生效。
+   * 不传 threads 与 powerMode 时清除覆盖，恢复自动调优结果。
+   */
+  setEngineConfig(options: {
+    model?: OcrModel | 'all';
+    threads?: number;
+    powerMode?: OcrPowerMode;
+  }): Promise<OcrEngineConfig>;
+
+  getEngineConfig(): Promise<OcrEngineConfig>;
+
+  /** 各阶段耗时分位数与计数器 */
+  getOcrMetrics(): Promise<OcrMetrics>;
+
+  resetOcrMetrics(): Promise<void>;
+
+  /**
+   * 原生解码并识别图片，图片不经 base64 穿过 JS 桥。
+   * path 支持 content:// 、file:// 与绝对文件路径（如 Camera 插件返回的 photo.path）。
+   * 优先级高于批量识别；传入 jobId 时可用 cancelRecognition 取消，取消后以 code 'CANCELLED' 拒绝。
+   * 已知图片中文字都是正向时传 classifyAngle: false，跳过 180° 方向分类（默认 true）。
+   */
+  recognize(options: { path: string; jobId?: string; classifyAngle?: boolean }): Promise<OcrRecognizeResult>;
+
+  /**
+   * 批量识别，每完成一张触发 recognizeProgress；结果按输入顺序返回。
+   * 取消后未完成的项 error 为取消原因，已完成的项保留结果。
+   */
+  recognizeBatch(options: {
+    paths: string[];
+    jobId?: string;
+    classifyAngle?: boolean;
+  }): Promise<{ results: OcrBatchItem[] }>;
+
+  /** 取消以该 jobId 发起的识别；任务已结束或不存在时 cancelled 为 false */
+  cancelRecognition(options: { jobId: string }): Promise<{ cancelled: boolean }>;
+
+  /**
+   * 写入一条识别历史。image 为 data URL 或图片路径，原生侧生成缩略图文件，原图不保存。
+   * createdAt 默认为当前时间。
+   */
+  addHistoryRecord(options: { text: string; image?: string; createdAt?: number }): Promise<{ record: OcrHistoryRecord }>;
+
+  /**
+   * 按时间倒序分页查询历史。query 非空时全文检索（中日韩文字按字匹配，字母数字按词前缀匹配）。
+   * limit 为 1~100，默认 20；cursor 传上一页的 nextCursor。
+   */
+  queryHistory(options: { query?: string; limit?: number; cursor?: string }): Promise<OcrHistoryPage>;
+
+  /** 批量删除，返回实际删除的条数 */
+  deleteHistoryRecords(options: { ids: number[] }): Promise<{ deleted: number }>;
+
+  clearHistory(): Promise<{ deleted: number }>;
+
+  /**
+   * 登录后配置历史上传（需要用户会话，未登录时不上传）。本地记录先进上传日志，合并成批量插入后上传，缩略图走单独的限速通道，
+   * 失败按指数退避重试；可重复调用以更新令牌。
+   */
+  configureHistorySync(options: OcrHistorySyncConfig): Promise<OcrHistorySyncStatus>;
+
+  /** 立即上传一轮积压的历史，忽略合并等待与退避 */
+  syncHistory(): Promise<OcrHistorySyncStatus>;
+
+  getHistorySyncStatus(): Promise<OcrHistorySyncStatus>;
+
+  addListener(
+    eventName: 'recognizeProgress',
+    listenerFunc: (event: OcrRecognizeProgress) => void,
+  ): Promise<PluginListenerHandle>;
 }
@@ -2,9 +2,10 @@ import { registerPlugin } from '@capacitor/core';
 
 import type { OcrPluginPlugin } from './definitions';
 
-const OcrPlugin = registerPlugin<OcrPluginPlugin>('OcrPlugin', {
+// 名称需与原生 @CapacitorPlugin(name = "OCRPlugin") 一致
+const OcrPlugin = registerPlugin<OcrPluginPlugin>('OCRPlugin', {
   web: () => import('./web').then((m) => new m.OcrPluginWeb()),
 });
 
 export * from './definitions';
-export { OcrPlugin };
+export { OcrPlugin, OcrPlugin as OCRPlugin };
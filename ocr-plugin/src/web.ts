@@ -1,10 +1,79 @@
 import { WebPlugin } from '@capacitor/core';
 
-import type { OcrPluginPlugin } from './definitions';
+import type {
+  OcrBatchItem,
+  OcrEngineConfig,
+  OcrHistoryPage,
+  OcrHistoryRecord,
+  OcrHistorySyncStatus,
+  OcrMetrics,
+  OcrPluginPlugin,
+  OcrRecognizeResult,
+} from './definitions';
 
 export class OcrPluginWeb extends WebPlugin implements OcrPluginPlugin {
   async echo(options: { value: string }): Promise<{ value: string }> {
     console.log('ECHO', options);
     return options;
   }
+
+  async toggleFloatingBall(): Promise<{ enabled: boolean }> {
+    throw this.unimplemented('Not implemented on web.');
+  }
+
+  async setEngineConfig(): Promise<OcrEngineConfig> {
+    throw this.unimplemented('Not implemented on web.');
+  }
+
+  async getEngineConfig(): Promise<OcrEngineConfig> {
+    throw this.unimplemented('Not implemented on web.');
+  }
+
+  async getOcrMetrics(): Promise<OcrMetrics> {
+    throw this.unimplemented('Not implemented on web.');
+  }
+
+  async resetOcrMetrics(): Promise<void> {
+    throw this.unimplemented('Not implemented on web.');
+  }
+
+  async cancelRecognition(): Promise<{ cancelled: boolean }> {
+    throw this.unimplemented('Not implemented on web.');
+  }
+
+  async recognize(): Promise<OcrRecognizeResult> {
+    throw this.unimplemented('Not implemented on web.');
+  }
+
+  async recognizeBatch(): Promise<{ results: OcrBatchItem[] }> {
+    throw this.unimplemented('Not implemented on web.');
+  }
+
+  async addHistoryRecord(): Promise<{ record: OcrHistoryRecord }> {
+    throw this.unimplemented('Not implemented on web.');
+  }
+
+  async queryHistory(): Promise<OcrHistoryPage> {
+    throw this.unimplemented('Not implemented on web.');
+  }
+
+  async deleteHistoryRecords(): Promise<{ deleted: number }> {
+    throw this.unimplemented('Not implemented on web.');
+  }
+
+  async clearHistory(): Promise<{ deleted: number }> {
+    throw this.unimplemented('Not implemented on web.');
+  }
+
+  async configureHistorySync(): Promise<OcrHistorySyncStatus> {
+    throw this.unimplemented('Not implemented on web.');
+  }
+
+  async syncHistory(): Promise<OcrHistorySyncStatus> {
+    throw this.unimplemented('Not implemented on web.');
+  }
+
+  async getHistorySyncStatus(): Promise<OcrHistorySyncStatus> {
+    throw this.unimplemented('Not implemented on web.');
+  }
 }
@@ -12,6 +12,8 @@ import OfflineModePage from './pages/OfflineModePage';
 import { ThemeProvider } from './context/ThemeContext';
 import CropPage        from './pages/CropPage';
 import PdfResult       from './pages/PdfResult.jsx';
+import './utils/pdfStream';
+import { onNativeFrame } from './utils/nativeChannel';
 
 // ✅ 包裹整个 App 的监听器组件
 const PDFListener = ({ children }) => {
@@ -19,20 +21,17 @@ const PDFListener = ({ children }) => {
   const location = useLocation();
 
   useEffect(() => {
-    const handlePDF = (event) => {
-      const pdfUri = event.detail?.uri;
-      if (pdfUri) {
-        console.log("📄 Received PDF from native Android:", pdfUri);
+    const handlePDF = (frame) => {
+      if (frame.k !== "start") return;
+      console.log("📄 Received PDF from native Android:", frame.s);
 
-        // 避免重复跳转
-        if (!location.pathname.startsWith("/pdf-result")) {
-          navigate(`/pdf-result?file=${encodeURIComponent(pdfUri)}`);
-        }
+      // 原生端逐页识别，结果页从 pdfStream 读取；避免重复跳转
+      if (!location.pathname.startsWith("/pdf-result")) {
+        navigate("/pdf-result", { state: { streaming: true } });
       }
     };
 
-    window.addEventListener("pdfReceived", handlePDF);
-    return () => window.removeEventListener("pdfReceived", handlePDF);
+    return onNativeFrame(handlePDF);
   }, [navigate, location]);
 
   return children;
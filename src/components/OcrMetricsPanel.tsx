@@ -0,0 +1,117 @@
+import React, { useCallback, useEffect, useState } from "react";
+import { Capacitor } from "@capacitor/core";
+import { OCRPlugin } from "ocr-plugin";
+import type { OcrMetrics, OcrMetricStage } from "ocr-plugin";
+
+const STAGES: { key: OcrMetricStage; label: string }[] = [
+  { key: "assetLoad", label: "模型解压" },
+  { key: "modelInit", label: "模型初始化" },
+  { key: "preprocess", label: "预处理" },
+  { key: "detRun", label: "检测推理" },
+  { key: "detPost", label: "检测后处理" },
+  { key: "cls", label: "方向分类" },
+  { key: "recRun", label: "识别推理" },
+  { key: "decode", label: "CTC 解码" },
+  { key: "total", label: "端到端" },
+];
+
+const formatBytes = (bytes: number) =>
+  bytes >= 1 << 20 ? `${(bytes / (1 << 20)).toFixed(1)} MB` : `${(bytes / 1024).toFixed(1)} KB`;
+
+const ms = (value: number) => value.toFixed(value < 10 ? 2 : 0);
+
+// 原生各阶段耗时分位数，识别后手动刷新
+export default function OcrMetricsPanel() {
+  const [metrics, setMetrics] = useState<OcrMetrics | null>(null);
+
+  const refresh = useCallback(async () => {
+    if (!Capacitor.isNativePlatform()) return;
+    try {
+      setMetrics(await OCRPlugin.getOcrMetrics());
+    } catch (err) {
+      console.error("getOcrMetrics error:", err);
+    }
+  }, []);
+
+  const reset = async () => {
+    await OCRPlugin.resetOcrMetrics();
+    await refresh();
+  };
+
+  useEffect(() => {
+    refresh();
+  }, [refresh]);
+
+  if (!metrics) return null;
+  const { counters, pool, memory } = metrics;
+  const lastEviction = memory?.recent[0];
+
+  return (
+    <div className="p-2 bg-gray-100 rounded shadow text-sm">
+      <div className="flex items-center justify-between mb-2">
+        <h3 className="font-bold">性能指标（{Math.round(metrics.sinceMs / 1000)} 秒内）</h3>
+        <div className="space-x-2">
+          <button className="px-2 py-0.5 border rounded" onClick={refresh}>刷新</button>
+          <button className="px-2 py-0.5 border rounded" onClick={reset}>清零</button>
+        </div>
+      </div>
+      <table className="w-full text-right">
+        <thead>
+          <tr>
+            <th className="text-left">阶段</th>
+            <th>次数</th>
+            <th>p50</th>
+            <th>p95</th>
+            <th>p99</th>
+            <th>max</th>
+          </tr>
+        </thead>
+        <tbody>
+          {STAGES.filter(({ key }) => metrics.stages[key]).map(({ key, label }) => {
+            const stage = metrics.stages[key]!;
+            return (
+              <tr key={key}>
+                <td className="text-left">{label}</td>
+                <td>{stage.count}</td>
+                <td>{ms(stage.p50Ms)}</td>
+                <td>{ms(stage.p95Ms)}</td>
+                <td>{ms(stage.p99Ms)}</td>
+                <td>{ms(stage.maxMs)}</td>
+              </tr>
+            );
+          })}
+        </tbody>
+      </table>
+      <p className="mt-2 text-gray-600">
+        帧 {counters.frames}（缓存命中 {counters.frameCacheHits}）· 文本框 {counters.detBoxes} · 识别裁剪{" "}
+        {counters.recCrops}（缓存命中 {counters.recCacheHits}）· 方向分类 {counters.clsCrops}（跳过{" "}
+        {counters.clsSkipped ?? 0}）· 取消 {counters.framesCancelled ?? 0}
+      </p>
+      <p className="text-gray-600">
+        拷贝 {formatBytes(counters.bytesCopied)} · 新分配 {formatBytes(counters.bytesAllocated)} · 已加载模型{" "}
+        {metrics.loadedModels?.join(" / ") || "无"}
+        {metrics.predictorPool &&
+          ` · 识别实例 ${metrics.predictorPool.rec.loaded}/${metrics.predictorPool.rec.limit}` +
+            `（容量 ${metrics.predictorPool.rec.capacity}）`}
+      </p>
+      {pool && (
+        <p className="text-gray-600">
+          缓冲池 {formatBytes(pool.pooledBytes)} / {formatBytes(pool.budgetBytes)} · 复用 {pool.hits} · 新建{" "}
+          {pool.misses} · 淘汰 {pool.evictions}
+        </p>
+      )}
+      {memory && (
+        <p className="text-gray-600">
+          内存 {memory.level}
+          {memory.lowRamDevice && "（低内存设备）"} · 检测边长 {memory.detLimitSide} · 单帧预算{" "}
+          {memory.frameBudgetBytes ? formatBytes(memory.frameBudgetBytes) : "不限"}
+          {lastEviction &&
+            ` · 最近 ${new Date(lastEviction.at).toLocaleTimeString()} ${lastEviction.level}：` +
+              `缓存清出 ${Number(lastEviction.frameCacheEvicted ?? 0) + Number(lastEviction.recCacheEvicted ?? 0)} 条，` +
+              `缓冲池释放 ${formatBytes(Number(lastEviction.bufferPoolBytes ?? 0))}` +
+              (lastEviction.predictorReleased ? "，已卸载模型" : "")}
+        </p>
+      )}
+    </div>
+  );
+}
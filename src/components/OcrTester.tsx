@@ -1,39 +1,107 @@
-import React, { useState } from "react";
+import React, { useEffect, useRef, useState } from "react";
+import { Capacitor } from "@capacitor/core";
+import { Camera, CameraResultType, CameraSource } from "@capacitor/camera";
 import { OCRPlugin } from "ocr-plugin";
+import type { OcrRecognizeResult } from "ocr-plugin";
 
 export default function OcrTester() {
-  const [imageBase64, setImageBase64] = useState<string | null>(null);
+  const [previews, setPreviews] = useState<string[]>([]);
   const [resultText, setResultText] = useState<string>("");
+  const [progress, setProgress] = useState<string>("");
+  // 进行中的识别任务，取消按钮据此调用 cancelRecognition
+  const [jobId, setJobId] = useState<string | null>(null);
+  const jobSeq = useRef(0);
 
-  const handleImageUpload = async (event: React.ChangeEvent<HTMLInputElement>) => {
-    const file = event.target.files?.[0];
-    if (!file) return;
+  // 批量识别时逐张回报进度
+  useEffect(() => {
+    const handle = OCRPlugin.addListener("recognizeProgress", (event) => {
+      setProgress(`${event.completed} / ${event.total}`);
+    });
+    return () => {
+      handle.then((h) => h.remove());
+    };
+  }, []);
+
+  const formatResult = (result: OcrRecognizeResult) =>
+    result.lines
+      .map((line) => `${line.text}  (${(line.confidence * 100).toFixed(1)}%)`)
+      .join("\n");
 
-    const reader = new FileReader();
-    reader.onloadend = async () => {
-      const base64 = reader.result as string;
-      setImageBase64(base64);
+  const handleCancel = async () => {
+    if (jobId) await OCRPlugin.cancelRecognition({ jobId });
+  };
 
-      try {
-        const result = await OCRPlugin.recognize({ base64Image: base64 });
-        setResultText(result.text);
-      } catch (err) {
+  // 原生端只传图片路径，解码与识别都在原生侧完成
+  const handlePick = async () => {
+    if (!Capacitor.isNativePlatform()) {
+      setResultText("请在 App 中使用原生 OCR");
+      return;
+    }
+    const id = `tester-${++jobSeq.current}`;
+    try {
+      const { photos } = await Camera.pickImages({ quality: 100 });
+      const paths = photos.map((p) => p.path).filter((p): p is string => !!p);
+      if (paths.length === 0) return;
+      setPreviews(photos.map((p) => p.webPath));
+      setProgress("");
+      setJobId(id);
+
+      if (paths.length === 1) {
+        const result = await OCRPlugin.recognize({ path: paths[0], jobId: id });
+        setResultText(formatResult(result));
+      } else {
+        const { results } = await OCRPlugin.recognizeBatch({ paths, jobId: id });
+        setResultText(
+          results
+            .map((item) => `#${item.index + 1}\n${item.result ? formatResult(item.result) : `识别失败：${item.error}`}`)
+            .join("\n\n")
+        );
+      }
+    } catch (err: any) {
+      if (err?.code === "CANCELLED") {
+        setResultText("已取消");
+      } else {
         console.error("OCR error:", err);
         setResultText("识别失败");
       }
-    };
-    reader.readAsDataURL(file);
+    } finally {
+      setJobId((current) => (current === id ? null : current));
+    }
+  };
+
+  const handleCamera = async () => {
+    try {
+      const photo = await Camera.getPhoto({
+        quality: 100,
+        resultType: CameraResultType.Uri,
+        source: CameraSource.Camera,
+      });
+      if (!photo.path) return;
+      setPreviews(photo.webPath ? [photo.webPath] : []);
+      const result = await OCRPlugin.recognize({ path: photo.path });
+      setResultText(formatResult(result));
+    } catch (err) {
+      console.error("OCR error:", err);
+      setResultText("识别失败");
+    }
   };
 
   return (
     <div className="p-4 space-y-4">
-      <input type="file" accept="image/*" onChange={handleImageUpload} />
-      {imageBase64 && (
-        <img src={imageBase64} alt="Uploaded" className="max-w-full border rounded" />
-      )}
+      <div className="space-x-2">
+        <button className="px-3 py-1 border rounded" onClick={handlePick}>选择图片</button>
+        <button className="px-3 py-1 border rounded" onClick={handleCamera}>拍照</button>
+        {jobId && (
+          <button className="px-3 py-1 border rounded" onClick={handleCancel}>取消</button>
+        )}
+        {progress && <span className="text-sm text-gray-500">{progress}</span>}
+      </div>
+      {previews.map((src) => (
+        <img key={src} src={src} alt="Uploaded" className="max-w-full border rounded" />
+      ))}
       <div className="p-2 bg-gray-100 rounded shadow">
         <h3 className="font-bold mb-2">识别结果：</h3>
-        <p>{resultText}</p>
+        <p className="whitespace-pre-wrap">{resultText}</p>
       </div>
     </div>
   );
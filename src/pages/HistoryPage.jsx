@@ -28,7 +28,7 @@ const HistoryPage = () => {
         setHistoryItems(records);
       } catch (e) {
         console.error(t.loadHistoryError, e);
-        const offline = getOfflineHistoryRecords();
+        const offline = await getOfflineHistoryRecords().catch(() => []);
         setHistoryItems(offline);
       } finally {
         setIsLoading(false);
@@ -1,11 +1,13 @@
 import React from 'react';
 import OcrTester from '../components/OcrTester';
+import OcrMetricsPanel from '../components/OcrMetricsPanel';
 
 const OcrTesterPage = () => {
   return (
     <div className="p-4">
       <h1 className="text-xl font-bol mb-4">OCR 测试页面</h1>
       <OcrTester />
+      <OcrMetricsPanel />
     </div>
   );
 };
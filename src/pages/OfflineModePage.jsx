@@ -1,32 +1,85 @@
 // src/pages/OfflineModePage.jsx
 
-import React, { useState, useEffect } from 'react';
+import React, { useState, useEffect, useRef, useCallback } from 'react';
 import { ArrowLeft, Search, Trash, WifiOff } from 'lucide-react';
 import { Link } from 'react-router-dom';
 import Navbar from '../components/Navbar';
 import {
-  getOfflineHistoryRecords,
+  queryHistory,
   deleteHistoryRecord,
   clearAllHistory
 } from '../utils/helpers';
 import { useTheme } from '../context/ThemeContext';
 
+// 每页条数与输入停顿多久后再检索
+const PAGE_SIZE = 20;
+const SEARCH_DELAY = 250;
+
 const OfflineModePage = () => {
   const { t } = useTheme();
   const [offlineItems, setOfflineItems] = useState([]);
+  const [nextCursor, setNextCursor] = useState(null);
   const [isLoading, setIsLoading] = useState(true);
+  const [isLoadingMore, setIsLoadingMore] = useState(false);
   const [searchTerm, setSearchTerm] = useState("");
+  const [query, setQuery] = useState("");
+  // 每次重新检索加一，丢弃旧检索迟到的结果
+  const requestRef = useRef(0);
+  const sentinelRef = useRef(null);
 
   useEffect(() => {
-    loadOfflineHistory();
-  }, []);
+    const timer = setTimeout(() => setQuery(searchTerm), SEARCH_DELAY);
+    return () => clearTimeout(timer);
+  }, [searchTerm]);
 
-  const loadOfflineHistory = () => {
+  // 检索条件变化时从第一页重新加载，检索在原生全文索引中完成
+  useEffect(() => {
+    const request = ++requestRef.current;
     setIsLoading(true);
-    const records = getOfflineHistoryRecords();
-    setOfflineItems(records);
-    setIsLoading(false);
-  };
+    queryHistory({ query, limit: PAGE_SIZE })
+      .then(page => {
+        if (request !== requestRef.current) return;
+        setOfflineItems(page.records);
+        setNextCursor(page.nextCursor);
+      })
+      .catch(e => {
+        console.error(e);
+        if (request !== requestRef.current) return;
+        setOfflineItems([]);
+        setNextCursor(null);
+      })
+      .finally(() => {
+        if (request === requestRef.current) setIsLoading(false);
+      });
+  }, [query]);
+
+  const loadMore = useCallback(async () => {
+    if (!nextCursor || isLoadingMore) return;
+    const request = requestRef.current;
+    setIsLoadingMore(true);
+    try {
+      const page = await queryHistory({ query, limit: PAGE_SIZE, cursor: nextCursor });
+      if (request !== requestRef.current) return;
+      setOfflineItems(items => [...items, ...page.records]);
+      setNextCursor(page.nextCursor);
+    } catch (e) {
+      console.error(e);
+    } finally {
+      setIsLoadingMore(false);
+    }
+  }, [query, nextCursor, isLoadingMore]);
+
+  // 列表底部的哨兵进入视口时加载下一页
+  useEffect(() => {
+    const el = sentinelRef.current;
+    if (!el || !nextCursor) return;
+    const observer = new IntersectionObserver(
+      entries => { if (entries[0].isIntersecting) loadMore(); },
+      { rootMargin: '200px' }
+    );
+    observer.observe(el);
+    return () => observer.disconnect();
+  }, [loadMore, nextCursor]);
 
   const handleDelete = async (id) => {
     if (!window.confirm(t.confirmDeleteOffline)) return;
@@ -40,13 +93,11 @@ const OfflineModePage = () => {
     if (!offlineItems.length) return;
     if (!window.confirm(t.confirmClearAllOffline)) return;
     await clearAllHistory();
+    requestRef.current++;
     setOfflineItems([]);
+    setNextCursor(null);
   };
 
-  const filteredItems = offlineItems.filter(item =>
-    item.text_content?.toLowerCase().includes(searchTerm.toLowerCase())
-  );
-
   const formatDate = (dateString) => {
     const d = new Date(dateString);
     return `${d.getFullYear()}-${String(d.getMonth()+1).padStart(2,'0')}-${String(d.getDate()).padStart(2,'0')} ${String(d.getHours()).padStart(2,'0')}:${String(d.getMinutes()).padStart(2,'0')}`;
@@ -95,15 +146,20 @@ const OfflineModePage = () => {
             </div>
           ) : (
             <div className="space-y-4">
-              {filteredItems.length > 0 ? (
-                filteredItems.map(item => (
+              {offlineItems.length > 0 ? (
+                offlineItems.map(item => (
                   <div key={item.id} className="bg-white dark:bg-gray-800 rounded-xl shadow-sm p-4 flex items-center">
                     <div className="flex-shrink-0 mr-4">
-                      <img
-                        src={item.image_url}
-                        alt={t.offlineRecord}
-                        className="w-16 h-16 object-cover rounded-lg"
-                      />
+                      {item.image_url ? (
+                        <img
+                          src={item.image_url}
+                          alt={t.offlineRecord}
+                          loading="lazy"
+                          className="w-16 h-16 object-cover rounded-lg"
+                        />
+                      ) : (
+                        <div className="w-16 h-16 rounded-lg bg-gray-100 dark:bg-gray-700" />
+                      )}
                     </div>
                     <div className="flex-1">
                       <div className="flex items-center mb-1">
@@ -132,6 +188,15 @@ const OfflineModePage = () => {
                   <p className="text-gray-500 dark:text-gray-400">{t.noOfflineHistory}</p>
                 </div>
               )}
+              {nextCursor && (
+                <div ref={sentinelRef} className="flex justify-center py-4">
+                  {isLoadingMore && (
+                    <div className="loading-wave">
+                      <div/><div/><div/><div/><div/>
+                    </div>
+                  )}
+                </div>
+              )}
             </div>
           )}
         </div>
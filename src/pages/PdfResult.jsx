@@ -5,17 +5,22 @@ import { useLocation, useNavigate } from 'react-router-dom';
 import { Copy, ArrowLeft } from 'lucide-react';
 import { useTheme } from '../context/ThemeContext';
 import { translateText } from '../utils/helpers';
+import { usePdfStream } from '../utils/pdfStream';
 
 const PdfResult = () => {
   const location = useLocation();
   const navigate = useNavigate();
   const { t } = useTheme();
 
-  // 从 location.state 拿到 PDF 识别结果数组
-  // 每一项 { id, pageNumber, text }
-  const results = Array.isArray(location.state?.results)
-    ? location.state.results
-    : null;
+  // 从 location.state 拿到 PDF 识别结果数组，或由原生端逐页、逐行推送（streaming）
+  // 每一项 { id, pageNumber, text }；推送中的页 complete 为 false，text 随行到达增长
+  const stream = usePdfStream();
+  const streaming = !!location.state?.streaming;
+  const results = streaming
+    ? (stream?.pages ?? [])
+    : Array.isArray(location.state?.results)
+      ? location.state.results
+      : null;
 
   if (!results) {
     // 如果没有结果，跳回首页
@@ -55,6 +60,12 @@ const PdfResult = () => {
         {t.pdfResults}
       </h1>
 
+      {streaming && stream && (stream.error || !stream.done) && (
+        <p className="mb-4 text-center text-sm text-gray-500 dark:text-gray-400">
+          {stream.error ? stream.error : `${stream.pages.length} / ${stream.pageCount}`}
+        </p>
+      )}
+
       {/* 网格布局：1-3 列自适应 */}
       <div className="grid gap-6 grid-cols-1 md:grid-cols-2 xl:grid-cols-3">
         {results.map(r => (
@@ -66,6 +77,7 @@ const PdfResult = () => {
             <div className="flex items-center justify-between mb-4">
               <h2 className="text-lg font-semibold text-gray-800 dark:text-gray-100">
                 {`${t.pagePrefix}${r.pageNumber}${t.pageSuffix}`}
+                {r.complete === false && <span className="ml-2 text-sm text-gray-400">…</span>}
               </h2>
               <div className="flex items-center space-x-2">
                 <button
@@ -87,7 +99,7 @@ const PdfResult = () => {
             {/* 文本内容区，可滚动 */}
             <div className="flex-1 overflow-auto mb-4">
               <pre className="whitespace-pre-wrap text-gray-700 dark:text-gray-200">
-                {r.text}
+                {r.error ?? r.text}
               </pre>
             </div>
 
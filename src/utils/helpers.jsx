@@ -4,6 +4,8 @@ import React, { useRef, useEffect } from 'react';
 import axios from 'axios';
 import Tesseract from 'tesseract.js';
 import { getDocument, GlobalWorkerOptions } from 'pdfjs-dist';
+import { Capacitor } from '@capacitor/core';
+import { OCRPlugin } from 'ocr-plugin';
 
 // 指向 public/pdf.worker.js
 GlobalWorkerOptions.workerSrc = '/pdf.worker.js';
@@ -188,18 +190,82 @@ export const translateText = async (text, target = 'en', source = 'zh') => {
   }
 };
 
-/** 获取所有本地历史（最新优先） */
-export const getHistoryRecords = () => {
-  const arr = JSON.parse(localStorage.getItem('offlineHistory') || '[]');
-  return arr.sort((a, b) => new Date(b.created_at) - new Date(a.created_at));
+// 原生端历史存在插件的 SQLite 库中（带全文索引与缩略图文件），网页端仍用 localStorage
+const isNativeHistory = () => Capacitor.isNativePlatform();
+
+/** 插件记录转成页面使用的结构 */
+const fromNativeRecord = (r) => ({
+  id: r.id,
+  image_url: r.thumbnailPath ? Capacitor.convertFileSrc(r.thumbnailPath) : null,
+  text_content: r.text,
+  created_at: new Date(r.createdAt).toISOString(),
+});
+
+const readLocalHistory = () => JSON.parse(localStorage.getItem('offlineHistory') || '[]');
+
+const getLocalHistoryRecords = () =>
+  readLocalHistory().sort((a, b) => new Date(b.created_at) - new Date(a.created_at));
+
+// 旧版本存在 localStorage 的记录首次使用时搬进原生库，逐条写回剩余部分，中途失败下次接着搬
+let migration = null;
+const migrateLocalHistory = () => {
+  if (!migration) {
+    migration = (async () => {
+      const pending = readLocalHistory();
+      while (pending.length) {
+        const r = pending[0];
+        const createdAt = new Date(r.created_at).getTime();
+        await OCRPlugin.addHistoryRecord({
+          text: r.text_content ?? '',
+          image: r.image_url || undefined,
+          createdAt: Number.isFinite(createdAt) ? createdAt : undefined,
+        });
+        pending.shift();
+        localStorage.setItem('offlineHistory', JSON.stringify(pending));
+      }
+      localStorage.removeItem('offlineHistory');
+    })().catch((e) => {
+      console.error('历史迁移失败:', e);
+      migration = null;
+    });
+  }
+  return migration;
+};
+
+/**
+ * 分页查询历史（最新优先）。query 为空时列出全部；cursor 传上一页的 nextCursor。
+ * 返回 { records, nextCursor }，nextCursor 为 null 表示没有更多。
+ */
+export const queryHistory = async ({ query = '', limit = 20, cursor } = {}) => {
+  if (isNativeHistory()) {
+    await migrateLocalHistory();
+    const page = await OCRPlugin.queryHistory({ query: query.trim(), limit, cursor });
+    return { records: page.records.map(fromNativeRecord), nextCursor: page.nextCursor };
+  }
+  const needle = query.trim().toLowerCase();
+  const all = getLocalHistoryRecords().filter(
+    (r) => !needle || r.text_content?.toLowerCase().includes(needle)
+  );
+  const offset = cursor ? Number(cursor) : 0;
+  const next = offset + limit;
+  return { records: all.slice(offset, next), nextCursor: next < all.length ? String(next) : null };
 };
 
+/** 获取最近的历史（最新优先，最多 HISTORY_LIMIT 条） */
+export const getHistoryRecords = async () =>
+  (await queryHistory({ limit: HISTORY_LIMIT })).records;
+
 /** 获取离线历史（同 getHistoryRecords） */
 export const getOfflineHistoryRecords = getHistoryRecords;
 
-/** 保存一条历史到 localStorage，并限长 */
-export const saveToHistory = (imageUrl, textContent) => {
-  const offline = JSON.parse(localStorage.getItem('offlineHistory') || '[]');
+/** 保存一条历史；原生端写入插件库（只存缩略图），网页端写 localStorage 并限长 */
+export const saveToHistory = async (imageUrl, textContent) => {
+  if (isNativeHistory()) {
+    await migrateLocalHistory();
+    await OCRPlugin.addHistoryRecord({ text: textContent ?? '', image: imageUrl || undefined });
+    return;
+  }
+  const offline = readLocalHistory();
   offline.push({
     id: Date.now(),
     image_url: imageUrl,
@@ -210,20 +276,56 @@ export const saveToHistory = (imageUrl, textContent) => {
   localStorage.setItem('offlineHistory', JSON.stringify(trimmed));
 };
 
-/** 删除一条本地历史 */
-export const deleteHistoryRecord = (id) => {
-  const arr = JSON.parse(localStorage.getItem('offlineHistory') || '[]')
-    .filter(r => r.id !== id);
-  localStorage.setItem('offlineHistory', JSON.stringify(arr));
+/** 批量删除历史，返回删除的条数 */
+export const deleteHistoryRecords = async (ids) => {
+  if (isNativeHistory()) {
+    const { deleted } = await OCRPlugin.deleteHistoryRecords({ ids });
+    return deleted;
+  }
+  const all = readLocalHistory();
+  const kept = all.filter(r => !ids.includes(r.id));
+  localStorage.setItem('offlineHistory', JSON.stringify(kept));
+  return all.length - kept.length;
+};
+
+/** 删除一条历史 */
+export const deleteHistoryRecord = async (id) => {
+  await deleteHistoryRecords([id]);
   return true;    // ← 确保返回 true
 };
 
-/** 清空所有本地历史 */
-export const clearAllHistory = () => {
+/** 清空所有历史 */
+export const clearAllHistory = async () => {
+  if (isNativeHistory()) {
+    await migrateLocalHistory();
+    await OCRPlugin.clearHistory();
+  }
   localStorage.removeItem('offlineHistory');
 };
 
-/** 同步离线数据 —— 由于只用本地存储，这里直接 noop */
+// 历史记录只在用户登录后由插件的上传队列批量同步（见 HistorySync）；未登录时只保存在本机
+const SUPABASE_URL = import.meta.env.VITE_SUPABASE_URL;
+const SUPABASE_ANON_KEY = import.meta.env.VITE_SUPABASE_ANON_KEY;
+let historySyncConfigured = false;
+
+/** 登录或刷新令牌后调用；session 需带 access_token 与 user.id，否则不开启同步 */
+export const configureHistorySync = async (session) => {
+  const accessToken = session?.access_token;
+  const userId = session?.user?.id;
+  if (!isNativeHistory() || !SUPABASE_URL || !SUPABASE_ANON_KEY || !accessToken || !userId) {
+    return false;
+  }
+  await OCRPlugin.configureHistorySync({ url: SUPABASE_URL, apiKey: SUPABASE_ANON_KEY, accessToken, userId });
+  historySyncConfigured = true;
+  return true;
+};
+
+/** 立即上传积压的历史记录；count 为插件加载以来已上传的条数 */
 export const syncOfflineData = async () => {
-  return { success: false, count: 0 };
+  if (!historySyncConfigured) {
+    return { success: false, count: 0 };
+  }
+  await migrateLocalHistory();
+  const status = await OCRPlugin.syncHistory();
+  return { success: status.pendingRecords === 0, count: status.uploadedRecords };
 };
@@ -0,0 +1,39 @@
+// src/utils/nativeChannel.js
+
+// 原生 WebChannel（MainActivity）的网页端。页面加载后原生发来握手消息并附带一个 MessagePort，
+// 回复 ready 之后原生开始逐帧推送；每帧是一条 JSON 文本，k 为帧类型。
+// 监听在模块加载时注册，握手只在页面加载完成时发生一次，不能等组件挂载。
+const HANDSHAKE = 'reatext:channel';
+
+let port = null;
+const listeners = new Set();
+
+window.addEventListener('message', (event) => {
+  if (event.data !== HANDSHAKE || !event.ports?.[0]) return;
+  if (port) port.close();
+  port = event.ports[0];
+  port.onmessage = ({ data }) => {
+    let frame;
+    try {
+      frame = JSON.parse(data);
+    } catch {
+      console.warn('nativeChannel: bad frame', data);
+      return;
+    }
+    listeners.forEach((fn) => fn(frame));
+  };
+  port.postMessage(JSON.stringify({ k: 'ready' }));
+});
+
+/** 订阅原生推送的帧，返回取消订阅函数 */
+export const onNativeFrame = (fn) => {
+  listeners.add(fn);
+  return () => listeners.delete(fn);
+};
+
+/** 行帧 { x, c, b: [8 个坐标] } 还原为插件 recognize 返回的行结构 */
+export const toLine = (frame) => ({
+  text: frame.x,
+  confidence: frame.c,
+  box: [0, 2, 4, 6].map((i) => [frame.b[i], frame.b[i + 1]]),
+});
@@ -0,0 +1,95 @@
+// src/utils/pdfStream.js
+
+import { useEffect, useState } from 'react';
+import { onNativeFrame, toLine } from './nativeChannel';
+
+// 原生 PdfOcrSession 逐页、逐行推送的识别结果（帧格式见 MainActivity.startPdfOcr）。
+// 订阅在模块加载时注册：首页可能在结果页挂载之前就已识别完成，不能等组件再去订阅。
+let current = null; // { uri, pageCount, pages: [{ id, pageNumber, text, lines, width, height, complete }], done, error }
+const subscribers = new Set();
+
+// 一页的行可能连续到达几十帧，合并到下一个动画帧再通知，避免逐行重渲染
+let scheduled = false;
+const update = (next) => {
+  current = next;
+  if (scheduled) return;
+  scheduled = true;
+  requestAnimationFrame(() => {
+    scheduled = false;
+    subscribers.forEach((fn) => fn(current));
+  });
+};
+
+const isCurrent = (frame) => current && frame.s === current.uri;
+
+/** 替换第 index 页；页内的行数组原地追加，页对象本身每次换新，以便 React 感知变化 */
+const updatePage = (index, fn) => {
+  const pages = current.pages.map((page) => (page.id === index ? fn(page) : page));
+  update({ ...current, pages });
+};
+
+const handlers = {
+  start: (frame) => {
+    update({ uri: frame.s, pageCount: frame.n ?? 0, pages: [], done: false, error: null });
+  },
+  page: (frame) => {
+    if (!isCurrent(frame)) return;
+    const page = {
+      id: frame.p,
+      pageNumber: frame.p + 1,
+      text: '',
+      lines: [],
+      width: frame.w,
+      height: frame.h,
+      expected: frame.l,
+      complete: frame.l === 0,
+    };
+    update({ ...current, pages: [...current.pages, page] });
+  },
+  line: (frame) => {
+    if (!isCurrent(frame)) return;
+    updatePage(frame.p, (page) => {
+      const line = toLine(frame);
+      page.lines.push(line);
+      return {
+        ...page,
+        text: page.text ? `${page.text}\n${line.text}` : line.text,
+        complete: page.lines.length >= page.expected,
+      };
+    });
+  },
+  error: (frame) => {
+    if (frame.p < 0) {
+      // 整本无法打开时可能还没有 start
+      const base = isCurrent(frame) ? current : { uri: frame.s, pageCount: 0, pages: [] };
+      update({ ...base, done: true, error: frame.m });
+      return;
+    }
+    if (!isCurrent(frame)) return;
+    const page = { id: frame.p, pageNumber: frame.p + 1, text: '', error: frame.m, complete: true };
+    update({ ...current, pages: [...current.pages, page] });
+  },
+  done: (frame) => {
+    if (!isCurrent(frame)) return;
+    update({ ...current, done: true });
+  },
+};
+
+onNativeFrame((frame) => handlers[frame.k]?.(frame));
+
+export const getPdfStream = () => current;
+
+export const subscribePdfStream = (fn) => {
+  subscribers.add(fn);
+  return () => subscribers.delete(fn);
+};
+
+/** 当前 PDF 的识别进度，页面与行随结果到达逐步增加 */
+export const usePdfStream = () => {
+  const [state, setState] = useState(current);
+  useEffect(() => {
+    setState(current);
+    return subscribePdfStream(setState);
+  }, []);
+  return state;
+};